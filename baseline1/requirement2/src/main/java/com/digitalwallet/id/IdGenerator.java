@@ -0,0 +1,14 @@
+package com.digitalwallet.id;
+
+/**
+ * Generates unique identifiers for requests and verification results.
+ */
+public interface IdGenerator {
+
+    /**
+     * Generate a new unique identifier.
+     *
+     * @return Identifier
+     */
+    String nextId();
+}
@@ -2,6 +2,8 @@ package com.digitalwallet.service.identity;
 
 import com.digitalwallet.config.ApiProperties;
 import com.digitalwallet.exception.IdentityVerificationException;
+import com.digitalwallet.id.IdGenerator;
+import com.digitalwallet.id.SnowflakeIdGenerator;
 import com.digitalwallet.model.Transaction;
 import com.digitalwallet.model.User;
 import com.digitalwallet.model.VerificationRequest;
@@ -25,7 +27,6 @@ import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
-import java.util.UUID;
 
 /**
  * Service for integrating with third-party identity verification services.
@@ -45,6 +46,9 @@ public class IdentityVerificationService implements ApiCaller {
     private final ObjectMapper objectMapper;
     private final VerificationProviderFactory providerFactory;
     
+    // Time-ordered request IDs without drawing on SecureRandom
+    private final IdGenerator idGenerator = SnowflakeIdGenerator.shared();
+    
     @Autowired
     public IdentityVerificationService(
             RestTemplate restTemplate,
@@ -81,7 +85,7 @@ public class IdentityVerificationService implements ApiCaller {
             Transaction transaction, 
             VerificationLevel verificationLevel) throws IdentityVerificationException {
         
-        String requestId = UUID.randomUUID().toString();
+        String requestId = idGenerator.nextId();
         
         try {
             logger.info("Starting identity verification for user: {}, transaction: {}, requestId: {}", 
@@ -179,7 +183,7 @@ public class IdentityVerificationService implements ApiCaller {
         
         // Add timestamp and request ID for idempotency
         httpHeaders.set("X-Request-Timestamp", String.valueOf(System.currentTimeMillis()));
-        httpHeaders.set("X-Request-ID", UUID.randomUUID().toString());
+        httpHeaders.set("X-Request-ID", idGenerator.nextId());
         
         HttpEntity<Object> entity = new HttpEntity<>(requestBody, httpHeaders);
 
@@ -0,0 +1,117 @@
+package com.digitalwallet.id;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SnowflakeIdGeneratorTest {
+
+    // 2024-01-02T00:00:00Z, one day after the generator's epoch
+    private static final long NOW = 1704153600000L;
+    private static final long DAY_MILLIS = 86_400_000L;
+
+    @Test
+    void testIdsAreUniqueAndIncreasingAcrossThreads() throws Exception {
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(7);
+        int threads = 8;
+        int perThread = 20_000;
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<long[]>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                Callable<long[]> task = () -> {
+                    long[] ids = new long[perThread];
+                    for (int i = 0; i < perThread; i++) {
+                        ids[i] = generator.nextLongId();
+                    }
+                    return ids;
+                };
+                futures.add(executor.submit(task));
+            }
+
+            Set<Long> all = new HashSet<>();
+            for (Future<long[]> future : futures) {
+                long[] ids = future.get();
+                for (int i = 0; i < ids.length; i++) {
+                    assertTrue(ids[i] > 0);
+                    assertEquals(7, ids[i] & SnowflakeIdGenerator.MAX_NODE_ID);
+                    if (i > 0) {
+                        // Each caller sees strictly increasing IDs, and the strings sort the same way
+                        assertTrue(ids[i] > ids[i - 1]);
+                        assertTrue(SnowflakeIdGenerator.encode(ids[i]).compareTo(SnowflakeIdGenerator.encode(ids[i - 1])) > 0);
+                    }
+                    all.add(ids[i]);
+                }
+            }
+            assertEquals(threads * perThread, all.size());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void testSequenceRolloverCarriesIntoNextMillisecond() {
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(3, () -> NOW);
+
+        long first = generator.nextLongId();
+        assertEquals(DAY_MILLIS, timestamp(first));
+        assertEquals(0, sequence(first));
+
+        long previous = first;
+        for (int i = 1; i < 4096; i++) {
+            long id = generator.nextLongId();
+            assertEquals(DAY_MILLIS, timestamp(id));
+            assertEquals(i, sequence(id));
+            assertTrue(id > previous);
+            previous = id;
+        }
+
+        // The 4097th ID in the same millisecond borrows the next one
+        long carried = generator.nextLongId();
+        assertTrue(carried > previous);
+        assertEquals(DAY_MILLIS + 1, timestamp(carried));
+        assertEquals(0, sequence(carried));
+        assertEquals(3, carried & SnowflakeIdGenerator.MAX_NODE_ID);
+    }
+
+    @Test
+    void testClockMovingBackwardsKeepsIdsIncreasing() {
+        AtomicLong clock = new AtomicLong(NOW);
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(1, clock::get);
+        long before = generator.nextLongId();
+
+        clock.set(NOW - 5000);
+        long during = generator.nextLongId();
+        long later = generator.nextLongId();
+        assertTrue(during > before);
+        assertTrue(later > during);
+        assertEquals(DAY_MILLIS, timestamp(later));
+
+        // Once the clock passes the last issued millisecond the sequence restarts
+        clock.set(NOW + 1);
+        long after = generator.nextLongId();
+        assertTrue(after > later);
+        assertEquals(DAY_MILLIS + 1, timestamp(after));
+        assertEquals(0, sequence(after));
+    }
+
+    private static long timestamp(long id) {
+        return id >>> 22;
+    }
+
+    private static long sequence(long id) {
+        return (id >>> 10) & 0xFFF;
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.demo.benchmark;
+
+import com.example.demo.infrastructure.id.SnowflakeIdGenerator;
+import com.example.demo.infrastructure.id.UuidIdGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares ID generation throughput of the Snowflake generator with UUID.randomUUID,
+ * which draws every ID from a shared SecureRandom.
+ *
+ * Run: ./gradlew jmh -Pjmh.includes=IdGeneratorBenchmark -PjmhThreads=1, then 4, 8...
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class IdGeneratorBenchmark {
+
+    private final SnowflakeIdGenerator snowflake = new SnowflakeIdGenerator(1);
+    private final UuidIdGenerator uuid = new UuidIdGenerator();
+
+    @Benchmark
+    public String snowflake() {
+        return snowflake.nextId();
+    }
+
+    @Benchmark
+    public long snowflakeNumeric() {
+        return snowflake.nextLongId();
+    }
+
+    @Benchmark
+    public String randomUuid() {
+        return uuid.nextId();
+    }
+}
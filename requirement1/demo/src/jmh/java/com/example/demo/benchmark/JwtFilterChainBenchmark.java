@@ -0,0 +1,115 @@
+package com.example.demo.benchmark;
+
+import com.example.demo.infrastructure.RateLimitFilter;
+import com.example.demo.infrastructure.ratelimit.RateLimitBucketStore;
+import com.example.demo.infrastructure.security.CombinedSecurityFilter;
+import com.example.demo.infrastructure.security.JwtAuthFilter;
+import com.example.demo.infrastructure.security.JwtService;
+import com.example.demo.infrastructure.security.TokenRevocationList;
+import com.example.demo.infrastructure.security.UserIdAuthorizationFilter;
+import jakarta.servlet.Filter;
+import jakarta.servlet.GenericServlet;
+import jakarta.servlet.Servlet;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of the security filters (rate limit, JWT authentication and
+ * user ID authorization) for one authenticated /rewards request.
+ * mode selects the filter topology as security.filter.mode does: the three separate
+ * filters, or the single-pass CombinedSecurityFilter.
+ * With cacheSize=0 every request verifies its token signature; otherwise clients
+ * reusing a token hit the verified-claims cache.
+ *
+ * Run: ./gradlew jmh -Pjmh.includes=JwtFilterChainBenchmark -PjmhThreads=1
+ * Add -Pjmh.profilers=gc to compare allocation per request.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class JwtFilterChainBenchmark {
+
+    private static final String SECRET = "5367566859703373367639792F423F452848284D6251655468576D5A71347437";
+
+    @Param({"separate", "combined"})
+    private String mode;
+
+    @Param({"0", "100000"})
+    private long cacheSize;
+
+    @Param({"1000"})
+    private int users;
+
+    private JwtService jwtService;
+    private Filter[] filters;
+    private Servlet endpoint;
+    private String[] userIds;
+    private String[] tokens;
+
+    @Setup
+    public void setUp() {
+        jwtService = new JwtService(SECRET, TimeUnit.HOURS.toMillis(1), cacheSize, new TokenRevocationList(1 << 20));
+
+        // Never reject during the benchmark
+        RateLimitBucketStore bucketStore = new RateLimitBucketStore(
+                Integer.MAX_VALUE, Integer.MAX_VALUE, Duration.ofMinutes(1), users, Duration.ofHours(1));
+
+        if ("combined".equals(mode)) {
+            filters = new Filter[] {new CombinedSecurityFilter(jwtService, bucketStore)};
+        } else {
+            filters = new Filter[] {
+                    new RateLimitFilter(jwtService, bucketStore),
+                    new JwtAuthFilter(jwtService),
+                    new UserIdAuthorizationFilter()};
+        }
+        endpoint = new GenericServlet() {
+            @Override
+            public void service(ServletRequest request, ServletResponse response) {
+            }
+        };
+
+        userIds = new String[users];
+        tokens = new String[users];
+        for (int i = 0; i < users; i++) {
+            userIds[i] = "bench-user-" + i;
+            tokens[i] = jwtService.generateToken(userIds[i]);
+        }
+    }
+
+    @Benchmark
+    public int filterChain() throws Exception {
+        int user = ThreadLocalRandom.current().nextInt(users);
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/rewards/balance");
+        request.addHeader("Authorization", "Bearer " + tokens[user]);
+        request.addParameter("userId", userIds[user]);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        try {
+            new MockFilterChain(endpoint, filters)
+                    .doFilter(request, response);
+        } finally {
+            SecurityContextHolder.clearContext();
+        }
+        return response.getStatus();
+    }
+
+    @Benchmark
+    public Object verifyToken() {
+        return jwtService.verify(tokens[ThreadLocalRandom.current().nextInt(users)]);
+    }
+}
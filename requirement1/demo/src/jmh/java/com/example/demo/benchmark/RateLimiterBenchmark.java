@@ -0,0 +1,65 @@
+package com.example.demo.benchmark;
+
+import com.example.demo.infrastructure.ratelimit.PackedRateLimiter;
+import com.example.demo.infrastructure.ratelimit.RateLimitBucketStore;
+import com.example.demo.infrastructure.ratelimit.RateLimiter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the rate limiter engines with every user already active, as
+ * rate.limit.engine selects them: bucket4j buckets in a Caffeine cache, or the
+ * packed-long table. Each operation takes one token from a random user.
+ * The limit is high enough that no request is rejected.
+ *
+ * Run: ./gradlew jmh -Pjmh.includes=RateLimiterBenchmark -PjmhThreads=1, then 4, 8...
+ * Add -Pjmh.profilers=gc to compare allocation per request. Give the JVM enough heap
+ * for the bucket4j engine at 1M users (-Xmx4g).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RateLimiterBenchmark {
+
+    private static final long LIMIT = 1_000_000;
+
+    @Param({"bucket4j", "packed"})
+    private String engine;
+
+    @Param({"1000000"})
+    private int users;
+
+    private RateLimiter rateLimiter;
+    private String[] usernames;
+
+    @Setup
+    public void setUp() {
+        if ("packed".equals(engine)) {
+            rateLimiter = new PackedRateLimiter(LIMIT, LIMIT, Duration.ofMinutes(1), users);
+        } else {
+            rateLimiter = new RateLimitBucketStore(
+                    (int) LIMIT, (int) LIMIT, Duration.ofMinutes(1), users, Duration.ofHours(1));
+        }
+
+        usernames = new String[users];
+        for (int i = 0; i < users; i++) {
+            usernames[i] = "bench-user-" + i;
+            rateLimiter.tryConsume(usernames[i]);
+        }
+    }
+
+    @Benchmark
+    public boolean tryConsume() {
+        return rateLimiter.tryConsume(usernames[ThreadLocalRandom.current().nextInt(users)]);
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.demo.benchmark;
+
+import com.example.demo.infrastructure.command.CommandExecutorService;
+import com.example.demo.infrastructure.event.EventPublisher;
+import com.example.demo.infrastructure.factory.StandardUserRewardPointsFactory;
+import com.example.demo.infrastructure.lock.StripedLock;
+import com.example.demo.repository.InMemoryUserRewardPointsRepository;
+import com.example.demo.service.RewardService;
+import com.example.demo.strategy.StandardPointCalculationStrategy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures earnPoints throughput when many threads write to different users.
+ * With a single stripe every write is serialized (the previous global lock);
+ * with many stripes throughput should scale with the number of JMH threads.
+ *
+ * Run: ./gradlew jmh -PjmhThreads=1, then 2, 4, 8... and compare ops/ms.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class RewardServiceContentionBenchmark {
+
+    @Param({"1", "1024"})
+    private int stripes;
+
+    @Param({"10000"})
+    private int users;
+
+    private RewardService rewardService;
+    private String[] userIds;
+
+    @Setup
+    public void setUp() {
+        rewardService = new RewardService(
+                new InMemoryUserRewardPointsRepository(),
+                new StandardPointCalculationStrategy(),
+                new StandardUserRewardPointsFactory(),
+                new CommandExecutorService(),
+                new EventPublisher(List.of()),
+                new StripedLock(stripes));
+
+        userIds = new String[users];
+        for (int i = 0; i < users; i++) {
+            userIds[i] = "bench-user-" + i;
+            rewardService.getBalance(userIds[i]);
+        }
+    }
+
+    @Benchmark
+    public int earnPoints() {
+        String userId = userIds[ThreadLocalRandom.current().nextInt(userIds.length)];
+        return rewardService.earnPoints(userId, 1.0);
+    }
+}
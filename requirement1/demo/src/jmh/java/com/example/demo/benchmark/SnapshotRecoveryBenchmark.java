@@ -0,0 +1,84 @@
+package com.example.demo.benchmark;
+
+import com.example.demo.infrastructure.command.journal.CommandJournal;
+import com.example.demo.infrastructure.command.journal.RewardSnapshotStore;
+import com.example.demo.model.TransactionTemplate;
+import com.example.demo.model.UserRewardPoints;
+import com.example.demo.repository.InMemoryUserRewardPointsRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Measures startup recovery time: loading a snapshot of many users in parallel
+ * partitions. Each user has its initial balance plus one earn transaction.
+ *
+ * Run: ./gradlew jmh -Pjmh.includes=SnapshotRecoveryBenchmark
+ * The 10M user case needs a large heap, see the fork settings below.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Threads(1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms12g", "-Xmx12g"})
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+public class SnapshotRecoveryBenchmark {
+
+    @Param({"1000000", "10000000"})
+    private int users;
+
+    @Param({"1", "8"})
+    private int partitions;
+
+    private Path directory;
+    private CommandJournal journal;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("snapshot-bench");
+        journal = new CommandJournal(directory.resolve("journal").toString(), 1024, 262144);
+
+        InMemoryUserRewardPointsRepository repository = new InMemoryUserRewardPointsRepository();
+        for (int i = 0; i < users; i++) {
+            UserRewardPoints userRewardPoints = new UserRewardPoints("bench-user-" + i);
+            userRewardPoints.addPoints(10, TransactionTemplate.EARNED_FROM_AMOUNT, Double.doubleToLongBits(100.0));
+            repository.save(userRewardPoints);
+        }
+        snapshotStore(repository).snapshot();
+    }
+
+    @Benchmark
+    public long loadSnapshot() {
+        return snapshotStore(new InMemoryUserRewardPointsRepository()).loadLatest();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        journal.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    private RewardSnapshotStore snapshotStore(InMemoryUserRewardPointsRepository repository) {
+        return new RewardSnapshotStore(directory.resolve("snapshots").toString(), 0, partitions, journal, repository);
+    }
+}
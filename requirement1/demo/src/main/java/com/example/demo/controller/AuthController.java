@@ -1,47 +1,111 @@
 package com.example.demo.controller;
 
 import com.example.demo.dto.LoginRequest;
+import com.example.demo.dto.RefreshTokenRequest;
 import com.example.demo.infrastructure.security.JwtService;
+import com.example.demo.infrastructure.security.PasswordVerificationExecutor;
+import com.example.demo.infrastructure.security.RefreshTokenStore;
+import com.example.demo.infrastructure.security.SecurityUtils;
+import com.example.demo.infrastructure.security.TokenRevocationList;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.AccessDeniedException;
 import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.InsufficientAuthenticationException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.util.concurrent.CompletableFuture;
+
 @RestController
 public class AuthController {
 
+    /**
+     * Response header carrying the refresh token
+     */
+    public static final String REFRESH_TOKEN_HEADER = "X-Refresh-Token";
+
     @Autowired
     private AuthenticationManager authenticationManager;
 
     @Autowired
     private JwtService jwtService;
 
+    @Autowired
+    private TokenRevocationList tokenRevocationList;
+
+    @Autowired
+    private RefreshTokenStore refreshTokenStore;
+
+    @Autowired
+    private PasswordVerificationExecutor passwordVerificationExecutor;
+
+    @Autowired
+    private UserDetailsService userDetailsService;
+
     /**
-     * Login endpoint to authenticate and get JWT token
+     * Login endpoint to authenticate and get JWT token.
+     * The password check runs on a bounded pool and the request thread is released
+     * while it waits; when the pool is saturated the login fails fast with 503.
      * 
      * @param loginRequest the login credentials
-     * @return JWT token
+     * @return JWT token, with a refresh token in the X-Refresh-Token header
      */
     @PostMapping("/login")
-    public ResponseEntity<String> login(@Valid @RequestBody LoginRequest loginRequest) {
+    public CompletableFuture<ResponseEntity<String>> login(@Valid @RequestBody LoginRequest loginRequest) {
         // Authenticate user
-        Authentication authentication = authenticationManager.authenticate(
+        return passwordVerificationExecutor.submit(() -> authenticationManager.authenticate(
             new UsernamePasswordAuthenticationToken(
                 loginRequest.getUsername(), 
                 loginRequest.getPassword()
             )
-        );
-        
-        // Generate token
-        UserDetails userDetails = (UserDetails) authentication.getPrincipal();
-        String token = jwtService.generateToken(userDetails.getUsername());
-        
-        return ResponseEntity.ok(token);
+        )).thenApply(authentication -> tokenResponse((UserDetails) authentication.getPrincipal()));
+    }
+
+    /**
+     * Exchange a refresh token for a new JWT without checking the password again.
+     * Each refresh token can be used once; a new one is returned with the JWT.
+     * 
+     * @param request Request containing the refresh token
+     * @return JWT token, with a new refresh token in the X-Refresh-Token header
+     */
+    @PostMapping("/tokens/refresh")
+    public ResponseEntity<String> refresh(@Valid @RequestBody RefreshTokenRequest request) {
+        String username = refreshTokenStore.redeem(request.getRefreshToken());
+        UserDetails userDetails = username != null ? userDetailsService.loadUserByUsername(username) : null;
+        if (userDetails == null) {
+            throw new InsufficientAuthenticationException("Invalid refresh token");
+        }
+        return tokenResponse(userDetails);
+    }
+
+    /**
+     * Revoke every token issued to the current user, e.g. after a password change.
+     * The user has to log in again to get a new token.
+     * 
+     * @return No content
+     */
+    @PostMapping("/tokens/revoke")
+    public ResponseEntity<Void> revokeTokens() {
+        String username = SecurityUtils.getCurrentUsername();
+        if (username == null) {
+            throw new AccessDeniedException("Authentication required");
+        }
+        tokenRevocationList.revokeAll(username);
+        return ResponseEntity.noContent().build();
+    }
+
+    private ResponseEntity<String> tokenResponse(UserDetails userDetails) {
+        // Generate token carrying the user's roles, so requests need no user lookup
+        String token = jwtService.generateToken(userDetails);
+        return ResponseEntity.ok()
+                .header(REFRESH_TOKEN_HEADER, refreshTokenStore.issue(userDetails.getUsername()))
+                .body(token);
     }
 }
@@ -1,14 +1,19 @@
 package com.example.demo.controller;
 
-import com.example.demo.model.PointTransaction;
+import com.example.demo.infrastructure.security.SecurityUtils;
+import com.example.demo.model.TransactionPage;
 import com.example.demo.service.RewardService;
+import com.example.demo.service.RewardStreamService;
 import com.example.demo.dto.*;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.AccessDeniedException;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import javax.validation.constraints.NotBlank;
 import java.util.List;
@@ -23,6 +28,9 @@ public class RewardController {
     @Autowired
     private RewardService rewardService;
 
+    @Autowired
+    private RewardStreamService rewardStreamService;
+
     /**
      * Earn reward points from a transaction
      * 
@@ -57,6 +65,30 @@ public class RewardController {
         return ResponseEntity.ok(new RedeemPointsResponse(request.getPoints(), newBalance));
     }
 
+    /**
+     * Apply a batch of earn and redeem operations in one request.
+     * Operations for the same user are applied in request order under one lock.
+     * 
+     * @param request Request containing the operations
+     * @return Per-operation results, in request order
+     */
+    @PostMapping("/batch")
+    public ResponseEntity<BatchResponse> processBatch(
+            @Valid @RequestBody BatchRequest request) {
+        
+        // The body can name many users, so the userId filter does not cover it
+        for (BatchOperationRequest operation : request.getOperations()) {
+            if (!SecurityUtils.isUserOrAdmin(operation.getUserId())) {
+                throw new AccessDeniedException("Batch contains operations for another user");
+            }
+        }
+        
+        List<BatchItemResponse> results = rewardService.processBatch(request.getOperations());
+        int succeeded = (int) results.stream().filter(result -> "success".equals(result.getStatus())).count();
+
+        return ResponseEntity.ok(new BatchResponse(succeeded, results.size() - succeeded, results));
+    }
+
     /**
      * Check reward points balance
      * 
@@ -74,20 +106,41 @@ public class RewardController {
     }
     
     /**
-     * Get transaction history
+     * Stream balance changes as server-sent events.
+     * Sends the current balance first, then one event per earn or redeem.
+     * The request is handled asynchronously and holds no servlet thread while idle.
      * 
      * @param userId User ID
-     * @return Transaction history
+     * @return Event stream, or 503 if too many streams are open
+     */
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamBalance(
+            @RequestParam @NotBlank String userId) {
+        
+        return rewardStreamService.subscribe(userId, () -> rewardService.getBalance(userId))
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build());
+    }
+    
+    /**
+     * Get transaction history, newest first
+     * 
+     * @param userId User ID
+     * @param limit Maximum number of transactions to return
+     * @param cursor Cursor from a previous response to fetch older transactions
+     * @return Page of transaction history
      */
     @GetMapping("/transactions")
     public ResponseEntity<TransactionsResponse> getTransactionHistory(
-            @RequestParam @NotBlank String userId) {
+            @RequestParam @NotBlank String userId,
+            @RequestParam(defaultValue = "" + RewardService.DEFAULT_PAGE_SIZE) int limit,
+            @RequestParam(required = false) String cursor) {
         
-        // Get transaction history
-        List<PointTransaction> transactions = rewardService.getTransactionHistory(userId);
+        // Get one page of transaction history
+        TransactionPage page = rewardService.getTransactionPage(userId, cursor, limit);
         
         // Transform transactions
-        List<TransactionDto> transactionsList = transactions.stream()
+        List<TransactionDto> transactionsList = page.getTransactions().stream()
                 .map(transaction -> new TransactionDto(
                     transaction.getType().name(),
                     transaction.getPoints(),
@@ -96,7 +149,7 @@ public class RewardController {
                 ))
                 .collect(Collectors.toList());
 
-        return ResponseEntity.ok(new TransactionsResponse(userId, transactionsList));
+        return ResponseEntity.ok(new TransactionsResponse(userId, transactionsList, page.getNextCursor()));
     }
 
     /**
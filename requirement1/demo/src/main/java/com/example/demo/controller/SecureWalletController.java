@@ -3,8 +3,10 @@ package com.example.demo.controller;
 import com.example.demo.dto.EarnPointsRequest;
 import com.example.demo.dto.IdentityVerificationRequest;
 import com.example.demo.dto.IdentityVerificationResult;
+import com.example.demo.infrastructure.exception.InvalidTransactionException;
 import com.example.demo.infrastructure.exception.SecurityException;
-import com.example.demo.model.PointTransaction;
+import com.example.demo.model.TransactionPage;
+import com.example.demo.service.RewardService;
 import com.example.demo.service.SecureRewardService;
 import com.example.demo.service.identity.IdentityVerificationService;
 import jakarta.validation.Valid;
@@ -16,7 +18,6 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 
 /**
@@ -184,16 +185,31 @@ public class SecureWalletController {
     }
     
     /**
-     * Gets transaction history for a user
+     * Gets transaction history for a user, newest first.
+     * The cursor for the next page is returned in the X-Next-Cursor header.
      * 
      * @param userId User ID
-     * @return Transaction history
+     * @param limit Maximum number of transactions to return
+     * @param cursor Cursor from a previous response to fetch older transactions
+     * @return Transaction history page
      */
     @GetMapping("/transactions/{userId}")
-    public ResponseEntity<?> getTransactionHistory(@PathVariable String userId) {
+    public ResponseEntity<?> getTransactionHistory(
+            @PathVariable String userId,
+            @RequestParam(defaultValue = "" + RewardService.DEFAULT_PAGE_SIZE) int limit,
+            @RequestParam(required = false) String cursor) {
         try {
-            List<PointTransaction> transactions = secureRewardService.getTransactionHistory(userId);
-            return ResponseEntity.ok(transactions);
+            TransactionPage page = secureRewardService.getTransactionPage(userId, cursor, limit);
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+            if (page.getNextCursor() != null) {
+                response.header("X-Next-Cursor", page.getNextCursor());
+            }
+            return response.body(page.getTransactions());
+        } catch (InvalidTransactionException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(Map.of(
+                            "status", "ERROR",
+                            "message", e.getMessage()));
         } catch (Exception e) {
             log.error("Error retrieving transaction history", e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
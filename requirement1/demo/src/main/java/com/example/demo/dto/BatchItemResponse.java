@@ -0,0 +1,27 @@
+package com.example.demo.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Outcome of one operation in a batch, in the same position as the request
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchItemResponse {
+    private String userId;
+    private String status;
+    private int points;
+    private int newBalance;
+    private String message;
+
+    public static BatchItemResponse success(String userId, int points, int newBalance) {
+        return new BatchItemResponse(userId, "success", points, newBalance, null);
+    }
+
+    public static BatchItemResponse error(String userId, String message) {
+        return new BatchItemResponse(userId, "error", 0, 0, message);
+    }
+}
@@ -0,0 +1,34 @@
+package com.example.demo.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A single earn or redeem operation inside a batch request
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchOperationRequest {
+
+    public enum OperationType {
+        EARN,
+        REDEEM
+    }
+
+    @NotNull(message = "Operation type is required")
+    private OperationType type;
+
+    @NotBlank(message = "User ID is required")
+    @UserId
+    private String userId;
+
+    // Used by EARN operations
+    private double transactionAmount;
+
+    // Used by REDEEM operations
+    private int points;
+}
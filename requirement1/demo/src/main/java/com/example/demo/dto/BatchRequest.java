@@ -0,0 +1,19 @@
+package com.example.demo.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchRequest {
+    @NotEmpty(message = "At least one operation is required")
+    @Size(max = 1000, message = "A batch may contain at most 1000 operations")
+    private List<@Valid BatchOperationRequest> operations;
+}
@@ -12,6 +12,7 @@ import lombok.NoArgsConstructor;
 @AllArgsConstructor
 public class EarnPointsRequest {
     @NotBlank(message = "User ID is required")
+    @UserId
     private String userId;
 
     @Positive(message = "Transaction amount must be positive")
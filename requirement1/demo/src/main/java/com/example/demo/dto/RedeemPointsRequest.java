@@ -11,6 +11,7 @@ import lombok.NoArgsConstructor;
 @AllArgsConstructor
 public class RedeemPointsRequest {
     @NotBlank(message = "User ID is required")
+    @UserId
     private String userId;
 
     @Min(value = 1, message = "Points to redeem must be at least 1")
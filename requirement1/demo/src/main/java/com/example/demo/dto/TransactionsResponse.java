@@ -12,4 +12,5 @@ import java.util.List;
 public class TransactionsResponse {
     private String userId;
     private List<TransactionDto> transactions;
+    private String nextCursor;
 }
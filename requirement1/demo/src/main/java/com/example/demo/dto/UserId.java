@@ -0,0 +1,33 @@
+package com.example.demo.dto;
+
+import com.example.demo.infrastructure.command.journal.CommandJournal;
+import jakarta.validation.Constraint;
+import jakarta.validation.Payload;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * A user ID short enough for every store that records it. The command journal has
+ * the smallest user ID field, so its limit applies; null is left to {@code @NotBlank}.
+ */
+@Documented
+@Constraint(validatedBy = UserIdValidator.class)
+@Target({ElementType.FIELD, ElementType.PARAMETER})
+@Retention(RetentionPolicy.RUNTIME)
+public @interface UserId {
+
+    String message() default "User ID must be at most {maxBytes} bytes";
+
+    /**
+     * @return Longest allowed user ID in UTF-8 bytes
+     */
+    int maxBytes() default CommandJournal.MAX_USER_ID_BYTES;
+
+    Class<?>[] groups() default {};
+
+    Class<? extends Payload>[] payload() default {};
+}
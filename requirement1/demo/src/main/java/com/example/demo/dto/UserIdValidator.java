@@ -0,0 +1,24 @@
+package com.example.demo.dto;
+
+import jakarta.validation.ConstraintValidator;
+import jakarta.validation.ConstraintValidatorContext;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Checks the UTF-8 length of a {@link UserId}, which is what the stores limit
+ */
+public class UserIdValidator implements ConstraintValidator<UserId, String> {
+
+    private int maxBytes;
+
+    @Override
+    public void initialize(UserId annotation) {
+        this.maxBytes = annotation.maxBytes();
+    }
+
+    @Override
+    public boolean isValid(String value, ConstraintValidatorContext context) {
+        return value == null || value.getBytes(StandardCharsets.UTF_8).length <= maxBytes;
+    }
+}
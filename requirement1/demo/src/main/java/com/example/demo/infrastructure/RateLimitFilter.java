@@ -1,45 +1,32 @@
 package com.example.demo.infrastructure;
 
+import com.example.demo.infrastructure.ratelimit.RateLimiter;
 import com.example.demo.infrastructure.security.BaseSecurityFilter;
 import com.example.demo.infrastructure.security.JwtService;
-import io.github.bucket4j.Bandwidth;
-import io.github.bucket4j.Bucket;
-import io.github.bucket4j.Refill;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.core.annotation.Order;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Component;
 
 import java.io.IOException;
-import java.time.Duration;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 
 @Component
+@ConditionalOnProperty(name = "security.filter.mode", havingValue = "separate", matchIfMissing = true)
 @Order(1) // Ensure this runs before JwtAuthFilter
 public class RateLimitFilter extends BaseSecurityFilter {
 
-    // Use ConcurrentHashMap for thread safety
-    private final Map<String, Bucket> userRequestBuckets = new ConcurrentHashMap<>();
-
-    // Rate limit configuration
-    @Value("${rate.limit.capacity:20}")
-    private int capacity;
-    
-    @Value("${rate.limit.refill-tokens:20}")
-    private int refillTokens;
-    
-    @Value("${rate.limit.refill-minutes:1}")
-    private int refillMinutes;
+    // Per-user limit, engine selected by rate.limit.engine
+    private final RateLimiter rateLimiter;
 
     @Autowired
-    public RateLimitFilter(JwtService jwtService) {
+    public RateLimitFilter(JwtService jwtService, RateLimiter rateLimiter) {
         super(jwtService);
+        this.rateLimiter = rateLimiter;
     }
 
     @Override
@@ -56,9 +43,7 @@ public class RateLimitFilter extends BaseSecurityFilter {
         String username = extractUsername(request);
 
         if (username != null) {
-            Bucket bucket = userRequestBuckets.computeIfAbsent(username, this::createNewBucket);
-            
-            if (bucket.tryConsume(1)) {
+            if (rateLimiter.tryConsume(username)) {
                 // Request allowed, continue with filter chain
                 filterChain.doFilter(request, response);
             } else {
@@ -72,12 +57,4 @@ public class RateLimitFilter extends BaseSecurityFilter {
             filterChain.doFilter(request, response);
         }
     }
-
-    private Bucket createNewBucket(String username) {
-        Bandwidth limit = Bandwidth.classic(capacity, 
-                Refill.intervally(refillTokens, Duration.ofMinutes(refillMinutes)));
-        return Bucket.builder()
-                .addLimit(limit)
-                .build();
-    }
 }
@@ -1,10 +1,13 @@
 package com.example.demo.infrastructure;
 
+import com.example.demo.infrastructure.security.CombinedSecurityFilter;
 import com.example.demo.infrastructure.security.JwtAuthFilter;
 import com.example.demo.infrastructure.security.UserIdAuthorizationFilter;
-// Uncomment this to use the combined filter approach
-// import com.example.demo.security.CombinedSecurityFilter;
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.Filter;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -18,24 +21,29 @@ import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 import org.springframework.http.HttpMethod;
 
+/**
+ * Security configuration.
+ * The filter topology is selected with {@code security.filter.mode}:
+ * {@code separate} (default) chains RateLimitFilter, JwtAuthFilter and UserIdAuthorizationFilter;
+ * {@code combined} uses the single-pass CombinedSecurityFilter instead.
+ */
 @Configuration
 @EnableWebSecurity
 public class SecurityConfig {
 
-    // ===== For separate filters approach =====
-    @Autowired
+    // ===== For separate filters approach (security.filter.mode=separate) =====
+    @Autowired(required = false)
     private JwtAuthFilter jwtAuthFilter;
     
-    @Autowired
+    @Autowired(required = false)
     private RateLimitFilter rateLimitFilter;
     
-    @Autowired
+    @Autowired(required = false)
     private UserIdAuthorizationFilter userIdAuthorizationFilter;
 
-    // ===== For combined filter approach =====
-    // Uncomment this and comment out the three filters above to use the combined approach
-    // @Autowired
-    // private CombinedSecurityFilter combinedSecurityFilter;
+    // ===== For combined filter approach (security.filter.mode=combined) =====
+    @Autowired(required = false)
+    private CombinedSecurityFilter combinedSecurityFilter;
 
     @Bean
     public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
@@ -45,9 +53,12 @@ public class SecurityConfig {
             
             .authorizeHttpRequests(authorize -> authorize
                 // Public endpoints
-                .requestMatchers("/login").permitAll()
+                .requestMatchers("/login", "/tokens/refresh").permitAll()
                 .requestMatchers(HttpMethod.OPTIONS, "/**").permitAll()
                 
+                // Completion of an async request (e.g. an event stream) was authorized when it started
+                .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
+                
                 // Protected endpoints - require authentication
                 .requestMatchers("/rewards/**").authenticated()
                 
@@ -58,19 +69,47 @@ public class SecurityConfig {
             .sessionManagement(session -> session
                 .sessionCreationPolicy(SessionCreationPolicy.STATELESS));
         
-        // ===== For separate filters approach =====
-        http
-            .addFilterBefore(rateLimitFilter, UsernamePasswordAuthenticationFilter.class)
-            .addFilterAfter(jwtAuthFilter, RateLimitFilter.class)
-            .addFilterAfter(userIdAuthorizationFilter, JwtAuthFilter.class);
-            
-        // ===== For combined filter approach =====
-        // Uncomment this and comment out the three filters above to use the combined approach
-        // http.addFilterBefore(combinedSecurityFilter, UsernamePasswordAuthenticationFilter.class);
+        if (combinedSecurityFilter != null) {
+            // ===== Combined filter approach =====
+            http.addFilterBefore(combinedSecurityFilter, UsernamePasswordAuthenticationFilter.class);
+        } else {
+            // ===== Separate filters approach =====
+            http
+                .addFilterBefore(rateLimitFilter, UsernamePasswordAuthenticationFilter.class)
+                .addFilterAfter(jwtAuthFilter, RateLimitFilter.class)
+                .addFilterAfter(userIdAuthorizationFilter, JwtAuthFilter.class);
+        }
         
         return http.build();
     }
 
+    // The security filters run inside the security chain only; without these,
+    // Spring Boot would also register each filter bean with the servlet container
+
+    @Bean
+    @ConditionalOnProperty(name = "security.filter.mode", havingValue = "combined")
+    public FilterRegistrationBean<CombinedSecurityFilter> combinedSecurityFilterRegistration(CombinedSecurityFilter filter) {
+        return disabledRegistration(filter);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "security.filter.mode", havingValue = "separate", matchIfMissing = true)
+    public FilterRegistrationBean<RateLimitFilter> rateLimitFilterRegistration(RateLimitFilter filter) {
+        return disabledRegistration(filter);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "security.filter.mode", havingValue = "separate", matchIfMissing = true)
+    public FilterRegistrationBean<JwtAuthFilter> jwtAuthFilterRegistration(JwtAuthFilter filter) {
+        return disabledRegistration(filter);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "security.filter.mode", havingValue = "separate", matchIfMissing = true)
+    public FilterRegistrationBean<UserIdAuthorizationFilter> userIdAuthorizationFilterRegistration(UserIdAuthorizationFilter filter) {
+        return disabledRegistration(filter);
+    }
+
     @Bean
     public AuthenticationManager authenticationManager(AuthenticationConfiguration config) throws Exception {
         return config.getAuthenticationManager();
@@ -80,4 +119,10 @@ public class SecurityConfig {
     public PasswordEncoder passwordEncoder() {
         return new BCryptPasswordEncoder();
     }
+
+    private static <T extends Filter> FilterRegistrationBean<T> disabledRegistration(T filter) {
+        FilterRegistrationBean<T> registration = new FilterRegistrationBean<>(filter);
+        registration.setEnabled(false);
+        return registration;
+    }
 }
@@ -23,4 +23,13 @@ public interface Command<T> {
      * @return The command description
      */
     String getDescription();
+    
+    /**
+     * Get the key used to order this command relative to others, e.g. the user ID.
+     * Commands with the same key never run concurrently in partitioned mode.
+     * @return The routing key, or null if the command has no ordering requirement
+     */
+    default String getRoutingKey() {
+        return null;
+    }
 }
@@ -1,23 +1,338 @@
 package com.example.demo.infrastructure.command;
 
+import com.example.demo.infrastructure.command.journal.CommandJournal;
+import com.example.demo.infrastructure.exception.InvalidTransactionException;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
 /**
- * Generic command executor service for all system commands
+ * Generic command executor service for all system commands.
+ *
+ * In the default {@code inline} mode commands run on the calling thread. In
+ * {@code partitioned} mode each command is routed by its routing key to one of N
+ * single-threaded partitions, so all commands for the same key run one at a time
+ * and in submission order without any locking. Each partition has a bounded queue;
+ * when it is full, submitters wait up to the configured timeout and are then rejected.
+ * On shutdown, tasks still queued fail instead of being left pending.
+ *
+ * When a {@link CommandJournal} is configured, every {@link JournaledCommand} is written
+ * ahead: its record is appended and made durable before the command is applied, so an
+ * applied command is never lost and a failed journal write leaves state unchanged. The
+ * wait holds the user's lock (or the partition thread), but commands for other users
+ * still share the journal's group commit.
  */
 @Service
 public class CommandExecutorService {
-    
+
+    public static final String MODE_INLINE = "inline";
+    public static final String MODE_PARTITIONED = "partitioned";
+
+    private final Partition[] partitions;
+    private final long submitTimeoutMillis;
+    private final CommandJournal journal;
+    private volatile boolean stopped;
+
+    /**
+     * Create an executor that runs every command on the calling thread
+     */
+    public CommandExecutorService() {
+        this.partitions = null;
+        this.submitTimeoutMillis = 0;
+        this.journal = null;
+    }
+
+    /**
+     * Constructor
+     * @param mode Execution mode, {@code inline} or {@code partitioned}
+     * @param partitionCount Number of partitions (0 means one per available processor)
+     * @param queueCapacity Maximum queued commands per partition
+     * @param submitTimeoutMillis How long a submitter waits for queue space before being rejected
+     * @param journal Command journal, if enabled
+     */
+    @Autowired
+    public CommandExecutorService(
+            @Value("${command.executor.mode:inline}") String mode,
+            @Value("${command.executor.partitions:0}") int partitionCount,
+            @Value("${command.executor.queue-capacity:1024}") int queueCapacity,
+            @Value("${command.executor.submit-timeout-ms:5000}") long submitTimeoutMillis,
+            ObjectProvider<CommandJournal> journal) {
+        this(mode, partitionCount, queueCapacity, submitTimeoutMillis, journal.getIfAvailable());
+    }
+
+    /**
+     * Constructor
+     * @param mode Execution mode, {@code inline} or {@code partitioned}
+     * @param partitionCount Number of partitions (0 means one per available processor)
+     * @param queueCapacity Maximum queued commands per partition
+     * @param submitTimeoutMillis How long a submitter waits for queue space before being rejected
+     * @param journal Command journal, or null to run without one
+     */
+    public CommandExecutorService(
+            String mode, int partitionCount, int queueCapacity, long submitTimeoutMillis, CommandJournal journal) {
+        this.submitTimeoutMillis = submitTimeoutMillis;
+        this.journal = journal;
+
+        if (!MODE_PARTITIONED.equalsIgnoreCase(mode)) {
+            this.partitions = null;
+            return;
+        }
+
+        int count = partitionCount > 0 ? partitionCount : Runtime.getRuntime().availableProcessors();
+        this.partitions = new Partition[count];
+        for (int i = 0; i < count; i++) {
+            partitions[i] = new Partition("command-partition-" + i, queueCapacity);
+        }
+    }
+
     /**
-     * Execute a command
+     * Execute a command.
+     * A journaled command only executes once its journal record is durable. If it then
+     * fails, its record is still applied when the journal is replayed after a restart.
      * @param command The command to execute
      * @param <T> The result type of the command
      * @return The result of the command execution
+     * @throws InvalidTransactionException if the journal rejected the command or could not write it
      */
     public <T> T executeCommand(Command<T> command) {
-        // Record command execution (could add logging, metrics, etc.)
-        
-        // Execute the command
-        return command.execute();
+        if (journal == null || !(command instanceof JournaledCommand)) {
+            return command.execute();
+        }
+
+        // Record the command before applying it
+        long lsn;
+        try {
+            lsn = journal.append(((JournaledCommand<?>) command).prepare());
+        } catch (IllegalArgumentException e) {
+            throw new InvalidTransactionException(e.getMessage());
+        } catch (UncheckedIOException e) {
+            throw new InvalidTransactionException("Failed to persist transaction");
+        }
+        try {
+            journal.whenDurable(lsn).join();
+            return command.execute();
+        } catch (CompletionException e) {
+            throw new InvalidTransactionException("Failed to persist transaction");
+        } finally {
+            journal.markApplied(lsn);
+        }
+    }
+
+    /**
+     * Check whether commands are routed to single-threaded partitions
+     * @return true in partitioned mode
+     */
+    public boolean isPartitioned() {
+        return partitions != null;
+    }
+
+    /**
+     * Submit a command for execution on the partition that owns its routing key.
+     * In inline mode the command runs immediately on the calling thread.
+     * @param command The command to execute
+     * @param <T> The result type of the command
+     * @return Future completed with the command result or failure
+     */
+    public <T> CompletableFuture<T> submit(Command<T> command) {
+        return submit(command.getRoutingKey(), () -> executeCommand(command));
+    }
+
+    /**
+     * Run a unit of work on the partition that owns the routing key.
+     * Work submitted from that partition's own thread runs immediately to avoid self-deadlock.
+     * @param routingKey Key deciding the partition, e.g. a user ID
+     * @param work Work to run
+     * @param <T> The result type
+     * @return Future completed with the result or failure
+     */
+    public <T> CompletableFuture<T> submit(String routingKey, Supplier<T> work) {
+        if (partitions == null) {
+            return runNow(work);
+        }
+
+        Partition partition = partitionFor(routingKey);
+        if (Thread.currentThread() == partition.thread) {
+            return runNow(work);
+        }
+
+        PartitionTask<T> task = new PartitionTask<>(work);
+        if (stopped) {
+            task.fail(new InvalidTransactionException("System is shutting down"));
+            return task;
+        }
+        try {
+            if (!partition.queue.offer(task, submitTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                task.fail(new InvalidTransactionException("System is busy, please try again later"));
+            } else if (stopped && partition.queue.remove(task)) {
+                // Queued after shutdown drained the partition
+                task.fail(new InvalidTransactionException("System is shutting down"));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            task.fail(new InvalidTransactionException("Operation was interrupted"));
+        }
+        return task;
+    }
+
+    /**
+     * Wait for work returned by {@link #submit(String, Supplier)}.
+     * Work that has not started within the timeout is cancelled and reported as busy. Work
+     * that has already started is waited for until it finishes, so a failure reported here
+     * always means the work did not run.
+     * @param future Future returned by submit
+     * @param timeoutMillis How long to wait for the work to start
+     * @param <T> The result type
+     * @return The result of the work
+     * @throws InvalidTransactionException if the work was cancelled
+     */
+    public <T> T await(CompletableFuture<T> future, long timeoutMillis) {
+        try {
+            return future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            if (future.cancel(false)) {
+                throw new InvalidTransactionException("System is busy, please try again later");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            if (future.cancel(false)) {
+                throw new InvalidTransactionException("Operation was interrupted");
+            }
+        } catch (ExecutionException e) {
+            throw unwrap(e.getCause());
+        }
+
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            throw unwrap(e.getCause());
+        }
+    }
+
+    /**
+     * Stop all partition threads and fail the work still queued on them
+     */
+    @PreDestroy
+    public void shutdown() {
+        if (partitions == null) {
+            return;
+        }
+        stopped = true;
+        InvalidTransactionException shuttingDown = new InvalidTransactionException("System is shutting down");
+        for (Partition partition : partitions) {
+            List<Runnable> queued = new ArrayList<>();
+            partition.queue.drainTo(queued);
+            for (Runnable task : queued) {
+                ((PartitionTask<?>) task).fail(shuttingDown);
+            }
+            partition.thread.interrupt();
+        }
+        // Let tasks that already started finish before the journal is closed
+        for (Partition partition : partitions) {
+            try {
+                partition.thread.join(submitTimeoutMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private static RuntimeException unwrap(Throwable cause) {
+        if (cause instanceof RuntimeException) {
+            return (RuntimeException) cause;
+        }
+        return new CompletionException(cause);
+    }
+
+    private static <T> CompletableFuture<T> runNow(Supplier<T> work) {
+        try {
+            return CompletableFuture.completedFuture(work.get());
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private Partition partitionFor(String routingKey) {
+        if (routingKey == null) {
+            return partitions[0];
+        }
+        int h = routingKey.hashCode();
+        h ^= (h >>> 16);
+        return partitions[Math.floorMod(h, partitions.length)];
+    }
+
+    /**
+     * Queued work that runs at most once, and can only be cancelled or failed before it starts
+     */
+    private static final class PartitionTask<T> extends CompletableFuture<T> implements Runnable {
+        private final Supplier<T> work;
+        private final AtomicBoolean claimed = new AtomicBoolean();
+
+        PartitionTask(Supplier<T> work) {
+            this.work = work;
+        }
+
+        @Override
+        public void run() {
+            if (!claimed.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                complete(work.get());
+            } catch (Throwable t) {
+                completeExceptionally(t);
+            }
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            return claimed.compareAndSet(false, true) && super.cancel(false);
+        }
+
+        void fail(RuntimeException cause) {
+            if (claimed.compareAndSet(false, true)) {
+                completeExceptionally(cause);
+            }
+        }
+    }
+
+    /**
+     * Single worker thread draining its own bounded queue
+     */
+    private static final class Partition {
+        private final BlockingQueue<Runnable> queue;
+        private final Thread thread;
+
+        Partition(String name, int capacity) {
+            this.queue = new ArrayBlockingQueue<>(capacity);
+            this.thread = new Thread(this::run, name);
+            this.thread.setDaemon(true);
+            this.thread.start();
+        }
+
+        private void run() {
+            try {
+                while (!Thread.currentThread().isInterrupted()) {
+                    queue.take().run();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
     }
 }
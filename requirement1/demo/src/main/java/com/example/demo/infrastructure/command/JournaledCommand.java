@@ -0,0 +1,20 @@
+package com.example.demo.infrastructure.command;
+
+import com.example.demo.infrastructure.command.journal.CommandRecord;
+
+/**
+ * Command whose intent is written to the command journal before it executes,
+ * so that it can be replayed to restore state after a restart
+ * @param <T> The result type of the command
+ */
+public interface JournaledCommand<T> extends Command<T> {
+
+    /**
+     * Validate the command and describe its effect for the journal without applying it.
+     * A following {@link #execute()} applies exactly the described effect. Called while the
+     * caller has exclusive access to the affected user, so the recorded version is the one
+     * {@link #execute()} will produce.
+     * @return Journal record for this command
+     */
+    CommandRecord prepare();
+}
@@ -0,0 +1,645 @@
+package com.example.demo.infrastructure.command.journal;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Write-ahead journal of reward commands with group commit.
+ *
+ * Appending a record only copies it into an in-memory buffer and assigns it a
+ * log sequence number (LSN). A single flusher thread repeatedly swaps the buffer,
+ * writes it and calls fsync once for everything that accumulated while the previous
+ * fsync was running. Callers wait for their LSN to become durable before applying the
+ * command, so one fsync covers many concurrent commands.
+ *
+ * Records are written to segment files named after the LSN of their first record. The
+ * flusher starts a new segment once the current one holds {@code segmentRecords} records,
+ * and segments fully covered by a snapshot can be deleted with
+ * {@link #deleteSegmentsUpTo(long)}.
+ *
+ * Other stores that derive their data from the journal, such as the event outbox, can
+ * {@link #follow(long, Follower) follow} it: they receive each record once it is durable,
+ * and segments they have not made durable on their side are kept.
+ *
+ * The journal is fail-stop: after the first failed write or fsync, the segment is cut back
+ * to the last durable record, every waiting caller fails and further appends are
+ * rejected. Each segment therefore holds exactly one record per LSN, at offset
+ * {@code (lsn - firstLsn) * RECORD_SIZE}.
+ *
+ * Enable with {@code command.journal.enabled=true}.
+ */
+@Component
+@ConditionalOnProperty(name = "command.journal.enabled", havingValue = "true")
+public class CommandJournal {
+
+    private static final Logger log = LoggerFactory.getLogger(CommandJournal.class);
+
+    // Record layout (128 bytes):
+    // magic(4) type(1) userIdLength(1) reserved(2) points(4) lsn(8) version(8) argument(8)
+    // epochMillis(8) balanceAfter(4) userId(76) crc32(4)
+    static final int RECORD_SIZE = 128;
+    private static final int MAGIC = 0x434D4A33; // "CMJ3"
+    private static final int LSN_OFFSET = 12;
+    private static final int USER_ID_OFFSET = 48;
+    private static final int CRC_OFFSET = RECORD_SIZE - 4;
+
+    /**
+     * Longest user ID, in UTF-8 bytes, that fits in a record
+     */
+    public static final int MAX_USER_ID_BYTES = CRC_OFFSET - USER_ID_OFFSET;
+
+    private static final Pattern SEGMENT_NAME = Pattern.compile("commands-(\\d{20})\\.journal");
+
+    private final Path directory;
+    private final long segmentRecords;
+    private final ChannelOpener opener;
+    private final CRC32 crc = new CRC32();
+
+    // First LSN of each segment; the last one is being written
+    private final ConcurrentSkipListMap<Long, Path> segments = new ConcurrentSkipListMap<>();
+
+    // Only used by the flusher thread once started
+    private FileChannel channel;
+    private long segmentFirstLsn;
+    private long writePosition;
+
+    // Guards the buffers, LSN counters, waiters and failure
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition hasData = lock.newCondition();
+    private final Condition hasSpace = lock.newCondition();
+
+    // Writers fill the active buffer while the flusher writes the other one
+    private ByteBuffer active;
+    private ByteBuffer flushing;
+    private long appendedLsn;
+    private volatile long durableLsn;
+    private final PriorityQueue<Waiter> waiters = new PriorityQueue<>();
+    private IOException failure;
+
+    // Appended records whose command has not been applied or abandoned yet
+    private final ConcurrentSkipListSet<Long> unapplied = new ConcurrentSkipListSet<>();
+
+    // Also the monitor that orders catch-up in follow() against delivery by the flusher
+    private final List<Follower> followers = new CopyOnWriteArrayList<>();
+    private final ByteBuffer followerRecord = ByteBuffer.allocate(RECORD_SIZE);
+
+    private final Thread flusher;
+    private volatile boolean running = true;
+
+    /**
+     * Constructor
+     * @param directory Directory holding the journal segments
+     * @param bufferRecords Number of records each group-commit buffer can hold
+     * @param segmentRecords Number of records after which a new segment is started
+     */
+    public CommandJournal(
+            @Value("${command.journal.directory:data/journal}") String directory,
+            @Value("${command.journal.buffer-records:4096}") int bufferRecords,
+            @Value("${command.journal.segment-records:262144}") long segmentRecords) {
+        this(Paths.get(directory), bufferRecords, segmentRecords, file -> FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE));
+    }
+
+    CommandJournal(Path directory, int bufferRecords, long segmentRecords, ChannelOpener opener) {
+        this.directory = directory;
+        this.segmentRecords = Math.max(1, segmentRecords);
+        this.opener = opener;
+        this.active = ByteBuffer.allocateDirect(bufferRecords * RECORD_SIZE);
+        this.flushing = ByteBuffer.allocateDirect(bufferRecords * RECORD_SIZE);
+
+        try {
+            Files.createDirectories(directory);
+            findSegments();
+            if (segments.isEmpty()) {
+                openSegment(1L);
+            } else {
+                this.segmentFirstLsn = segments.lastKey();
+                this.channel = opener.open(segments.lastEntry().getValue());
+            }
+            this.appendedLsn = segmentFirstLsn - 1 + truncateToLastValidRecord();
+            this.writePosition = (appendedLsn - segmentFirstLsn + 1) * RECORD_SIZE;
+            this.durableLsn = appendedLsn;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open command journal in " + directory, e);
+        }
+
+        this.flusher = new Thread(this::flushLoop, "command-journal-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /**
+     * Append a record to the journal. The record is not durable until
+     * {@link #whenDurable(long)} completes for the returned LSN, and the caller must
+     * call {@link #markApplied(long)} once it has applied or abandoned the command.
+     * @param record Record to append
+     * @return Log sequence number assigned to the record
+     * @throws IllegalArgumentException if the user ID is longer than {@link #MAX_USER_ID_BYTES}
+     * @throws UncheckedIOException if the journal has failed or is closed
+     */
+    public long append(CommandRecord record) {
+        byte[] userIdBytes = record.getUserId().getBytes(StandardCharsets.UTF_8);
+        if (userIdBytes.length > MAX_USER_ID_BYTES) {
+            throw new IllegalArgumentException("User ID must be at most " + MAX_USER_ID_BYTES + " bytes");
+        }
+
+        lock.lock();
+        try {
+            while (failure == null && active.remaining() < RECORD_SIZE) {
+                hasSpace.awaitUninterruptibly();
+            }
+            if (failure != null) {
+                throw new UncheckedIOException("Command journal is not accepting records", failure);
+            }
+            long lsn = ++appendedLsn;
+            encode(active, lsn, record, userIdBytes);
+            unapplied.add(lsn);
+            hasData.signal();
+            return lsn;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Get a future that completes once the record with the given LSN is on disk
+     * @param lsn Log sequence number returned by {@link #append(CommandRecord)}
+     * @return Future completed when durable, or failed if the write failed
+     */
+    public CompletableFuture<Void> whenDurable(long lsn) {
+        if (lsn <= durableLsn) {
+            return CompletableFuture.completedFuture(null);
+        }
+        lock.lock();
+        try {
+            if (lsn <= durableLsn) {
+                return CompletableFuture.completedFuture(null);
+            }
+            if (failure != null) {
+                return CompletableFuture.failedFuture(new UncheckedIOException("Command journal write failed", failure));
+            }
+            Waiter waiter = new Waiter(lsn);
+            waiters.add(waiter);
+            return waiter.future;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Read every durable record in LSN order
+     * @param consumer Receives each record
+     */
+    public void replay(Consumer<CommandRecord> consumer) {
+        replay(0L, (lsn, record) -> consumer.accept(record));
+    }
+
+    /**
+     * Read durable records with an LSN greater than {@code afterLsn}, in LSN order
+     * @param afterLsn Records up to and including this LSN are skipped
+     * @param consumer Receives each record with its LSN
+     * @throws IllegalStateException if records after {@code afterLsn} are missing from the journal
+     */
+    public void replay(long afterLsn, RecordConsumer consumer) {
+        ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+        CRC32 checksum = new CRC32();
+        // Records past it may still be cut off by a failed fsync
+        long lastLsn = durableLsn;
+        long expected = afterLsn + 1;
+        Long start = segments.floorKey(expected);
+        if (start == null) {
+            throw new IllegalStateException("Command journal starts at LSN " + segments.firstKey()
+                    + " but replay needs LSN " + expected);
+        }
+
+        for (Map.Entry<Long, Path> segment : segments.tailMap(start, true).entrySet()) {
+            long firstLsn = segment.getKey();
+            if (firstLsn > expected) {
+                throw new IllegalStateException("Command journal is missing LSNs " + expected + " to " + (firstLsn - 1));
+            }
+            try (FileChannel in = FileChannel.open(segment.getValue(), StandardOpenOption.READ)) {
+                // Records have a fixed size, so the first one to replay can be located directly
+                long end = in.size();
+                for (long position = (expected - firstLsn) * RECORD_SIZE;
+                        position + RECORD_SIZE <= end && expected <= lastLsn; position += RECORD_SIZE) {
+                    record.clear();
+                    in.read(record, position);
+                    if (!isValid(record.array(), checksum) || record.getLong(LSN_OFFSET) != expected) {
+                        break;
+                    }
+                    consumer.accept(expected++, decode(record));
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to read command journal segment " + segment.getValue(), e);
+            }
+        }
+    }
+
+    /**
+     * Deliver every durable record after {@code afterLsn} to a follower, then each further
+     * record as soon as it is durable, in LSN order. A record may be delivered twice around
+     * the switch from catch-up to live delivery, so the follower must ignore LSNs it already
+     * has. Records in deleted segments cannot be delivered; the follower then starts after them.
+     * Delivery runs on the flusher thread after the callers' waits complete, and failures are
+     * logged rather than failing the journal.
+     * @param afterLsn Highest LSN the follower already has
+     * @param follower Receives the records
+     */
+    public void follow(long afterLsn, Follower follower) {
+        synchronized (followers) {
+            long firstLsn = segments.firstKey();
+            if (afterLsn < firstLsn - 1) {
+                log.warn("Command journal starts at LSN {}, so LSNs {} to {} cannot be delivered to {}",
+                        firstLsn, afterLsn + 1, firstLsn - 1, follower.getClass().getSimpleName());
+                afterLsn = firstLsn - 1;
+            }
+            replay(afterLsn, follower);
+            followers.add(follower);
+        }
+    }
+
+    /**
+     * Stop delivering records to a follower and stop keeping segments for it
+     * @param follower Follower passed to {@link #follow(long, Follower)}
+     */
+    public void unfollow(Follower follower) {
+        synchronized (followers) {
+            followers.remove(follower);
+        }
+    }
+
+    /**
+     * Delete closed segments whose records all have an LSN up to the given one.
+     * Only call once a snapshot covering that LSN is durable. Segments holding records a
+     * follower has not made durable yet are kept.
+     * @param lsn Highest LSN that no longer needs to be replayed
+     */
+    public void deleteSegmentsUpTo(long lsn) {
+        for (Follower follower : followers) {
+            lsn = Math.min(lsn, follower.getDurableLsn());
+        }
+        // Oldest first, so a crash part way through still leaves a contiguous journal
+        Map.Entry<Long, Path> segment;
+        while ((segment = segments.firstEntry()) != null) {
+            Long next = segments.higherKey(segment.getKey());
+            if (next == null || next - 1 > lsn) {
+                return;
+            }
+            try {
+                Files.deleteIfExists(segment.getValue());
+            } catch (IOException e) {
+                log.warn("Failed to delete command journal segment {}", segment.getValue(), e);
+                return;
+            }
+            segments.remove(segment.getKey());
+            log.info("Deleted command journal segment {}", segment.getValue().getFileName());
+        }
+    }
+
+    /**
+     * Get the highest LSN known to be on disk
+     * @return Durable LSN
+     */
+    public long getDurableLsn() {
+        return durableLsn;
+    }
+
+    /**
+     * Record that the command appended with the given LSN has been applied, or will never be
+     * @param lsn Log sequence number returned by {@link #append(CommandRecord)}
+     */
+    public void markApplied(long lsn) {
+        unapplied.remove(lsn);
+    }
+
+    /**
+     * Get the highest LSN up to which every record is durable and its command applied.
+     * A snapshot taken after reading this LSN reflects every command up to it.
+     * @return Applied LSN
+     */
+    public long getAppliedLsn() {
+        // Read the durable LSN first: a record at or below it is only removed once applied
+        long durable = durableLsn;
+        Long oldestUnapplied = unapplied.ceiling(0L);
+        return oldestUnapplied == null ? durable : Math.min(durable, oldestUnapplied - 1);
+    }
+
+    /**
+     * Flush outstanding records and stop the flusher thread
+     */
+    @PreDestroy
+    public void close() throws IOException {
+        running = false;
+        lock.lock();
+        try {
+            hasData.signal();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            flusher.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        failWaiters(new IOException("Command journal is closed"));
+        channel.close();
+    }
+
+    private void flushLoop() {
+        while (true) {
+            long batchLsn;
+            lock.lock();
+            try {
+                while (active.position() == 0 && running) {
+                    hasData.awaitUninterruptibly();
+                }
+                if (active.position() == 0) {
+                    return;
+                }
+                // Swap buffers so writers can keep appending during the fsync
+                ByteBuffer full = active;
+                active = flushing;
+                flushing = full;
+                batchLsn = appendedLsn;
+                hasSpace.signalAll();
+            } finally {
+                lock.unlock();
+            }
+
+            try {
+                if (writePosition >= segmentRecords * RECORD_SIZE) {
+                    openSegment(durableLsn + 1);
+                }
+                flushing.flip();
+                while (flushing.hasRemaining()) {
+                    writePosition += channel.write(flushing, writePosition);
+                }
+                channel.force(false);
+            } catch (IOException e) {
+                flushing.clear();
+                stop(e);
+                return;
+            }
+
+            lock.lock();
+            try {
+                durableLsn = batchLsn;
+                while (!waiters.isEmpty() && waiters.peek().lsn <= batchLsn) {
+                    waiters.poll().future.complete(null);
+                }
+            } finally {
+                lock.unlock();
+            }
+
+            if (!followers.isEmpty()) {
+                deliverToFollowers(flushing, batchLsn);
+            }
+            flushing.clear();
+        }
+    }
+
+    // Flusher thread only; batch holds the records up to batchLsn that were just made durable
+    private void deliverToFollowers(ByteBuffer batch, long batchLsn) {
+        synchronized (followers) {
+            int records = batch.limit() / RECORD_SIZE;
+            long lsn = batchLsn - records + 1;
+            for (int start = 0; start < batch.limit(); start += RECORD_SIZE, lsn++) {
+                followerRecord.clear();
+                followerRecord.put(batch.duplicate().position(start).limit(start + RECORD_SIZE));
+                CommandRecord record = decode(followerRecord);
+                for (Follower follower : followers) {
+                    try {
+                        follower.accept(lsn, record);
+                    } catch (RuntimeException e) {
+                        log.error("Command journal follower {} failed at LSN {}", follower.getClass().getSimpleName(), lsn, e);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Stop accepting records after a failed write. Anything written after the last durable
+     * record is cut off, so LSNs stay contiguous on disk and no record that was reported as
+     * failed is replayed on restart.
+     * @param cause The write failure
+     */
+    private void stop(IOException cause) {
+        log.error("Failed to write command journal batch, rejecting further commands", cause);
+        long durableEnd = (durableLsn - segmentFirstLsn + 1) * RECORD_SIZE;
+        try {
+            channel.truncate(durableEnd);
+            channel.force(false);
+            writePosition = durableEnd;
+        } catch (IOException e) {
+            log.error("Failed to cut the command journal back to LSN {}; records after it may be replayed on restart",
+                    durableLsn, e);
+        }
+        failWaiters(cause);
+    }
+
+    private void failWaiters(IOException cause) {
+        lock.lock();
+        try {
+            if (failure == null) {
+                failure = cause;
+            }
+            active.clear();
+            for (Waiter waiter : waiters) {
+                waiter.future.completeExceptionally(new UncheckedIOException("Command journal write failed", failure));
+            }
+            waiters.clear();
+            hasSpace.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void encode(ByteBuffer buffer, long lsn, CommandRecord record, byte[] userIdBytes) {
+        int start = buffer.position();
+        buffer.putInt(MAGIC);
+        buffer.put(CommandRecord.codeFor(record.getCommandType()));
+        buffer.put((byte) userIdBytes.length);
+        buffer.putShort((short) 0);
+        buffer.putInt(record.getPoints());
+        buffer.putLong(lsn);
+        buffer.putLong(record.getVersion());
+        buffer.putLong(record.getArgument());
+        buffer.putLong(record.getEpochMillis());
+        buffer.putInt(record.getBalanceAfter());
+        buffer.put(userIdBytes);
+        buffer.position(start + CRC_OFFSET);
+
+        // Checksum covers everything before the CRC field, including zero padding
+        crc.reset();
+        ByteBuffer view = buffer.duplicate();
+        view.position(start).limit(start + CRC_OFFSET);
+        for (int i = start + USER_ID_OFFSET + userIdBytes.length; i < start + CRC_OFFSET; i++) {
+            buffer.put(i, (byte) 0);
+        }
+        crc.update(view);
+        buffer.putInt((int) crc.getValue());
+    }
+
+    private CommandRecord decode(ByteBuffer record) {
+        byte[] bytes = record.array();
+        String userId = new String(bytes, USER_ID_OFFSET, bytes[5] & 0xFF, StandardCharsets.UTF_8);
+        return new CommandRecord(
+                CommandRecord.typeFor(bytes[4]),
+                userId,
+                record.getInt(8),
+                record.getLong(28),
+                record.getLong(20),
+                record.getInt(44),
+                record.getLong(36));
+    }
+
+    private static boolean isValid(byte[] record, CRC32 crc) {
+        if (ByteBuffer.wrap(record).getInt(0) != MAGIC) {
+            return false;
+        }
+        crc.reset();
+        crc.update(record, 0, CRC_OFFSET);
+        return ByteBuffer.wrap(record).getInt(CRC_OFFSET) == (int) crc.getValue();
+    }
+
+    /**
+     * Drop any partially written records at the end of the last segment.
+     * Only the last group commit can be torn, so the segment is checked backwards from the end.
+     * @return Number of valid records in the last segment
+     */
+    private long truncateToLastValidRecord() throws IOException {
+        ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+        long size = channel.size();
+        long end = size - size % RECORD_SIZE;
+        while (end > 0) {
+            record.clear();
+            channel.read(record, end - RECORD_SIZE);
+            if (isValid(record.array(), crc) && record.getLong(LSN_OFFSET) == segmentFirstLsn - 1 + end / RECORD_SIZE) {
+                break;
+            }
+            end -= RECORD_SIZE;
+        }
+        if (size > end) {
+            log.warn("Truncating {} bytes of incomplete command journal data", size - end);
+            channel.truncate(end);
+        }
+        return end / RECORD_SIZE;
+    }
+
+    private void findSegments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            files.forEach(file -> {
+                Matcher matcher = SEGMENT_NAME.matcher(file.getFileName().toString());
+                if (matcher.matches()) {
+                    segments.put(Long.parseLong(matcher.group(1)), file);
+                }
+            });
+        }
+    }
+
+    private void openSegment(long firstLsn) throws IOException {
+        Path file = directory.resolve(String.format("commands-%020d.journal", firstLsn));
+        FileChannel next = opener.open(file);
+        try {
+            // Make the new file itself survive a crash, not just its contents
+            forceDirectory(directory);
+        } catch (IOException e) {
+            next.close();
+            throw e;
+        }
+
+        FileChannel previous = channel;
+        this.channel = next;
+        this.segmentFirstLsn = firstLsn;
+        this.writePosition = 0;
+        segments.put(firstLsn, file);
+        if (previous != null) {
+            previous.close();
+        }
+    }
+
+    /**
+     * Flush a directory so that files created, renamed or deleted in it survive a crash.
+     * Does nothing on platforms that cannot open a directory.
+     * @param directory Directory to flush
+     */
+    public static void forceDirectory(Path directory) throws IOException {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (AccessDeniedException e) {
+            // Windows does not allow opening directories
+        }
+    }
+
+    /**
+     * Opens a journal segment file
+     */
+    @FunctionalInterface
+    interface ChannelOpener {
+        FileChannel open(Path file) throws IOException;
+    }
+
+    /**
+     * Receives journal records together with their LSN
+     */
+    @FunctionalInterface
+    public interface RecordConsumer {
+        void accept(long lsn, CommandRecord record);
+    }
+
+    /**
+     * Store that derives its data from the journal, see {@link #follow(long, Follower)}
+     */
+    public interface Follower extends RecordConsumer {
+
+        /**
+         * Get the highest LSN whose derived data the follower has made durable
+         * @return LSN up to which the follower no longer needs the journal
+         */
+        long getDurableLsn();
+    }
+
+    private static final class Waiter implements Comparable<Waiter> {
+        private final long lsn;
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        Waiter(long lsn) {
+            this.lsn = lsn;
+        }
+
+        @Override
+        public int compareTo(Waiter other) {
+            return Long.compare(lsn, other.lsn);
+        }
+    }
+}
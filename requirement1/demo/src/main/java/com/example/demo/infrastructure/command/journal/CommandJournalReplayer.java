@@ -0,0 +1,146 @@
+package com.example.demo.infrastructure.command.journal;
+
+import com.example.demo.infrastructure.command.CommandTypes;
+import com.example.demo.infrastructure.factory.UserRewardPointsFactory;
+import com.example.demo.model.PointLedger;
+import com.example.demo.model.TransactionTemplate;
+import com.example.demo.model.UserRewardPoints;
+import com.example.demo.repository.UserRewardPointsRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rebuilds user reward points on startup from the latest snapshot plus the
+ * journal records written after it.
+ * Each record carries the user version it produced, so records already reflected
+ * in the snapshot or the repository (e.g. one that persists its own state) are skipped.
+ * Records are applied with their recorded points and time, and events are not
+ * republished during replay. User creation is not journaled, so the initial entries of a
+ * user missing from the snapshot are dated with the user's first journaled command.
+ * The time taken is published as the {@code reward.recovery.duration} metric.
+ */
+@Component
+@ConditionalOnProperty(name = "command.journal.enabled", havingValue = "true")
+public class CommandJournalReplayer {
+
+    private static final Logger log = LoggerFactory.getLogger(CommandJournalReplayer.class);
+
+    private final CommandJournal journal;
+    private final RewardSnapshotStore snapshotStore;
+    private final UserRewardPointsRepository repository;
+    private final UserRewardPointsFactory userRewardPointsFactory;
+    private final ObjectProvider<MeterRegistry> meterRegistry;
+
+    private volatile long recoveryMillis;
+
+    /**
+     * Constructor
+     * @param journal Command journal
+     * @param snapshotStore Snapshots to start from
+     * @param repository Repository to restore into
+     * @param userRewardPointsFactory Factory for users that are not in the repository yet
+     * @param meterRegistry Registry for the recovery time metric, if available
+     */
+    public CommandJournalReplayer(
+            CommandJournal journal,
+            RewardSnapshotStore snapshotStore,
+            UserRewardPointsRepository repository,
+            UserRewardPointsFactory userRewardPointsFactory,
+            ObjectProvider<MeterRegistry> meterRegistry) {
+        this.journal = journal;
+        this.snapshotStore = snapshotStore;
+        this.repository = repository;
+        this.userRewardPointsFactory = userRewardPointsFactory;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Load the latest snapshot, then apply every later journaled command
+     * that the repository has not seen yet
+     */
+    @PostConstruct
+    public void replay() {
+        long start = System.currentTimeMillis();
+        long[] counts = new long[2];
+
+        long snapshotLsn = snapshotStore.loadLatest();
+        journal.replay(snapshotLsn, (lsn, record) -> {
+            UserRewardPoints userRewardPoints = repository.findOrCreate(
+                    record.getUserId(), userId -> createAt(userId, record.getEpochMillis()));
+
+            if (userRewardPoints.getVersion() >= record.getVersion()) {
+                counts[1]++;
+                return;
+            }
+
+            apply(userRewardPoints, record);
+            counts[0]++;
+
+            if (userRewardPoints.getVersion() != record.getVersion()) {
+                log.warn("Replayed command for user {} produced version {} but the journal recorded {}",
+                        record.getUserId(), userRewardPoints.getVersion(), record.getVersion());
+            }
+        });
+
+        recoveryMillis = System.currentTimeMillis() - start;
+        log.info("Recovered from snapshot at LSN {} and replayed {} journaled commands ({} already applied) in {} ms",
+                snapshotLsn, counts[0], counts[1], recoveryMillis);
+
+        meterRegistry.ifAvailable(registry -> TimeGauge
+                .builder("reward.recovery.duration", this, TimeUnit.MILLISECONDS, CommandJournalReplayer::getRecoveryMillis)
+                .description("Time taken to restore reward points on startup")
+                .register(registry));
+    }
+
+    /**
+     * Get the time the last startup recovery took
+     * @return Recovery time in milliseconds
+     */
+    public long getRecoveryMillis() {
+        return recoveryMillis;
+    }
+
+    private UserRewardPoints createAt(String userId, long epochMillis) {
+        PointLedger created = userRewardPointsFactory.createUserRewardPoints(userId).getState().getLedger();
+        PointLedger ledger = PointLedger.EMPTY;
+        for (int i = 0; i < created.size(); i++) {
+            ledger = ledger.append(created.getType(i), created.getPoints(i), epochMillis,
+                    created.getTemplate(i), created.getArgument(i));
+        }
+        return UserRewardPoints.restore(userId, ledger);
+    }
+
+    private void apply(UserRewardPoints userRewardPoints, CommandRecord record) {
+        switch (record.getCommandType()) {
+            case CommandTypes.EARN_POINTS:
+                // Reuse the recorded points instead of recalculating with the current strategy
+                userRewardPoints.addPoints(
+                        record.getPoints(),
+                        TransactionTemplate.EARNED_FROM_AMOUNT,
+                        record.getArgument(),
+                        record.getEpochMillis());
+                break;
+            case CommandTypes.REDEEM_POINTS:
+                if (!userRewardPoints.deductPoints(
+                        record.getPoints(),
+                        TransactionTemplate.REDEEMED_POINTS,
+                        record.getArgument(),
+                        record.getEpochMillis())) {
+                    throw new IllegalStateException("Journaled redemption of " + record.getPoints()
+                            + " points exceeds the balance of user " + record.getUserId());
+                }
+                break;
+            default:
+                throw new IllegalStateException("Unsupported journaled command: " + record.getCommandType());
+        }
+        repository.save(userRewardPoints);
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.demo.infrastructure.command.journal;
+
+import com.example.demo.infrastructure.command.CommandTypes;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Journal entry describing one executed reward command
+ */
+@Getter
+@RequiredArgsConstructor
+public class CommandRecord {
+
+    // Persisted codes for command types
+    static final byte EARN_POINTS = 1;
+    static final byte REDEEM_POINTS = 2;
+
+    private final String commandType;
+    private final String userId;
+
+    // Points added or removed by the command
+    private final int points;
+
+    // Command-specific argument, e.g. the bits of the transaction amount for earn commands
+    private final long argument;
+
+    // User version and balance after the command was applied
+    private final long version;
+    private final int balanceAfter;
+
+    // Time of the transaction, so that replay restores the original ledger timestamp
+    private final long epochMillis;
+
+    static byte codeFor(String commandType) {
+        switch (commandType) {
+            case CommandTypes.EARN_POINTS:
+                return EARN_POINTS;
+            case CommandTypes.REDEEM_POINTS:
+                return REDEEM_POINTS;
+            default:
+                throw new IllegalArgumentException("Command type cannot be journaled: " + commandType);
+        }
+    }
+
+    static String typeFor(byte code) {
+        switch (code) {
+            case EARN_POINTS:
+                return CommandTypes.EARN_POINTS;
+            case REDEEM_POINTS:
+                return CommandTypes.REDEEM_POINTS;
+            default:
+                throw new IllegalArgumentException("Unknown journaled command code: " + code);
+        }
+    }
+}
@@ -0,0 +1,323 @@
+package com.example.demo.infrastructure.command.journal;
+
+import com.example.demo.model.PointLedger;
+import com.example.demo.model.TransactionTemplate;
+import com.example.demo.model.TransactionType;
+import com.example.demo.model.UserRewardPoints;
+import com.example.demo.repository.UserRewardPointsRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Periodic snapshots of every user's reward points, used to skip most of the
+ * command journal on startup.
+ *
+ * A snapshot is taken on a background thread while writers keep running: each
+ * user's {@link UserRewardPoints.State} is immutable, so reading it once gives a
+ * consistent balance, ledger and version without locking. The snapshot remembers
+ * the journal's applied LSN when it started; every command up to that LSN is
+ * durable and already reflected in it, and later commands are replayed from the journal,
+ * skipping the ones whose version the snapshot already contains.
+ *
+ * Users are spread over several part files so that they can be loaded in parallel.
+ * Once a snapshot is durable, the journal segments it covers are deleted.
+ */
+@Component
+@ConditionalOnProperty(name = "command.journal.enabled", havingValue = "true")
+public class RewardSnapshotStore {
+
+    private static final Logger log = LoggerFactory.getLogger(RewardSnapshotStore.class);
+
+    private static final int MAGIC = 0x534E4150; // "SNAP"
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final String PART_PREFIX = "part-";
+
+    private final Path directory;
+    private final int partitions;
+    private final CommandJournal journal;
+    private final UserRewardPointsRepository repository;
+    private final ScheduledExecutorService scheduler;
+
+    private final AtomicLong lastSnapshotLsn = new AtomicLong(-1);
+
+    /**
+     * Constructor
+     * @param directory Directory holding the snapshots
+     * @param intervalMillis Time between snapshots (0 disables periodic snapshots)
+     * @param partitions Number of part files per snapshot (0 means one per available processor)
+     * @param journal Command journal the snapshots are taken against
+     * @param repository Repository to snapshot
+     */
+    public RewardSnapshotStore(
+            @Value("${command.snapshot.directory:data/snapshots}") String directory,
+            @Value("${command.snapshot.interval-ms:60000}") long intervalMillis,
+            @Value("${command.snapshot.partitions:0}") int partitions,
+            CommandJournal journal,
+            UserRewardPointsRepository repository) {
+        this.directory = Paths.get(directory);
+        this.partitions = partitions > 0 ? partitions : Runtime.getRuntime().availableProcessors();
+        this.journal = journal;
+        this.repository = repository;
+
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "reward-snapshot-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (intervalMillis > 0) {
+            scheduler.scheduleWithFixedDelay(this::snapshotIfChanged, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Write a snapshot of every user, then remove older snapshots and the journal segments it covers
+     * @return LSN covered by the snapshot
+     */
+    public synchronized long snapshot() {
+        long lsn = journal.getAppliedLsn();
+        if (Files.isDirectory(directory.resolve(SNAPSHOT_PREFIX + lsn))) {
+            lastSnapshotLsn.set(lsn);
+            return lsn;
+        }
+        Path temp = directory.resolve(SNAPSHOT_PREFIX + lsn + TEMP_SUFFIX);
+        long start = System.currentTimeMillis();
+
+        try {
+            Files.createDirectories(temp);
+            FileChannel[] channels = new FileChannel[partitions];
+            DataOutputStream[] outputs = new DataOutputStream[partitions];
+            try {
+                for (int i = 0; i < partitions; i++) {
+                    channels[i] = FileChannel.open(temp.resolve(PART_PREFIX + i),
+                            StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+                    outputs[i] = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channels[i]), 1 << 16));
+                    outputs[i].writeInt(MAGIC);
+                }
+
+                long[] users = new long[1];
+                repository.forEach(userRewardPoints -> {
+                    try {
+                        writeUser(outputs[partitionFor(userRewardPoints.getUserId())], userRewardPoints);
+                        users[0]++;
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+
+                for (int i = 0; i < partitions; i++) {
+                    outputs[i].writeBoolean(false);
+                    outputs[i].flush();
+                    channels[i].force(true);
+                }
+                log.info("Wrote snapshot of {} users at LSN {} in {} ms", users[0], lsn, System.currentTimeMillis() - start);
+            } finally {
+                for (FileChannel channel : channels) {
+                    if (channel != null) {
+                        channel.close();
+                    }
+                }
+            }
+
+            // Publish atomically so a crash never leaves a half-written snapshot visible, and
+            // flush both directories so the rename is durable before the journal is cut
+            CommandJournal.forceDirectory(temp);
+            Files.move(temp, directory.resolve(SNAPSHOT_PREFIX + lsn), StandardCopyOption.ATOMIC_MOVE);
+            CommandJournal.forceDirectory(directory);
+            lastSnapshotLsn.set(lsn);
+            deleteSnapshotsBefore(lsn);
+            journal.deleteSegmentsUpTo(lsn);
+            return lsn;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write reward snapshot", e);
+        }
+    }
+
+    /**
+     * Load the latest snapshot into the repository, reading its parts in parallel.
+     * A user already in the repository is only replaced if the snapshot holds a newer version.
+     * @return LSN covered by the loaded snapshot, or 0 if there is none
+     */
+    public long loadLatest() {
+        Optional<Path> latest = findLatest();
+        if (latest.isEmpty()) {
+            return 0L;
+        }
+
+        Path snapshot = latest.get();
+        long lsn = lsnOf(snapshot);
+        ExecutorService loaders = Executors.newFixedThreadPool(partitions, r -> {
+            Thread thread = new Thread(r, "reward-snapshot-loader");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<Long>> parts = new ArrayList<>();
+            try (Stream<Path> files = Files.list(snapshot)) {
+                files.filter(file -> file.getFileName().toString().startsWith(PART_PREFIX))
+                        .forEach(file -> parts.add(loaders.submit(() -> loadPart(file))));
+            }
+
+            long users = 0;
+            for (Future<Long> part : parts) {
+                users += part.get();
+            }
+            log.info("Loaded snapshot of {} users at LSN {}", users, lsn);
+            lastSnapshotLsn.set(lsn);
+            return lsn;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to load reward snapshot " + snapshot, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while loading reward snapshot", e);
+        } catch (Exception e) {
+            throw new IllegalStateException("Failed to load reward snapshot " + snapshot, e);
+        } finally {
+            loaders.shutdownNow();
+        }
+    }
+
+    /**
+     * Stop taking periodic snapshots
+     */
+    @PreDestroy
+    public void close() {
+        scheduler.shutdownNow();
+    }
+
+    private void snapshotIfChanged() {
+        try {
+            if (journal.getAppliedLsn() != lastSnapshotLsn.get()) {
+                snapshot();
+            }
+        } catch (RuntimeException e) {
+            log.error("Periodic reward snapshot failed", e);
+        }
+    }
+
+    private void writeUser(DataOutputStream out, UserRewardPoints userRewardPoints) throws IOException {
+        // One read of the immutable state gives a consistent view of this user
+        UserRewardPoints.State state = userRewardPoints.getState();
+        PointLedger ledger = state.getLedger();
+
+        out.writeBoolean(true);
+        out.writeUTF(userRewardPoints.getUserId());
+        out.writeInt(ledger.size());
+        for (int i = 0; i < ledger.size(); i++) {
+            out.writeByte(ledger.getType(i).ordinal());
+            out.writeInt(ledger.getPoints(i));
+            out.writeLong(ledger.getEpochMillis(i));
+            out.writeInt(ledger.getTemplate(i).getId());
+            out.writeLong(ledger.getArgument(i));
+        }
+    }
+
+    private long loadPart(Path file) throws IOException {
+        TransactionType[] types = TransactionType.values();
+        long users = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a reward snapshot part: " + file);
+            }
+            while (in.readBoolean()) {
+                String userId = in.readUTF();
+                int size = in.readInt();
+                PointLedger ledger = PointLedger.EMPTY;
+                for (int i = 0; i < size; i++) {
+                    ledger = ledger.append(
+                            types[in.readByte()],
+                            in.readInt(),
+                            in.readLong(),
+                            TransactionTemplate.fromId(in.readInt()),
+                            in.readLong());
+                }
+
+                UserRewardPoints restored = UserRewardPoints.restore(userId, ledger);
+                Optional<UserRewardPoints> existing = repository.findByUserId(userId);
+                if (existing.isEmpty() || existing.get().getVersion() < restored.getVersion()) {
+                    repository.save(restored);
+                }
+                users++;
+            }
+        }
+        return users;
+    }
+
+    private int partitionFor(String userId) {
+        int h = userId.hashCode();
+        h ^= (h >>> 16);
+        return Math.floorMod(h, partitions);
+    }
+
+    private Optional<Path> findLatest() {
+        if (!Files.isDirectory(directory)) {
+            return Optional.empty();
+        }
+        try (Stream<Path> snapshots = Files.list(directory)) {
+            return snapshots
+                    .filter(RewardSnapshotStore::isCompleteSnapshot)
+                    .max(Comparator.comparingLong(RewardSnapshotStore::lsnOf));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to list reward snapshots in " + directory, e);
+        }
+    }
+
+    private void deleteSnapshotsBefore(long lsn) throws IOException {
+        try (Stream<Path> snapshots = Files.list(directory)) {
+            for (Path snapshot : (Iterable<Path>) snapshots::iterator) {
+                String name = snapshot.getFileName().toString();
+                boolean stale = name.endsWith(TEMP_SUFFIX) || (isCompleteSnapshot(snapshot) && lsnOf(snapshot) < lsn);
+                if (name.startsWith(SNAPSHOT_PREFIX) && stale) {
+                    deleteRecursively(snapshot);
+                }
+            }
+        }
+    }
+
+    private static void deleteRecursively(Path snapshot) throws IOException {
+        try (Stream<Path> files = Files.list(snapshot)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.deleteIfExists(file);
+            }
+        }
+        Files.deleteIfExists(snapshot);
+    }
+
+    private static boolean isCompleteSnapshot(Path path) {
+        String name = path.getFileName().toString();
+        return name.startsWith(SNAPSHOT_PREFIX) && !name.endsWith(TEMP_SUFFIX) && Files.isDirectory(path);
+    }
+
+    private static long lsnOf(Path snapshot) {
+        return Long.parseLong(snapshot.getFileName().toString().substring(SNAPSHOT_PREFIX.length()));
+    }
+}
@@ -1,10 +1,12 @@
 package com.example.demo.infrastructure.command.reward;
 
-import com.example.demo.infrastructure.command.Command;
 import com.example.demo.infrastructure.command.CommandTypes;
+import com.example.demo.infrastructure.command.JournaledCommand;
+import com.example.demo.infrastructure.command.journal.CommandRecord;
 import com.example.demo.infrastructure.event.EventPublisher;
 import com.example.demo.infrastructure.event.EventTypes;
 import com.example.demo.infrastructure.event.reward.RewardEventData;
+import com.example.demo.model.TransactionTemplate;
 import com.example.demo.model.UserRewardPoints;
 import com.example.demo.repository.UserRewardPointsRepository;
 import com.example.demo.strategy.PointCalculationStrategy;
@@ -12,7 +14,7 @@ import com.example.demo.strategy.PointCalculationStrategy;
 /**
  * Command to earn reward points
  */
-public class EarnPointsCommand implements Command<Integer> {
+public class EarnPointsCommand implements JournaledCommand<Integer> {
     
     private final UserRewardPoints userRewardPoints;
     private final double transactionAmount;
@@ -20,6 +22,10 @@ public class EarnPointsCommand implements Command<Integer> {
     private final UserRewardPointsRepository repository;
     private final EventPublisher eventPublisher;
     
+    // Points and time decided by prepare(), so that execute() applies exactly what was journaled
+    private Integer pointsEarned;
+    private long epochMillis;
+    
     /**
      * Constructor
      * @param userRewardPoints User reward points
@@ -44,19 +50,24 @@ public class EarnPointsCommand implements Command<Integer> {
     @Override
     public Integer execute() {
         // Calculate points to earn
-        int pointsEarned = calculationStrategy.calculatePoints(transactionAmount);
+        if (pointsEarned == null) {
+            pointsEarned = calculationStrategy.calculatePoints(transactionAmount);
+            epochMillis = System.currentTimeMillis();
+        }
         
         // Add points to user's account
-        userRewardPoints.addPoints(pointsEarned, getDescription());
+        userRewardPoints.addPoints(
+                pointsEarned,
+                TransactionTemplate.EARNED_FROM_AMOUNT,
+                Double.doubleToLongBits(transactionAmount),
+                epochMillis);
         
         // Save changes
         repository.save(userRewardPoints);
         
         // Publish event
         if (eventPublisher != null) {
-            RewardEventData eventData = new RewardEventData(
-                    pointsEarned,
-                    userRewardPoints);
+            RewardEventData eventData = RewardEventData.of(userRewardPoints, pointsEarned);
             
             eventPublisher.publishEvent(
                     EventTypes.POINTS_EARNED,
@@ -74,6 +85,25 @@ public class EarnPointsCommand implements Command<Integer> {
     
     @Override
     public String getDescription() {
-        return String.format("Earned points from transaction amount: %.2f", transactionAmount);
+        return TransactionTemplate.EARNED_FROM_AMOUNT.render(Double.doubleToLongBits(transactionAmount));
+    }
+    
+    @Override
+    public String getRoutingKey() {
+        return userRewardPoints.getUserId();
+    }
+    
+    @Override
+    public CommandRecord prepare() {
+        pointsEarned = calculationStrategy.calculatePoints(transactionAmount);
+        epochMillis = System.currentTimeMillis();
+        return new CommandRecord(
+                CommandTypes.EARN_POINTS,
+                userRewardPoints.getUserId(),
+                pointsEarned,
+                Double.doubleToLongBits(transactionAmount),
+                userRewardPoints.getVersion() + 1,
+                userRewardPoints.getRewardPoints() + pointsEarned,
+                epochMillis);
     }
 }
@@ -1,24 +1,29 @@
 package com.example.demo.infrastructure.command.reward;
 
-import com.example.demo.infrastructure.command.Command;
 import com.example.demo.infrastructure.command.CommandTypes;
+import com.example.demo.infrastructure.command.JournaledCommand;
+import com.example.demo.infrastructure.command.journal.CommandRecord;
 import com.example.demo.infrastructure.event.EventPublisher;
 import com.example.demo.infrastructure.event.EventTypes;
 import com.example.demo.infrastructure.event.reward.RewardEventData;
 import com.example.demo.infrastructure.exception.InsufficientPointsException;
+import com.example.demo.model.TransactionTemplate;
 import com.example.demo.model.UserRewardPoints;
 import com.example.demo.repository.UserRewardPointsRepository;
 
 /**
  * Command to redeem reward points
  */
-public class RedeemPointsCommand implements Command<Integer> {
+public class RedeemPointsCommand implements JournaledCommand<Integer> {
     
     private final UserRewardPoints userRewardPoints;
     private final int pointsToRedeem;
     private final UserRewardPointsRepository repository;
     private final EventPublisher eventPublisher;
     
+    // Time decided by prepare(), so that execute() applies exactly what was journaled
+    private long epochMillis;
+    
     /**
      * Constructor
      * @param userRewardPoints User reward points
@@ -40,16 +45,17 @@ public class RedeemPointsCommand implements Command<Integer> {
     @Override
     public Integer execute() {
         // Check if user has enough points
-        if (userRewardPoints.getRewardPoints() < pointsToRedeem) {
-            throw new InsufficientPointsException(
-                    String.format("User %s has only %d points but tried to redeem %d points",
-                            userRewardPoints.getUserId(),
-                            userRewardPoints.getRewardPoints(),
-                            pointsToRedeem));
-        }
+        checkBalance();
         
         // Deduct points
-        boolean success = userRewardPoints.deductPoints(pointsToRedeem, getDescription());
+        if (epochMillis == 0) {
+            epochMillis = System.currentTimeMillis();
+        }
+        boolean success = userRewardPoints.deductPoints(
+                pointsToRedeem,
+                TransactionTemplate.REDEEMED_POINTS,
+                pointsToRedeem,
+                epochMillis);
         
         if (!success) {
             throw new InsufficientPointsException("Failed to deduct points");
@@ -60,9 +66,7 @@ public class RedeemPointsCommand implements Command<Integer> {
         
         // Publish event
         if (eventPublisher != null) {
-            RewardEventData eventData = new RewardEventData(
-                    pointsToRedeem,
-                    userRewardPoints);
+            RewardEventData eventData = RewardEventData.of(userRewardPoints, -pointsToRedeem);
             
             eventPublisher.publishEvent(
                     EventTypes.POINTS_REDEEMED,
@@ -80,6 +84,35 @@ public class RedeemPointsCommand implements Command<Integer> {
     
     @Override
     public String getDescription() {
-        return String.format("Redeemed %d points", pointsToRedeem);
+        return TransactionTemplate.REDEEMED_POINTS.render(pointsToRedeem);
+    }
+    
+    @Override
+    public String getRoutingKey() {
+        return userRewardPoints.getUserId();
+    }
+    
+    @Override
+    public CommandRecord prepare() {
+        checkBalance();
+        epochMillis = System.currentTimeMillis();
+        return new CommandRecord(
+                CommandTypes.REDEEM_POINTS,
+                userRewardPoints.getUserId(),
+                pointsToRedeem,
+                pointsToRedeem,
+                userRewardPoints.getVersion() + 1,
+                userRewardPoints.getRewardPoints() - pointsToRedeem,
+                epochMillis);
+    }
+    
+    private void checkBalance() {
+        if (userRewardPoints.getRewardPoints() < pointsToRedeem) {
+            throw new InsufficientPointsException(
+                    String.format("User %s has only %d points but tried to redeem %d points",
+                            userRewardPoints.getUserId(),
+                            userRewardPoints.getRewardPoints(),
+                            pointsToRedeem));
+        }
     }
 }
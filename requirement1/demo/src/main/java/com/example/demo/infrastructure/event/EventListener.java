@@ -1,5 +1,7 @@
 package com.example.demo.infrastructure.event;
 
+import java.util.List;
+
 /**
  * Generic event listener interface
  * @param <T> The type of event
@@ -12,6 +14,32 @@ public interface EventListener<T> {
      */
     void onEvent(T event);
     
+    /**
+     * Handle several events at once. Called by an asynchronous {@link EventPublisher}
+     * with the events of one drained batch that this listener supports, in publish order.
+     * Override to amortize per-event costs such as writes or flushes.
+     * As with one-by-one delivery, a failing event must not stop the rest of the batch:
+     * every event is handled, then the first failure is thrown with later ones suppressed.
+     * @param events The events to handle
+     */
+    default void onEvents(List<T> events) {
+        RuntimeException failure = null;
+        for (T event : events) {
+            try {
+                onEvent(event);
+            } catch (RuntimeException e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+    
     /**
      * Check if this listener supports the given event type
      * @param eventType The event type to check
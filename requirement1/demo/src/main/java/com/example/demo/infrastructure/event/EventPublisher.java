@@ -1,22 +1,143 @@
 package com.example.demo.infrastructure.event;
 
+import com.example.demo.infrastructure.event.outbox.EventOutbox;
+import com.example.demo.infrastructure.id.IdGenerator;
+import com.example.demo.infrastructure.id.SnowflakeIdGenerator;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.UUID;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * Event publisher for all system events
+ * Event publisher for all system events.
+ *
+ * In the default {@code sync} mode listeners run on the publishing thread. In
+ * {@code async} mode events are put in a bounded ring buffer and delivered by
+ * dedicated consumer threads, so a slow listener no longer holds up reward writes.
+ * When the buffer is full the configured {@link OverflowPolicy} applies. With more
+ * than one consumer thread, events may be delivered out of order. Consumers drain
+ * events in batches and hand each listener its share through
+ * {@link EventListener#onEvents(List)}.
+ *
+ * The listeners for each type in {@link EventTypes#ALL} are resolved once, at
+ * construction, so delivering an event only touches the listeners that handle it.
+ *
+ * If an {@link EventOutbox} is enabled and does not derive its events from the command
+ * journal, every event is first appended to it on the publishing thread, before any
+ * in-process delivery. The state change has already been committed by then, so a failed
+ * append is logged rather than reported to the caller.
+ *
+ * After {@link #shutdown()} the consumer threads are gone, so events published late
+ * (for example by a request still finishing) are delivered on the publishing thread.
  */
 @Component
 public class EventPublisher {
     
+    private static final Logger log = LoggerFactory.getLogger(EventPublisher.class);
+    
+    public static final String MODE_SYNC = "sync";
+    public static final String MODE_ASYNC = "async";
+    
+    private static final EventListener<?>[] NO_LISTENERS = new EventListener<?>[0];
+    
     private final List<EventListener<?>> eventListeners;
     
-    @Autowired
+    // Immutable event type -> listeners table
+    private final Map<String, EventListener<?>[]> routes;
+    
+    private final EventOutbox outbox;
+    private final IdGenerator idGenerator;
+    
+    // Async mode only
+    private final EventRingBuffer buffer;
+    private final OverflowPolicy overflowPolicy;
+    private final Thread[] consumers;
+    private final int batchSize;
+    private final long batchLingerNanos;
+    private final AtomicLong droppedEvents = new AtomicLong();
+    private final AtomicLong callerRunsEvents = new AtomicLong();
+    private volatile boolean running = true;
+    
+    /**
+     * Create a publisher that delivers events on the publishing thread
+     * @param eventListeners Listeners to deliver to
+     */
     public EventPublisher(List<EventListener<?>> eventListeners) {
         this.eventListeners = eventListeners;
+        this.routes = buildRoutes(eventListeners);
+        this.outbox = null;
+        this.idGenerator = new SnowflakeIdGenerator(0);
+        this.buffer = null;
+        this.overflowPolicy = null;
+        this.consumers = null;
+        this.batchSize = 1;
+        this.batchLingerNanos = 0;
+    }
+    
+    /**
+     * Constructor
+     * @param eventListeners Listeners to deliver to
+     * @param idGenerator Generator for event IDs
+     * @param mode Delivery mode, {@code sync} or {@code async}
+     * @param bufferSize Capacity of the async ring buffer
+     * @param consumerCount Number of async consumer threads
+     * @param overflowPolicy What to do when the async buffer is full
+     * @param batchSize Maximum events an async consumer delivers at once
+     * @param batchIntervalMillis How long an async consumer waits for a batch to fill (0 delivers what is queued)
+     * @param outbox Durable event outbox, if enabled
+     * @param meterRegistry Registry for queue metrics, if available
+     */
+    @Autowired
+    public EventPublisher(
+            List<EventListener<?>> eventListeners,
+            IdGenerator idGenerator,
+            @Value("${event.publisher.mode:sync}") String mode,
+            @Value("${event.publisher.buffer-size:8192}") int bufferSize,
+            @Value("${event.publisher.consumers:1}") int consumerCount,
+            @Value("${event.publisher.overflow-policy:block}") String overflowPolicy,
+            @Value("${event.publisher.batch-size:256}") int batchSize,
+            @Value("${event.publisher.batch-interval-ms:0}") long batchIntervalMillis,
+            ObjectProvider<EventOutbox> outbox,
+            ObjectProvider<MeterRegistry> meterRegistry) {
+        this.eventListeners = eventListeners;
+        this.routes = buildRoutes(eventListeners);
+        this.outbox = outbox.getIfAvailable();
+        this.idGenerator = idGenerator;
+        this.batchSize = Math.max(1, batchSize);
+        this.batchLingerNanos = TimeUnit.MILLISECONDS.toNanos(batchIntervalMillis);
+        
+        if (!MODE_ASYNC.equalsIgnoreCase(mode)) {
+            this.buffer = null;
+            this.overflowPolicy = null;
+            this.consumers = null;
+            return;
+        }
+        
+        this.buffer = new EventRingBuffer(bufferSize);
+        this.overflowPolicy = OverflowPolicy.valueOf(overflowPolicy.trim().toUpperCase().replace('-', '_'));
+        this.consumers = new Thread[Math.max(1, consumerCount)];
+        for (int i = 0; i < consumers.length; i++) {
+            consumers[i] = new Thread(this::consume, "event-publisher-" + i);
+            consumers[i].setDaemon(true);
+            consumers[i].start();
+        }
+        meterRegistry.ifAvailable(this::registerMetrics);
     }
     
     /**
@@ -30,7 +151,7 @@ public class EventPublisher {
     public <T> Event<T> publishEvent(String eventType, String userId, T data) {
         // Create event with a unique ID
         Event<T> event = new Event<>(
-                UUID.randomUUID().toString(),
+                idGenerator.nextId(),
                 eventType,
                 userId,
                 data
@@ -47,12 +168,210 @@ public class EventPublisher {
      * @param event The event to publish
      * @param <T> The type of event data
      */
-    @SuppressWarnings("unchecked")
     public <T> void publishEvent(Event<T> event) {
+        if (outbox != null && !outbox.isFollowingJournal()) {
+            try {
+                outbox.append(event);
+            } catch (RuntimeException e) {
+                log.error("Failed to append event {} to the outbox", event.getEventId(), e);
+            }
+        }
+        
+        if (buffer == null || !running) {
+            dispatch(event);
+            return;
+        }
+        
+        switch (overflowPolicy) {
+            case BLOCK:
+                try {
+                    if (!buffer.put(event)) {
+                        // Woken by shutdown, no consumer will take it
+                        dispatch(event);
+                        return;
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    dispatch(event);
+                    return;
+                }
+                break;
+            case DROP_OLDEST:
+                Event<?> dropped = buffer.offerDroppingOldest(event);
+                if (dropped != null) {
+                    droppedEvents.incrementAndGet();
+                    log.debug("Event buffer full, dropped event {}", dropped.getEventId());
+                }
+                break;
+            case CALLER_RUNS:
+                if (!buffer.offer(event)) {
+                    callerRunsEvents.incrementAndGet();
+                    dispatch(event);
+                    return;
+                }
+                break;
+        }
+        
+        if (!running) {
+            // Shutdown raced with the enqueue and the consumers may already have exited
+            deliverQueued();
+        }
+    }
+    
+    /**
+     * Get the number of events waiting for delivery
+     * @return Queue depth (always 0 in sync mode)
+     */
+    public int getQueueDepth() {
+        return buffer == null ? 0 : buffer.size();
+    }
+    
+    /**
+     * Get how long the oldest undelivered event has been waiting
+     * @return Lag in milliseconds (always 0 in sync mode)
+     */
+    public long getLagMillis() {
+        return buffer == null ? 0L : TimeUnit.NANOSECONDS.toMillis(buffer.oldestAgeNanos());
+    }
+    
+    /**
+     * Get the number of events discarded by the {@code drop-oldest} policy
+     * @return Dropped event count
+     */
+    public long getDroppedEvents() {
+        return droppedEvents.get();
+    }
+    
+    /**
+     * Get the number of events delivered on the publishing thread by the {@code caller-runs} policy
+     * @return Caller-runs event count
+     */
+    public long getCallerRunsEvents() {
+        return callerRunsEvents.get();
+    }
+    
+    /**
+     * Stop the consumer threads after delivering queued events
+     */
+    @PreDestroy
+    public void shutdown() {
+        if (consumers == null) {
+            return;
+        }
+        running = false;
+        buffer.close();
+        for (Thread consumer : consumers) {
+            try {
+                consumer.join(5000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        deliverQueued();
+    }
+    
+    @SuppressWarnings("unchecked")
+    private <T> void dispatch(Event<T> event) {
+        for (EventListener<?> listener : listenersFor(event.getEventType())) {
+            ((EventListener<Event<T>>)listener).onEvent(event);
+        }
+    }
+    
+    private EventListener<?>[] listenersFor(String eventType) {
+        EventListener<?>[] listeners = routes.get(eventType);
+        if (listeners != null) {
+            return listeners;
+        }
+        // Event type missing from EventTypes.ALL, fall back to asking every listener
+        return resolve(eventListeners, eventType);
+    }
+    
+    private static Map<String, EventListener<?>[]> buildRoutes(List<EventListener<?>> eventListeners) {
+        Map<String, EventListener<?>[]> routes = new HashMap<>();
+        for (String eventType : EventTypes.ALL) {
+            routes.put(eventType, resolve(eventListeners, eventType));
+        }
+        return Map.copyOf(routes);
+    }
+    
+    private static EventListener<?>[] resolve(List<EventListener<?>> eventListeners, String eventType) {
+        List<EventListener<?>> matching = new ArrayList<>();
         for (EventListener<?> listener : eventListeners) {
-            if (listener.supportsEventType(event.getEventType())) {
-                ((EventListener<Event<T>>)listener).onEvent(event);
+            if (listener.supportsEventType(eventType)) {
+                matching.add(listener);
+            }
+        }
+        return matching.isEmpty() ? NO_LISTENERS : matching.toArray(NO_LISTENERS);
+    }
+    
+    private void consume() {
+        Event<?>[] batch = new Event<?>[batchSize];
+        long idleWaitNanos = TimeUnit.MILLISECONDS.toNanos(100);
+        try {
+            while (true) {
+                int count = buffer.drain(batch, idleWaitNanos, batchLingerNanos);
+                if (count == 0) {
+                    if (!running) {
+                        return;
+                    }
+                    continue;
+                }
+                dispatchBatch(batch, count);
+                Arrays.fill(batch, 0, count, null);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    // Deliver whatever is still queued on the calling thread
+    private void deliverQueued() {
+        Event<?>[] batch = new Event<?>[batchSize];
+        try {
+            int count;
+            while ((count = buffer.drain(batch, 0, 0)) > 0) {
+                dispatchBatch(batch, count);
+                Arrays.fill(batch, 0, count, null);
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
     }
+    
+    @SuppressWarnings("unchecked")
+    private void dispatchBatch(Event<?>[] batch, int count) {
+        // Split the batch per listener, keeping publish order
+        Map<EventListener<?>, List<Event<?>>> byListener = new LinkedHashMap<>();
+        for (int i = 0; i < count; i++) {
+            for (EventListener<?> listener : listenersFor(batch[i].getEventType())) {
+                byListener.computeIfAbsent(listener, l -> new ArrayList<>()).add(batch[i]);
+            }
+        }
+        
+        for (Map.Entry<EventListener<?>, List<Event<?>>> entry : byListener.entrySet()) {
+            try {
+                ((EventListener<Event<?>>) entry.getKey()).onEvents(entry.getValue());
+            } catch (RuntimeException e) {
+                // No caller to report to, so keep delivering to the other listeners
+                log.error("Event listener {} failed on {} of a batch of {} events",
+                        entry.getKey().getClass().getSimpleName(), 1 + e.getSuppressed().length, entry.getValue().size(), e);
+            }
+        }
+    }
+    
+    private void registerMetrics(MeterRegistry registry) {
+        Gauge.builder("events.queue.depth", this, EventPublisher::getQueueDepth)
+                .description("Events waiting for delivery")
+                .register(registry);
+        TimeGauge.builder("events.queue.lag", this, TimeUnit.MILLISECONDS, EventPublisher::getLagMillis)
+                .description("Age of the oldest undelivered event")
+                .register(registry);
+        FunctionCounter.builder("events.dropped", droppedEvents, AtomicLong::get)
+                .description("Events discarded because the buffer was full")
+                .register(registry);
+        FunctionCounter.builder("events.caller.runs", callerRunsEvents, AtomicLong::get)
+                .description("Events delivered on the publishing thread because the buffer was full")
+                .register(registry);
+    }
 }
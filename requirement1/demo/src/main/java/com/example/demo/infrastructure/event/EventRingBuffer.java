@@ -0,0 +1,193 @@
+package com.example.demo.infrastructure.event;
+
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded ring buffer of events backed by preallocated arrays.
+ * Slots are reused, so steady-state publishing allocates nothing beyond the events themselves.
+ * The time each event was enqueued is kept alongside it so consumer lag can be measured.
+ */
+final class EventRingBuffer {
+
+    private final Event<?>[] events;
+    private final long[] enqueuedNanos;
+    private final int mask;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+
+    // Sequence of the next event to take and of the next free slot; guarded by lock
+    private long head;
+    private long tail;
+    private boolean closed;
+
+    /**
+     * Constructor
+     * @param capacity Minimum number of slots, rounded up to a power of two
+     */
+    EventRingBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        this.events = new Event<?>[size];
+        this.enqueuedNanos = new long[size];
+        this.mask = size - 1;
+    }
+
+    /**
+     * Add an event if there is room
+     * @param event Event to add
+     * @return false if the buffer is full
+     */
+    boolean offer(Event<?> event) {
+        lock.lock();
+        try {
+            if (tail - head == events.length) {
+                return false;
+            }
+            enqueue(event);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Add an event, waiting for room if the buffer is full
+     * @param event Event to add
+     * @return false if the buffer was closed before the event could be added
+     * @throws InterruptedException if interrupted while waiting
+     */
+    boolean put(Event<?> event) throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (tail - head == events.length) {
+                if (closed) {
+                    return false;
+                }
+                notFull.await();
+            }
+            enqueue(event);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Add an event, discarding the oldest queued event if the buffer is full
+     * @param event Event to add
+     * @return The discarded event, or null if nothing was discarded
+     */
+    Event<?> offerDroppingOldest(Event<?> event) {
+        lock.lock();
+        try {
+            Event<?> dropped = null;
+            if (tail - head == events.length) {
+                dropped = dequeue();
+            }
+            enqueue(event);
+            return dropped;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Remove up to {@code into.length} events. Waits up to {@code firstWaitNanos} for the
+     * first event, then up to {@code lingerNanos} more for the batch to fill.
+     * @param into Array receiving the events, oldest first
+     * @param firstWaitNanos Maximum time to wait for the first event
+     * @param lingerNanos Maximum extra time to wait for a full batch (0 takes what is available)
+     * @return Number of events removed
+     * @throws InterruptedException if interrupted while waiting
+     */
+    int drain(Event<?>[] into, long firstWaitNanos, long lingerNanos) throws InterruptedException {
+        long nanos = firstWaitNanos;
+        lock.lockInterruptibly();
+        try {
+            while (tail == head) {
+                if (nanos <= 0) {
+                    return 0;
+                }
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+
+            int count = 0;
+            long deadline = System.nanoTime() + lingerNanos;
+            while (count < into.length) {
+                if (tail != head) {
+                    into[count++] = dequeue();
+                    continue;
+                }
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    break;
+                }
+                notEmpty.awaitNanos(remaining);
+            }
+            return count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Wake any thread waiting in {@link #put}; from now on a put that finds the buffer
+     * full returns false instead of waiting
+     */
+    void close() {
+        lock.lock();
+        try {
+            closed = true;
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Get the number of queued events
+     * @return Queue depth
+     */
+    int size() {
+        lock.lock();
+        try {
+            return (int) (tail - head);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Get how long the oldest queued event has been waiting
+     * @return Age in nanoseconds, or 0 if the buffer is empty
+     */
+    long oldestAgeNanos() {
+        lock.lock();
+        try {
+            return tail == head ? 0L : System.nanoTime() - enqueuedNanos[(int) head & mask];
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Caller must hold lock
+    private void enqueue(Event<?> event) {
+        int slot = (int) tail & mask;
+        events[slot] = event;
+        enqueuedNanos[slot] = System.nanoTime();
+        tail++;
+        notEmpty.signal();
+    }
+
+    // Caller must hold lock and the buffer must not be empty
+    private Event<?> dequeue() {
+        int slot = (int) head & mask;
+        Event<?> event = events[slot];
+        events[slot] = null;
+        head++;
+        notFull.signal();
+        return event;
+    }
+}
@@ -1,5 +1,7 @@
 package com.example.demo.infrastructure.event;
 
+import java.util.List;
+
 /**
  * Constants for event types
  */
@@ -15,4 +17,13 @@ public final class EventTypes {
     // Add other event types here as needed
     // public static final String USER_REGISTERED = "USER_REGISTERED";
     // public static final String PAYMENT_PROCESSED = "PAYMENT_PROCESSED";
+    
+    /**
+     * Every event type, used to precompute listener routing.
+     * Register new event types here as well.
+     */
+    public static final List<String> ALL = List.of(
+            POINTS_EARNED,
+            POINTS_REDEEMED
+    );
 }
@@ -0,0 +1,16 @@
+package com.example.demo.infrastructure.event;
+
+/**
+ * What an asynchronous {@link EventPublisher} does when its buffer is full
+ */
+public enum OverflowPolicy {
+
+    /** Wait for a consumer to free a slot */
+    BLOCK,
+
+    /** Discard the oldest queued event to make room */
+    DROP_OLDEST,
+
+    /** Deliver the event on the publishing thread */
+    CALLER_RUNS
+}
@@ -0,0 +1,677 @@
+package com.example.demo.infrastructure.event.outbox;
+
+import com.example.demo.infrastructure.command.CommandTypes;
+import com.example.demo.infrastructure.command.journal.CommandJournal;
+import com.example.demo.infrastructure.command.journal.CommandRecord;
+import com.example.demo.infrastructure.event.Event;
+import com.example.demo.infrastructure.event.EventTypes;
+import com.example.demo.infrastructure.event.reward.RewardEventData;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * File-backed outbox of reward events.
+ *
+ * With the {@link CommandJournal} enabled, the outbox follows it: every durable journal
+ * record becomes an event, tagged with the record's LSN and with an event ID derived from
+ * it. On startup the outbox re-derives the events for any LSN after the last one it holds,
+ * and the journal keeps its segments until the outbox has forced their events to disk, so
+ * an event is never lost once its command is committed, whatever the outbox's own fsync
+ * interval. Without the journal, {@link com.example.demo.infrastructure.event.EventPublisher}
+ * appends each reward event on the publishing thread instead, which a crash between the
+ * balance update and the append can lose.
+ *
+ * Events get dense offsets starting at 0 and are read back by offset; each downstream
+ * consumer keeps its own committed offset and can rewind it to replay. Appends are written
+ * to the file immediately and forced to disk at a fixed interval.
+ *
+ * Events are stored in segment files named after their first offset, each holding
+ * {@code segmentRecords} events. Once every known consumer has committed an offset past a
+ * segment, the segment is deleted, so the outbox only keeps what some consumer still needs.
+ * Without any consumer nothing is deleted. A consumer can only rewind to the first offset
+ * still kept.
+ *
+ * Enable with {@code event.outbox.enabled=true}.
+ */
+@Component
+@ConditionalOnProperty(name = "event.outbox.enabled", havingValue = "true")
+public class EventOutbox implements CommandJournal.Follower {
+
+    private static final Logger log = LoggerFactory.getLogger(EventOutbox.class);
+
+    // Record layout (256 bytes):
+    // magic(4) type(1) userIdLength(1) eventIdLength(1) reserved(1) points(4) balanceAfter(4)
+    // offset(8) version(8) timestamp(8) lsn(8) eventId(40) userId(164) crc32(4)
+    private static final int RECORD_SIZE = 256;
+    private static final int MAGIC = 0x4F425832; // "OBX2"
+    private static final int LSN_OFFSET = 40;
+    private static final int EVENT_ID_OFFSET = 48;
+    private static final int MAX_EVENT_ID_BYTES = 40;
+    private static final int USER_ID_OFFSET = EVENT_ID_OFFSET + MAX_EVENT_ID_BYTES;
+    private static final int CRC_OFFSET = RECORD_SIZE - 4;
+    private static final int MAX_USER_ID_BYTES = CRC_OFFSET - USER_ID_OFFSET;
+    private static final byte POINTS_EARNED = 1;
+    private static final byte POINTS_REDEEMED = 2;
+    private static final Pattern SEGMENT_NAME = Pattern.compile("events-(\\d{20})\\.outbox");
+    private static final String OFFSETS_DIRECTORY = "offsets";
+    private static final String OFFSET_SUFFIX = ".offset";
+
+    private final Path directory;
+    private final long segmentRecords;
+
+    // First offset of each segment; the last one is being appended to. Also the monitor that
+    // orders segment deletion against consumers moving their offset back.
+    private final ConcurrentSkipListMap<Long, FileChannel> segments = new ConcurrentSkipListMap<>();
+
+    // Segment being appended to; guarded by appendLock, read by the flusher
+    private volatile FileChannel channel;
+    private long segmentFirstOffset;
+
+    // Offset of the first event that has not been deleted
+    private volatile long firstOffset;
+
+    // Serializes appends; appended is signalled for waiting readers
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private final Condition appended = appendLock.newCondition();
+    private final ByteBuffer appendBuffer = ByteBuffer.allocateDirect(RECORD_SIZE);
+    private final CRC32 appendCrc = new CRC32();
+
+    // Offset the next appended event will get
+    private volatile long endOffset;
+
+    // Journal LSN of the last event appended from the journal, and of the last one forced to disk
+    private volatile long lastLsn;
+    private volatile long durableLsn;
+
+    // Set once the outbox follows the journal; cleared when an append from it fails
+    private volatile CommandJournal journal;
+    private volatile boolean followingJournal;
+
+    private final Map<String, FileChannel> offsetFiles = new ConcurrentHashMap<>();
+    private final Map<String, Long> committedOffsets = new ConcurrentHashMap<>();
+
+    // Number of times each consumer's offset was moved with commitOffset since startup
+    private final Map<String, Long> offsetMoves = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService flusher;
+
+    /**
+     * Constructor
+     * @param directory Directory holding the outbox and consumer offsets
+     * @param fsyncIntervalMillis Maximum time between forced flushes
+     * @param segmentRecords Number of events per segment file
+     * @param journal Command journal to derive events from, if enabled
+     */
+    @Autowired
+    public EventOutbox(
+            @Value("${event.outbox.directory:data/outbox}") String directory,
+            @Value("${event.outbox.fsync-interval-ms:10}") long fsyncIntervalMillis,
+            @Value("${event.outbox.segment-records:262144}") long segmentRecords,
+            ObjectProvider<CommandJournal> journal) {
+        this(directory, fsyncIntervalMillis, segmentRecords);
+        journal.ifAvailable(this::follow);
+    }
+
+    /**
+     * Constructor without a journal; events are appended by the publisher
+     * @param directory Directory holding the outbox and consumer offsets
+     * @param fsyncIntervalMillis Maximum time between forced flushes
+     * @param segmentRecords Number of events per segment file
+     */
+    public EventOutbox(String directory, long fsyncIntervalMillis, long segmentRecords) {
+        this.directory = Paths.get(directory);
+        this.segmentRecords = Math.max(1, segmentRecords);
+        try {
+            Files.createDirectories(this.directory.resolve(OFFSETS_DIRECTORY));
+            findSegments();
+            if (segments.isEmpty()) {
+                openSegment(0L);
+            } else {
+                this.segmentFirstOffset = segments.lastKey();
+                this.channel = segments.lastEntry().getValue();
+            }
+            this.firstOffset = segments.firstKey();
+            this.endOffset = segmentFirstOffset + truncateToLastValidRecord();
+            this.lastLsn = readLastLsn();
+            channel.force(false);
+            this.durableLsn = lastLsn;
+            loadOffsets();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open event outbox in " + directory, e);
+        }
+
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "event-outbox-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(() -> {
+            flush();
+            deleteConsumedSegments();
+        }, fsyncIntervalMillis, fsyncIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Start deriving events from the journal, beginning after the last LSN already in the outbox
+     * @param journal Command journal to follow
+     */
+    void follow(CommandJournal journal) {
+        this.journal = journal;
+        followingJournal = true;
+        long before = endOffset;
+        journal.follow(lastLsn, this);
+        if (endOffset > before) {
+            log.info("Appended {} events for journal records missing from the event outbox", endOffset - before);
+        }
+    }
+
+    /**
+     * Check whether reward events are derived from the journal rather than appended by the publisher
+     * @return true while following the journal
+     */
+    public boolean isFollowingJournal() {
+        return followingJournal;
+    }
+
+    /**
+     * Append the event for a durable journal record. Called by the journal, in LSN order;
+     * records the outbox already holds are ignored.
+     * @param lsn Journal LSN of the record
+     * @param record Journal record
+     */
+    @Override
+    public void accept(long lsn, CommandRecord record) {
+        if (!followingJournal || lsn <= lastLsn) {
+            return;
+        }
+        boolean redeemed = CommandTypes.REDEEM_POINTS.equals(record.getCommandType());
+        int delta = redeemed ? -record.getPoints() : record.getPoints();
+        String eventType = redeemed ? EventTypes.POINTS_REDEEMED : EventTypes.POINTS_EARNED;
+        Event<RewardEventData> event = new Event<>("lsn-" + lsn, eventType, record.getUserId(),
+                new RewardEventData(record.getUserId(), delta, record.getBalanceAfter(), record.getVersion(),
+                        record.getEpochMillis()));
+        try {
+            append(event, lsn);
+        } catch (RuntimeException e) {
+            // Stop here so no LSN is skipped; the journal keeps the rest for the next startup
+            followingJournal = false;
+            log.error("Failed to append the event for journal LSN {}; events from it on are appended after a restart",
+                    lsn, e);
+        }
+    }
+
+    /**
+     * Get the LSN of the last journal record whose event is forced to disk
+     * @return Durable LSN, 0 if no event came from the journal
+     */
+    @Override
+    public long getDurableLsn() {
+        return durableLsn;
+    }
+
+    /**
+     * Append a reward event. Other events are ignored.
+     * @param event Event to append
+     * @return Offset of the appended event, or -1 if the event is not stored in the outbox
+     * @throws IllegalArgumentException if the event or user ID does not fit in a record
+     * @throws UncheckedIOException if the write fails
+     */
+    public long append(Event<?> event) {
+        return append(event, 0L);
+    }
+
+    private long append(Event<?> event, long lsn) {
+        byte type = codeFor(event.getEventType());
+        if (type == 0 || !(event.getEventData() instanceof RewardEventData)) {
+            return -1;
+        }
+        RewardEventData data = (RewardEventData) event.getEventData();
+        byte[] eventIdBytes = event.getEventId().getBytes(StandardCharsets.UTF_8);
+        byte[] userIdBytes = event.getUserId().getBytes(StandardCharsets.UTF_8);
+        if (eventIdBytes.length > MAX_EVENT_ID_BYTES || userIdBytes.length > MAX_USER_ID_BYTES) {
+            throw new IllegalArgumentException("Event ID or user ID too long for the outbox");
+        }
+
+        appendLock.lock();
+        try {
+            long offset = endOffset;
+            ByteBuffer record = appendBuffer;
+            record.clear();
+            record.putInt(MAGIC);
+            record.put(type);
+            record.put((byte) userIdBytes.length);
+            record.put((byte) eventIdBytes.length);
+            record.put((byte) 0);
+            record.putInt(Math.abs(data.getDelta()));
+            record.putInt(data.getBalanceAfter());
+            record.putLong(offset);
+            record.putLong(data.getVersion());
+            record.putLong(data.getTimestamp());
+            record.putLong(lsn);
+            record.put(eventIdBytes);
+            while (record.position() < USER_ID_OFFSET) {
+                record.put((byte) 0);
+            }
+            record.put(userIdBytes);
+            while (record.position() < CRC_OFFSET) {
+                record.put((byte) 0);
+            }
+            appendCrc.reset();
+            appendCrc.update(record.duplicate().flip());
+            record.putInt((int) appendCrc.getValue());
+            record.flip();
+
+            if (offset - segmentFirstOffset == segmentRecords) {
+                // Later flushes only force the new segment
+                channel.force(false);
+                openSegment(offset);
+            }
+            long position = (offset - segmentFirstOffset) * RECORD_SIZE;
+            while (record.hasRemaining()) {
+                position += channel.write(record, position);
+            }
+            endOffset = offset + 1;
+            if (lsn > 0) {
+                lastLsn = lsn;
+            }
+            appended.signalAll();
+            return offset;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to append to event outbox", e);
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * Read events starting at an offset. A read stops at the end of a segment.
+     * @param fromOffset First offset to read
+     * @param maxEvents Maximum number of events
+     * @return Events in offset order, empty if there are none yet
+     * @throws IllegalArgumentException if the events at the offset were deleted
+     */
+    public List<OutboxEvent> read(long fromOffset, int maxEvents) {
+        Map.Entry<Long, FileChannel> segment = segments.floorEntry(fromOffset);
+        if (segment == null || fromOffset < firstOffset) {
+            throw new IllegalArgumentException("Offset " + fromOffset + " was deleted, the outbox starts at " + firstOffset);
+        }
+        long end = Math.min(Math.min(endOffset, fromOffset + maxEvents), segment.getKey() + segmentRecords);
+        if (fromOffset >= end) {
+            return Collections.emptyList();
+        }
+
+        ByteBuffer records = ByteBuffer.allocate((int) (end - fromOffset) * RECORD_SIZE);
+        try {
+            long position = (fromOffset - segment.getKey()) * RECORD_SIZE;
+            while (records.hasRemaining()) {
+                int read = segment.getValue().read(records, position + records.position());
+                if (read < 0) {
+                    break;
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read event outbox", e);
+        }
+
+        List<OutboxEvent> events = new ArrayList<>((int) (end - fromOffset));
+        byte[] bytes = records.array();
+        CRC32 crc = new CRC32();
+        for (int start = 0; start + RECORD_SIZE <= records.position(); start += RECORD_SIZE) {
+            if (!isValid(bytes, start, crc)) {
+                throw new IllegalStateException("Corrupt event outbox record at offset " + (fromOffset + start / RECORD_SIZE));
+            }
+            events.add(decode(records, start));
+        }
+        return events;
+    }
+
+    /**
+     * Wait until an event exists at the given offset
+     * @param offset Offset to wait for
+     * @param timeout Maximum time to wait
+     * @param unit Unit of the timeout
+     * @return true if the event is available
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean awaitOffset(long offset, long timeout, TimeUnit unit) throws InterruptedException {
+        if (offset < endOffset) {
+            return true;
+        }
+        long nanos = unit.toNanos(timeout);
+        appendLock.lockInterruptibly();
+        try {
+            while (offset >= endOffset) {
+                if (nanos <= 0) {
+                    return false;
+                }
+                nanos = appended.awaitNanos(nanos);
+            }
+            return true;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * Get the offset the next appended event will get
+     * @return End offset
+     */
+    public long getEndOffset() {
+        return endOffset;
+    }
+
+    /**
+     * Get the offset of the oldest event still kept
+     * @return First offset
+     */
+    public long getFirstOffset() {
+        return firstOffset;
+    }
+
+    /**
+     * Get a consumer's committed offset
+     * @param consumerName Consumer name
+     * @return Next offset the consumer has not processed, the first offset still kept for a new consumer
+     */
+    public long getCommittedOffset(String consumerName) {
+        return committedOffsets.computeIfAbsent(consumerName, this::loadOffset);
+    }
+
+    /**
+     * Store a consumer's offset. Setting an earlier offset replays events from there.
+     * @param consumerName Consumer name
+     * @param offset Next offset the consumer has not processed
+     */
+    public void commitOffset(String consumerName, long offset) {
+        FileChannel offsetFile = offsetFile(consumerName);
+        synchronized (segments) {
+            if (offset < firstOffset || offset > endOffset) {
+                throw new IllegalArgumentException("Offset " + offset + " is outside the outbox ("
+                        + firstOffset + " to " + endOffset + ")");
+            }
+            synchronized (offsetFile) {
+                writeOffset(consumerName, offsetFile, offset);
+                offsetMoves.merge(consumerName, 1L, Long::sum);
+            }
+        }
+    }
+
+    /**
+     * Get how many times a consumer's offset was moved with {@link #commitOffset(String, long)}.
+     * Read it before the committed offset when starting a batch.
+     * @param consumerName Consumer name
+     * @return Number of moves since startup
+     */
+    public long getOffsetMoves(String consumerName) {
+        return offsetMoves.getOrDefault(consumerName, 0L);
+    }
+
+    /**
+     * Store a consumer's offset after a batch, unless the offset was moved while the batch
+     * was delivered. Comparing moves rather than offsets also catches a replay from the
+     * offset the batch started at.
+     * @param consumerName Consumer name
+     * @param moves Result of {@link #getOffsetMoves(String)} when the batch started
+     * @param offset Next offset the consumer has not processed
+     * @return false if the offset was moved in the meantime, e.g. for a replay
+     */
+    public boolean advanceOffset(String consumerName, long moves, long offset) {
+        FileChannel offsetFile = offsetFile(consumerName);
+        synchronized (offsetFile) {
+            if (getOffsetMoves(consumerName) != moves) {
+                return false;
+            }
+            writeOffset(consumerName, offsetFile, offset);
+            return true;
+        }
+    }
+
+    /**
+     * Flush pending events and offsets and stop the background flusher
+     */
+    @PreDestroy
+    public void close() throws IOException {
+        if (journal != null) {
+            journal.unfollow(this);
+        }
+        flusher.shutdown();
+        flush();
+        for (FileChannel segment : segments.values()) {
+            segment.close();
+        }
+        for (FileChannel offsetFile : offsetFiles.values()) {
+            offsetFile.close();
+        }
+    }
+
+    private void flush() {
+        try {
+            // Every event up to this LSN has been written before it was published
+            long lsn = lastLsn;
+            channel.force(false);
+            durableLsn = lsn;
+            for (FileChannel offsetFile : offsetFiles.values()) {
+                offsetFile.force(false);
+            }
+        } catch (IOException e) {
+            log.error("Failed to flush event outbox", e);
+        }
+    }
+
+    /**
+     * Delete segments whose events every known consumer has committed.
+     * Runs after a flush, so the offsets it relies on are on disk.
+     */
+    private void deleteConsumedSegments() {
+        synchronized (segments) {
+            if (committedOffsets.isEmpty()) {
+                return;
+            }
+            long consumed = Collections.min(committedOffsets.values());
+            Map.Entry<Long, FileChannel> segment;
+            while ((segment = segments.firstEntry()) != null) {
+                Long next = segments.higherKey(segment.getKey());
+                if (next == null || next > consumed) {
+                    return;
+                }
+                Path file = segmentFile(segment.getKey());
+                try {
+                    segment.getValue().close();
+                    Files.deleteIfExists(file);
+                } catch (IOException e) {
+                    log.warn("Failed to delete event outbox segment {}", file, e);
+                    return;
+                }
+                segments.remove(segment.getKey());
+                firstOffset = next;
+                log.info("Deleted event outbox segment {}", file.getFileName());
+            }
+        }
+    }
+
+    // Caller must hold the offset file's monitor
+    private void writeOffset(String consumerName, FileChannel offsetFile, long offset) {
+        try {
+            offsetFile.write(ByteBuffer.allocate(Long.BYTES).putLong(0, offset), 0);
+            committedOffsets.put(consumerName, offset);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to commit outbox offset for " + consumerName, e);
+        }
+    }
+
+    private long loadOffset(String consumerName) {
+        try {
+            ByteBuffer value = ByteBuffer.allocate(Long.BYTES);
+            FileChannel offsetFile = offsetFile(consumerName);
+            if (offsetFile.read(value, 0) < Long.BYTES) {
+                return firstOffset;
+            }
+            // An offset that was not flushed before a crash may point into a deleted segment
+            return Math.max(firstOffset, Math.min(value.getLong(0), endOffset));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read outbox offset for " + consumerName, e);
+        }
+    }
+
+    /**
+     * Load the offset of every consumer that ever committed one, so that segments are kept
+     * for consumers that have not started yet
+     */
+    private void loadOffsets() throws IOException {
+        try (Stream<Path> files = Files.list(directory.resolve(OFFSETS_DIRECTORY))) {
+            files.map(file -> file.getFileName().toString())
+                    .filter(name -> name.endsWith(OFFSET_SUFFIX))
+                    .forEach(name -> getCommittedOffset(name.substring(0, name.length() - OFFSET_SUFFIX.length())));
+        }
+    }
+
+    private FileChannel offsetFile(String consumerName) {
+        return offsetFiles.computeIfAbsent(consumerName, name -> {
+            try {
+                return FileChannel.open(directory.resolve(OFFSETS_DIRECTORY).resolve(name + OFFSET_SUFFIX),
+                        StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to open outbox offset for " + name, e);
+            }
+        });
+    }
+
+    private OutboxEvent decode(ByteBuffer records, int start) {
+        byte[] bytes = records.array();
+        return new OutboxEvent(
+                records.getLong(start + 16),
+                new String(bytes, start + EVENT_ID_OFFSET, bytes[start + 6] & 0xFF, StandardCharsets.UTF_8),
+                typeFor(bytes[start + 4]),
+                new String(bytes, start + USER_ID_OFFSET, bytes[start + 5] & 0xFF, StandardCharsets.UTF_8),
+                records.getInt(start + 8),
+                records.getInt(start + 12),
+                records.getLong(start + 24),
+                records.getLong(start + 32));
+    }
+
+    /**
+     * Get the journal LSN of the last event
+     * @return LSN, or 0 if the outbox is empty or the event was appended by the publisher
+     */
+    private long readLastLsn() throws IOException {
+        long last = endOffset - 1;
+        Map.Entry<Long, FileChannel> segment = segments.floorEntry(last);
+        if (last < 0 || segment == null) {
+            return 0L;
+        }
+        ByteBuffer value = ByteBuffer.allocate(Long.BYTES);
+        segment.getValue().read(value, (last - segment.getKey()) * RECORD_SIZE + LSN_OFFSET);
+        return value.getLong(0);
+    }
+
+    private void findSegments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Matcher matcher = SEGMENT_NAME.matcher(file.getFileName().toString());
+                if (matcher.matches()) {
+                    segments.put(Long.parseLong(matcher.group(1)), FileChannel.open(file,
+                            StandardOpenOption.READ, StandardOpenOption.WRITE));
+                }
+            }
+        }
+    }
+
+    private void openSegment(long startOffset) throws IOException {
+        FileChannel next = FileChannel.open(segmentFile(startOffset),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        CommandJournal.forceDirectory(directory);
+        segments.put(startOffset, next);
+        this.channel = next;
+        this.segmentFirstOffset = startOffset;
+    }
+
+    private Path segmentFile(long startOffset) {
+        return directory.resolve(String.format("events-%020d.outbox", startOffset));
+    }
+
+    private static boolean isValid(byte[] bytes, int start, CRC32 crc) {
+        if (ByteBuffer.wrap(bytes).getInt(start) != MAGIC) {
+            return false;
+        }
+        crc.reset();
+        crc.update(bytes, start, CRC_OFFSET);
+        return ByteBuffer.wrap(bytes).getInt(start + CRC_OFFSET) == (int) crc.getValue();
+    }
+
+    /**
+     * Drop a partially written record at the end of the last segment
+     * @return Number of complete events in the last segment
+     */
+    private long truncateToLastValidRecord() throws IOException {
+        long size = channel.size();
+        long end = size - size % RECORD_SIZE;
+        ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+        CRC32 crc = new CRC32();
+        while (end > 0) {
+            record.clear();
+            channel.read(record, end - RECORD_SIZE);
+            if (isValid(record.array(), 0, crc)) {
+                break;
+            }
+            end -= RECORD_SIZE;
+        }
+        if (size > end) {
+            log.warn("Truncating {} bytes of incomplete event outbox data", size - end);
+            channel.truncate(end);
+        }
+        return end / RECORD_SIZE;
+    }
+
+    private static byte codeFor(String eventType) {
+        switch (eventType) {
+            case EventTypes.POINTS_EARNED:
+                return POINTS_EARNED;
+            case EventTypes.POINTS_REDEEMED:
+                return POINTS_REDEEMED;
+            default:
+                return 0;
+        }
+    }
+
+    private static String typeFor(byte code) {
+        switch (code) {
+            case POINTS_EARNED:
+                return EventTypes.POINTS_EARNED;
+            case POINTS_REDEEMED:
+                return EventTypes.POINTS_REDEEMED;
+            default:
+                throw new IllegalStateException("Unknown outbox event code: " + code);
+        }
+    }
+}
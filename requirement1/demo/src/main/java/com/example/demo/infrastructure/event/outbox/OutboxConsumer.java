@@ -0,0 +1,25 @@
+package com.example.demo.infrastructure.event.outbox;
+
+import java.util.List;
+
+/**
+ * Downstream consumer of the reward event outbox.
+ * Each consumer has its own committed offset and receives every event at least once:
+ * the offset only advances after {@link #onEvents(List)} returns, so events are
+ * redelivered after a failure or restart. Consumers should be idempotent,
+ * e.g. by remembering the last offset or event ID they processed.
+ */
+public interface OutboxConsumer {
+
+    /**
+     * Get the name under which this consumer's offset is stored
+     * @return Stable, file-name-safe consumer name
+     */
+    String getConsumerName();
+
+    /**
+     * Handle a batch of events, in offset order
+     * @param events The events to handle
+     */
+    void onEvents(List<OutboxEvent> events);
+}
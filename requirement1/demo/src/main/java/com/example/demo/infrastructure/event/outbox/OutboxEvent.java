@@ -0,0 +1,28 @@
+package com.example.demo.infrastructure.event.outbox;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Reward event as stored in the outbox
+ */
+@Getter
+@RequiredArgsConstructor
+public class OutboxEvent {
+
+    // Position in the outbox, 0 being the first event ever appended
+    private final long offset;
+
+    private final String eventId;
+    private final String eventType;
+    private final String userId;
+
+    // Points earned or redeemed
+    private final int points;
+
+    // Balance and user version right after the change
+    private final int balanceAfter;
+    private final long version;
+
+    private final long timestamp;
+}
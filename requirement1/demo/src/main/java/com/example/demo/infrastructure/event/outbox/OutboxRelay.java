@@ -0,0 +1,113 @@
+package com.example.demo.infrastructure.event.outbox;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Delivers outbox events to every {@link OutboxConsumer} at least once.
+ * Each consumer gets its own thread reading from its committed offset, so a slow
+ * or failing consumer never holds up reward writes or the other consumers.
+ * A failed batch is retried after a pause; the offset advances only on success.
+ */
+@Component
+@ConditionalOnProperty(name = "event.outbox.enabled", havingValue = "true")
+public class OutboxRelay {
+
+    private static final Logger log = LoggerFactory.getLogger(OutboxRelay.class);
+
+    private final EventOutbox outbox;
+    private final int batchSize;
+    private final long retryDelayMillis;
+    private final List<Thread> workers = new ArrayList<>();
+    private volatile boolean running = true;
+
+    /**
+     * Constructor
+     * @param outbox Outbox to read from
+     * @param consumers Consumers to deliver to
+     * @param batchSize Maximum events per delivery
+     * @param retryDelayMillis Pause before redelivering a batch that failed
+     */
+    public OutboxRelay(
+            EventOutbox outbox,
+            ObjectProvider<OutboxConsumer> consumers,
+            @Value("${event.outbox.batch-size:500}") int batchSize,
+            @Value("${event.outbox.retry-delay-ms:1000}") long retryDelayMillis) {
+        this.outbox = outbox;
+        this.batchSize = Math.max(1, batchSize);
+        this.retryDelayMillis = retryDelayMillis;
+
+        consumers.orderedStream().forEach(consumer -> {
+            Thread worker = new Thread(() -> relay(consumer), "outbox-relay-" + consumer.getConsumerName());
+            worker.setDaemon(true);
+            worker.start();
+            workers.add(worker);
+        });
+    }
+
+    /**
+     * Move a consumer back (or forward) so delivery continues from the given offset
+     * @param consumerName Consumer name
+     * @param offset Offset to deliver next
+     * @throws IllegalArgumentException if the offset is before the oldest event still kept
+     */
+    public void replayFrom(String consumerName, long offset) {
+        outbox.commitOffset(consumerName, offset);
+    }
+
+    /**
+     * Stop all relay threads
+     */
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        for (Thread worker : workers) {
+            worker.interrupt();
+        }
+    }
+
+    private void relay(OutboxConsumer consumer) {
+        String name = consumer.getConsumerName();
+        while (running) {
+            try {
+                long moves = outbox.getOffsetMoves(name);
+                long offset = outbox.getCommittedOffset(name);
+                if (!outbox.awaitOffset(offset, 100, TimeUnit.MILLISECONDS)) {
+                    continue;
+                }
+
+                List<OutboxEvent> events = outbox.read(offset, batchSize);
+                try {
+                    consumer.onEvents(events);
+                } catch (RuntimeException e) {
+                    log.warn("Outbox consumer {} failed at offset {}, retrying in {} ms", name, offset, retryDelayMillis, e);
+                    Thread.sleep(retryDelayMillis);
+                    continue;
+                }
+
+                // Leaves the offset alone if it was moved for a replay while this batch was delivered
+                outbox.advanceOffset(name, moves, offset + events.size());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                log.error("Outbox relay for {} failed", name, e);
+                try {
+                    Thread.sleep(retryDelayMillis);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+}
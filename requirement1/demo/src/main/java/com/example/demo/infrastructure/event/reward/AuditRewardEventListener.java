@@ -0,0 +1,363 @@
+package com.example.demo.infrastructure.event.reward;
+
+import com.example.demo.infrastructure.event.Event;
+import com.example.demo.infrastructure.event.EventListener;
+import com.example.demo.infrastructure.event.EventTypes;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Listener that writes reward events to rotating JSON-lines audit files.
+ *
+ * Events are encoded straight into a preallocated byte buffer (numbers and strings
+ * are written byte by byte), so recording an event allocates nothing. A background
+ * thread swaps the buffer with a second one, writes it through a {@link FileChannel}
+ * and starts a new file once the current one reaches the size limit or the rotation
+ * interval. Publishers only wait if both buffers are full.
+ * Events published after {@link #close()} are dropped and counted, as are failed writes.
+ *
+ * Enable with {@code reward.audit.sink=file}, which replaces {@link LoggingRewardEventListener}.
+ */
+@Component
+@ConditionalOnProperty(name = "reward.audit.sink", havingValue = "file")
+public class AuditRewardEventListener implements EventListener<Event<RewardEventData>> {
+
+    private static final Logger log = LoggerFactory.getLogger(AuditRewardEventListener.class);
+
+    private static final String FILE_PREFIX = "rewards-audit-";
+    private static final String FILE_SUFFIX = ".jsonl";
+    private static final byte[] TIMESTAMP = ascii("{\"ts\":");
+    private static final byte[] EVENT_ID = ascii(",\"id\":\"");
+    private static final byte[] TYPE = ascii("\",\"type\":\"");
+    private static final byte[] USER_ID = ascii("\",\"user\":\"");
+    private static final byte[] DELTA = ascii("\",\"delta\":");
+    private static final byte[] BALANCE = ascii(",\"balance\":");
+    private static final byte[] VERSION = ascii(",\"version\":");
+    private static final byte[] END = ascii("}\n");
+    private static final byte[] HEX = ascii("0123456789abcdef");
+    private static final byte[] LONG_MIN = ascii(Long.toString(Long.MIN_VALUE));
+
+    // Event ID, type and user ID are each truncated to this many chars
+    private static final int MAX_FIELD_CHARS = 256;
+
+    // Largest encoding of one event: three fields of up to 6 bytes per char (an escaped
+    // control char), four numbers of up to 20 chars, and the fixed JSON around them
+    private static final int MAX_RECORD_BYTES = 3 * MAX_FIELD_CHARS * 6 + 4 * 20
+            + TIMESTAMP.length + EVENT_ID.length + TYPE.length + USER_ID.length
+            + DELTA.length + BALANCE.length + VERSION.length + END.length;
+
+    private final Path directory;
+    private final long maxFileBytes;
+    private final long rotationMillis;
+    private final long flushIntervalMillis;
+
+    // Guards the buffers; the writer thread owns the channel
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition hasData = lock.newCondition();
+    private final Condition hasSpace = lock.newCondition();
+    private ByteBuffer active;
+    private ByteBuffer writing;
+    private final byte[] digits = new byte[20];
+
+    private FileChannel channel;
+    private long fileBytes;
+    private long fileOpenedMillis;
+
+    private final Thread writer;
+    private volatile boolean running = true;
+
+    private final AtomicLong droppedEvents = new AtomicLong();
+    private final AtomicLong writeFailures = new AtomicLong();
+
+    /**
+     * Constructor
+     * @param directory Directory holding the audit files
+     * @param bufferBytes Size of each of the two in-memory buffers
+     * @param maxFileBytes Size after which a new file is started
+     * @param rotationMillis Age after which a new file is started
+     * @param flushIntervalMillis Maximum time an event stays in memory
+     * @param meterRegistry Registry for drop and failure counters, if available
+     */
+    public AuditRewardEventListener(
+            @Value("${reward.audit.directory:data/audit}") String directory,
+            @Value("${reward.audit.buffer-bytes:1048576}") int bufferBytes,
+            @Value("${reward.audit.max-file-bytes:268435456}") long maxFileBytes,
+            @Value("${reward.audit.rotation-interval-ms:3600000}") long rotationMillis,
+            @Value("${reward.audit.flush-interval-ms:200}") long flushIntervalMillis,
+            ObjectProvider<MeterRegistry> meterRegistry) {
+        this.directory = Paths.get(directory);
+        this.maxFileBytes = maxFileBytes;
+        this.rotationMillis = rotationMillis;
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.active = ByteBuffer.allocateDirect(Math.max(bufferBytes, MAX_RECORD_BYTES));
+        this.writing = ByteBuffer.allocateDirect(Math.max(bufferBytes, MAX_RECORD_BYTES));
+
+        try {
+            Files.createDirectories(this.directory);
+            openFile();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open audit log in " + directory, e);
+        }
+
+        this.writer = new Thread(this::writeLoop, "reward-audit-writer");
+        writer.setDaemon(true);
+        writer.start();
+
+        meterRegistry.ifAvailable(this::registerMetrics);
+    }
+
+    @Override
+    public void onEvent(Event<RewardEventData> event) {
+        lock.lock();
+        try {
+            append(event);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void onEvents(List<Event<RewardEventData>> events) {
+        lock.lock();
+        try {
+            for (int i = 0; i < events.size(); i++) {
+                append(events.get(i));
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean supportsEventType(String eventType) {
+        return eventType.equals(EventTypes.POINTS_EARNED) ||
+               eventType.equals(EventTypes.POINTS_REDEEMED);
+    }
+
+    /**
+     * Write buffered events and close the current file
+     */
+    @PreDestroy
+    public void close() {
+        running = false;
+        lock.lock();
+        try {
+            hasData.signal();
+            hasSpace.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            writer.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Get the number of events dropped because the listener was closed
+     * @return Dropped events
+     */
+    public long getDroppedEvents() {
+        return droppedEvents.get();
+    }
+
+    /**
+     * Get the number of buffer writes that failed; the events in those buffers are lost
+     * @return Failed writes
+     */
+    public long getWriteFailures() {
+        return writeFailures.get();
+    }
+
+    // Caller must hold lock
+    private void append(Event<RewardEventData> event) {
+        // The writer stops swapping buffers once closed, so waiting for space would never end
+        while (running && active.remaining() < MAX_RECORD_BYTES) {
+            hasData.signal();
+            hasSpace.awaitUninterruptibly();
+        }
+        if (!running) {
+            droppedEvents.incrementAndGet();
+            return;
+        }
+
+        RewardEventData data = event.getEventData();
+        ByteBuffer out = active;
+        out.put(TIMESTAMP);
+        putLong(out, data.getTimestamp());
+        out.put(EVENT_ID);
+        putString(out, event.getEventId());
+        out.put(TYPE);
+        putString(out, event.getEventType());
+        out.put(USER_ID);
+        putString(out, event.getUserId());
+        out.put(DELTA);
+        putLong(out, data.getDelta());
+        out.put(BALANCE);
+        putLong(out, data.getBalanceAfter());
+        out.put(VERSION);
+        putLong(out, data.getVersion());
+        out.put(END);
+
+        if (out.position() > out.capacity() / 2) {
+            hasData.signal();
+        }
+    }
+
+    // Caller must hold lock
+    private void putLong(ByteBuffer out, long value) {
+        if (value == Long.MIN_VALUE) {
+            out.put(LONG_MIN);
+            return;
+        }
+        if (value < 0) {
+            out.put((byte) '-');
+            value = -value;
+        }
+        int length = 0;
+        do {
+            digits[length++] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        while (length > 0) {
+            out.put(digits[--length]);
+        }
+    }
+
+    // JSON string body as UTF-8, truncated to MAX_FIELD_CHARS chars
+    private static void putString(ByteBuffer out, String value) {
+        int length = Math.min(value.length(), MAX_FIELD_CHARS);
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                out.put((byte) '\\').put((byte) c);
+            } else if (c < 0x20) {
+                out.put((byte) '\\').put((byte) 'u').put((byte) '0').put((byte) '0')
+                        .put(HEX[c >> 4]).put(HEX[c & 0xF]);
+            } else if (c < 0x80) {
+                out.put((byte) c);
+            } else if (c < 0x800) {
+                out.put((byte) (0xC0 | (c >> 6))).put((byte) (0x80 | (c & 0x3F)));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                out.put((byte) (0xF0 | (codePoint >> 18)))
+                        .put((byte) (0x80 | ((codePoint >> 12) & 0x3F)))
+                        .put((byte) (0x80 | ((codePoint >> 6) & 0x3F)))
+                        .put((byte) (0x80 | (codePoint & 0x3F)));
+            } else {
+                out.put((byte) (0xE0 | (c >> 12)))
+                        .put((byte) (0x80 | ((c >> 6) & 0x3F)))
+                        .put((byte) (0x80 | (c & 0x3F)));
+            }
+        }
+    }
+
+    private void writeLoop() {
+        while (true) {
+            boolean stopping;
+            lock.lock();
+            try {
+                if (active.position() == 0 && running) {
+                    hasData.awaitNanos(TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis));
+                }
+                stopping = !running;
+                ByteBuffer full = active;
+                active = writing;
+                writing = full;
+                hasSpace.signalAll();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+                hasSpace.signalAll();
+                stopping = true;
+            } finally {
+                lock.unlock();
+            }
+
+            try {
+                writing.flip();
+                while (writing.hasRemaining()) {
+                    fileBytes += channel.write(writing);
+                }
+                if (stopping) {
+                    channel.force(false);
+                    channel.close();
+                    return;
+                }
+                if (fileBytes >= maxFileBytes || System.currentTimeMillis() - fileOpenedMillis >= rotationMillis) {
+                    rotate();
+                }
+            } catch (IOException e) {
+                writeFailures.incrementAndGet();
+                log.error("Failed to write reward audit log", e);
+                if (stopping) {
+                    closeQuietly();
+                    return;
+                }
+            } finally {
+                writing.clear();
+            }
+        }
+    }
+
+    private void closeQuietly() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            log.warn("Failed to close reward audit log", e);
+        }
+    }
+
+    private void rotate() throws IOException {
+        if (fileBytes == 0) {
+            fileOpenedMillis = System.currentTimeMillis();
+            return;
+        }
+        channel.force(false);
+        channel.close();
+        openFile();
+    }
+
+    private void openFile() throws IOException {
+        fileOpenedMillis = System.currentTimeMillis();
+        Path file = directory.resolve(FILE_PREFIX + fileOpenedMillis + FILE_SUFFIX);
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        fileBytes = channel.size();
+    }
+
+    private void registerMetrics(MeterRegistry registry) {
+        FunctionCounter.builder("reward.audit.dropped", droppedEvents, AtomicLong::get)
+                .description("Audit events dropped because the listener was closed")
+                .register(registry);
+        FunctionCounter.builder("reward.audit.write.failures", writeFailures, AtomicLong::get)
+                .description("Audit buffer writes that failed, losing the buffered events")
+                .register(registry);
+    }
+
+    private static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+}
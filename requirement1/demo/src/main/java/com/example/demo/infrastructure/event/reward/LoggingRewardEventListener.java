@@ -5,12 +5,15 @@ import com.example.demo.infrastructure.event.EventListener;
 import com.example.demo.infrastructure.event.EventTypes;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Component;
 
 /**
- * Listener for reward events that logs them
+ * Listener for reward events that logs them.
+ * Default audit sink; {@code reward.audit.sink=file} switches to {@link AuditRewardEventListener}.
  */
 @Component
+@ConditionalOnProperty(name = "reward.audit.sink", havingValue = "log", matchIfMissing = true)
 public class LoggingRewardEventListener implements EventListener<Event<RewardEventData>> {
     
     private static final Logger logger = LoggerFactory.getLogger(LoggingRewardEventListener.class);
@@ -19,8 +22,8 @@ public class LoggingRewardEventListener implements EventListener<Event<RewardEve
     public void onEvent(Event<RewardEventData> event) {
         RewardEventData data = event.getEventData();
         String userId = event.getUserId();
-        int points = data.getPoints();
-        int newBalance = data.getUserRewardPoints().getRewardPoints();
+        int points = Math.abs(data.getDelta());
+        int newBalance = data.getBalanceAfter();
         
         switch (event.getEventType()) {
             case EventTypes.POINTS_EARNED:
@@ -5,11 +5,37 @@ import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 
 /**
- * Data for reward events
+ * Immutable data for reward events.
+ * Captures the user's balance and version at the moment of the change, so
+ * listeners see the correct values however late the event is delivered, and
+ * queued events do not keep the user's ledger reachable.
  */
 @Getter
 @RequiredArgsConstructor
 public class RewardEventData {
-    private final int points;
-    private final UserRewardPoints userRewardPoints;
+    private final String userId;
+    
+    // Change in points: positive when earned, negative when redeemed
+    private final int delta;
+    
+    private final int balanceAfter;
+    private final long version;
+    private final long timestamp;
+    
+    /**
+     * Capture a change from the user's current state.
+     * Call while holding exclusive access to the user, right after the change.
+     * @param userRewardPoints User reward points after the change
+     * @param delta Change in points
+     * @return Event data
+     */
+    public static RewardEventData of(UserRewardPoints userRewardPoints, int delta) {
+        UserRewardPoints.State state = userRewardPoints.getState();
+        return new RewardEventData(
+                userRewardPoints.getUserId(),
+                delta,
+                state.getBalance(),
+                state.getVersion(),
+                System.currentTimeMillis());
+    }
 }
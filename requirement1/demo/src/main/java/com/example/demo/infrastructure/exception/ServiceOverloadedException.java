@@ -0,0 +1,10 @@
+package com.example.demo.infrastructure.exception;
+
+/**
+ * Exception thrown when work is shed because a bounded pool is saturated
+ */
+public class ServiceOverloadedException extends RuntimeException {
+    public ServiceOverloadedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,29 @@
+package com.example.demo.infrastructure.hash;
+
+/**
+ * 64-bit string hash shared by the open-addressing tables (user store index,
+ * packed rate limiter). Not for security: it is fast and well mixed, not collision resistant.
+ */
+public final class StringHash {
+
+    private StringHash() {
+    }
+
+    /**
+     * Hash a string with 64-bit FNV-1a followed by a finalizer, so the low bits used
+     * to pick a table slot are well mixed
+     * @param value String to hash
+     * @return 64-bit hash
+     */
+    public static long hash64(CharSequence value) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            h ^= value.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return h;
+    }
+}
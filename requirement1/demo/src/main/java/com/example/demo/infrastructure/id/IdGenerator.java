@@ -0,0 +1,13 @@
+package com.example.demo.infrastructure.id;
+
+/**
+ * Generates unique identifiers for events, requests and verification results
+ */
+public interface IdGenerator {
+
+    /**
+     * Generate a new unique identifier
+     * @return Identifier
+     */
+    String nextId();
+}
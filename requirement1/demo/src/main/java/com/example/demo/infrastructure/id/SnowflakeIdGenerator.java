@@ -0,0 +1,100 @@
+package com.example.demo.infrastructure.id;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Lock-free, time-ordered ID generator in the Snowflake style.
+ *
+ * Each ID is a 63-bit number: milliseconds since 2024-01-01 (41 bits), a per-millisecond
+ * sequence (12 bits) and the node ID (10 bits). The last issued ID is kept in a single
+ * {@link AtomicLong}, so generation is one compare-and-set and IDs from one node are
+ * strictly increasing, even if the clock steps backwards or a millisecond's 4096
+ * sequence numbers run out (the sequence then carries into the next millisecond).
+ *
+ * IDs are rendered as 13 Crockford base32 characters, so string order matches
+ * generation order. Every instance must run with a distinct node ID.
+ */
+@Component
+@ConditionalOnProperty(name = "id.generator.type", havingValue = "snowflake", matchIfMissing = true)
+public class SnowflakeIdGenerator implements IdGenerator {
+
+    // 2024-01-01T00:00:00Z
+    private static final long EPOCH_MILLIS = 1704067200000L;
+    private static final int NODE_BITS = 10;
+    private static final int SEQUENCE_BITS = 12;
+    private static final int TIMESTAMP_SHIFT = NODE_BITS + SEQUENCE_BITS;
+    private static final long SEQUENCE_INCREMENT = 1L << NODE_BITS;
+    private static final char[] ALPHABET = "0123456789ABCDEFGHJKMNPQRSTVWXYZ".toCharArray();
+    private static final int ENCODED_LENGTH = 13;
+
+    public static final int MAX_NODE_ID = (1 << NODE_BITS) - 1;
+
+    private final long nodeId;
+    private final LongSupplier clock;
+
+    // Last issued ID
+    private final AtomicLong last = new AtomicLong();
+
+    /**
+     * Constructor
+     * @param nodeId Node ID between 0 and {@link #MAX_NODE_ID}, unique per running instance
+     */
+    @Autowired
+    public SnowflakeIdGenerator(@Value("${id.generator.node-id:0}") int nodeId) {
+        this(nodeId, System::currentTimeMillis);
+    }
+
+    /**
+     * Constructor with a custom clock, for tests
+     * @param nodeId Node ID between 0 and {@link #MAX_NODE_ID}
+     * @param clock Source of epoch milliseconds
+     */
+    SnowflakeIdGenerator(int nodeId, LongSupplier clock) {
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("Node ID must be between 0 and " + MAX_NODE_ID);
+        }
+        this.nodeId = nodeId;
+        this.clock = clock;
+    }
+
+    @Override
+    public String nextId() {
+        return encode(nextLongId());
+    }
+
+    /**
+     * Generate a new ID in numeric form
+     * @return Positive, strictly increasing ID
+     */
+    public long nextLongId() {
+        while (true) {
+            long previous = last.get();
+            long startOfMillisecond = ((clock.getAsLong() - EPOCH_MILLIS) << TIMESTAMP_SHIFT) | nodeId;
+            // A new millisecond restarts the sequence; otherwise continue after the last ID
+            long next = startOfMillisecond > previous ? startOfMillisecond : previous + SEQUENCE_INCREMENT;
+            if (last.compareAndSet(previous, next)) {
+                return next;
+            }
+        }
+    }
+
+    /**
+     * Render an ID as fixed-width Crockford base32
+     * @param id Numeric ID
+     * @return 13-character string that sorts like the number
+     */
+    public static String encode(long id) {
+        char[] chars = new char[ENCODED_LENGTH];
+        for (int i = ENCODED_LENGTH - 1; i >= 0; i--) {
+            chars[i] = ALPHABET[(int) (id & 31)];
+            id >>>= 5;
+        }
+        return new String(chars);
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.demo.infrastructure.id;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.UUID;
+
+/**
+ * ID generator producing random UUIDs, for deployments that need unguessable IDs
+ */
+@Component
+@ConditionalOnProperty(name = "id.generator.type", havingValue = "uuid")
+public class UuidIdGenerator implements IdGenerator {
+
+    @Override
+    public String nextId() {
+        return UUID.randomUUID().toString();
+    }
+}
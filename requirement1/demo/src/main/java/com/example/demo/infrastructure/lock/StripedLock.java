@@ -0,0 +1,64 @@
+package com.example.demo.infrastructure.lock;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Fixed-size table of locks indexed by key hash.
+ * Operations on the same key always share a lock, while operations on different
+ * keys usually land on different stripes and can proceed in parallel.
+ * Memory use is bounded by the stripe count regardless of how many keys are seen,
+ * so there are no per-key entries to create or evict.
+ */
+@Component
+public class StripedLock {
+
+    private final Lock[] stripes;
+    private final int mask;
+
+    /**
+     * Constructor
+     * @param stripeCount Requested number of stripes (rounded up to a power of two)
+     */
+    public StripedLock(@Value("${reward.lock.stripes:1024}") int stripeCount) {
+        if (stripeCount <= 0) {
+            throw new IllegalArgumentException("Stripe count must be positive");
+        }
+        int size = Integer.highestOneBit(stripeCount);
+        if (size < stripeCount) {
+            size <<= 1;
+        }
+        this.stripes = new Lock[size];
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        this.mask = size - 1;
+    }
+
+    /**
+     * Get the lock guarding the given key
+     * @param key The key (e.g. a user ID)
+     * @return The lock for the key's stripe
+     */
+    public Lock get(String key) {
+        return stripes[indexFor(key)];
+    }
+
+    /**
+     * Get the number of stripes
+     * @return Stripe count
+     */
+    public int size() {
+        return stripes.length;
+    }
+
+    private int indexFor(String key) {
+        int h = key.hashCode();
+        // Spread the high bits so that keys with similar hashes use different stripes
+        h ^= (h >>> 16);
+        return h & mask;
+    }
+}
@@ -0,0 +1,272 @@
+package com.example.demo.infrastructure.ratelimit;
+
+import com.example.demo.infrastructure.hash.StringHash;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongSupplier;
+
+/**
+ * Allocation-free token bucket rate limiter for very large numbers of users.
+ *
+ * Each user is one slot of a preallocated open-addressing table: a 64-bit hash of the
+ * username and a state word packing the remaining tokens (23 bits) with the time of the
+ * last refill (40 bits of milliseconds). A request is a probe for the slot and one
+ * compare-and-set of its state, so no objects are created per user or per request.
+ * Refill matches the bucket4j engine: {@code refillTokens} are added at the end of each
+ * full refill period, up to the capacity.
+ *
+ * The table holds twice the {@code maximumSize} of {@code spring.cache.caffeine.spec} slots,
+ * the same bound the bucket4j engine uses. A new user whose
+ * probe sequence is full takes over the slot of a user idle long enough for their bucket
+ * to have refilled completely, which is the same as starting from a fresh bucket. The
+ * takeover first claims the idle state with a compare-and-set, so a request from the old
+ * owner in the meantime keeps the slot; the old owner's later requests find their key gone
+ * and start over in a new slot. If no idle slot is found the request is allowed and
+ * counted as an overflow.
+ *
+ * Enable with {@code rate.limit.engine=packed}.
+ */
+@Component
+@ConditionalOnProperty(name = "rate.limit.engine", havingValue = "packed")
+public class PackedRateLimiter implements RateLimiter {
+
+    private static final int TIME_BITS = 40;
+    private static final long TIME_MASK = (1L << TIME_BITS) - 1;
+    private static final int MAX_PROBES = 32;
+    private static final int MAX_SLOTS = 1 << 29;
+    private static final long EMPTY = 0L;
+    private static final long DEFAULT_MAXIMUM_SIZE = 100_000L;
+
+    // State of a slot being taken over; never a valid state, which has the sign bit clear
+    private static final long CLAIMED = -1L;
+
+    // Results of consume
+    private static final int DENIED = 0;
+    private static final int ALLOWED = 1;
+    private static final int MOVED = 2;
+
+    public static final long MAX_CAPACITY = (1L << (63 - TIME_BITS)) - 1;
+
+    // Slot i is the key at 2i and the packed state at 2i + 1, so both share a cache line
+    private final AtomicLongArray table;
+    private final int slotMask;
+
+    private final long capacity;
+    private final long refillTokens;
+    private final long periodMillis;
+    private final long periodsToFill;
+    private final LongSupplier clock;
+
+    private final AtomicLong usedSlots = new AtomicLong();
+    private final AtomicLong overflows = new AtomicLong();
+
+    /**
+     * Constructor
+     * @param capacity Maximum requests in a burst
+     * @param refillTokens Requests added back each refill period
+     * @param refillMinutes Refill period
+     * @param cacheSpec Caffeine spec whose {@code maximumSize} is the expected maximum active users
+     * @param meterRegistry Registry for limiter metrics, if available
+     */
+    @Autowired
+    public PackedRateLimiter(
+            @Value("${rate.limit.capacity:20}") int capacity,
+            @Value("${rate.limit.refill-tokens:20}") int refillTokens,
+            @Value("${rate.limit.refill-minutes:1}") int refillMinutes,
+            @Value("${spring.cache.caffeine.spec:" + RateLimitBucketStore.DEFAULT_CACHE_SPEC + "}") String cacheSpec,
+            ObjectProvider<MeterRegistry> meterRegistry) {
+        this(capacity, refillTokens, Duration.ofMinutes(refillMinutes), maximumSize(cacheSpec));
+        meterRegistry.ifAvailable(this::registerMetrics);
+    }
+
+    /**
+     * Constructor without metrics
+     * @param capacity Maximum requests in a burst, at most {@link #MAX_CAPACITY}
+     * @param refillTokens Requests added back each refill period
+     * @param refillPeriod Refill period
+     * @param maximumSize Expected maximum active users
+     */
+    public PackedRateLimiter(long capacity, long refillTokens, Duration refillPeriod, long maximumSize) {
+        this(capacity, refillTokens, refillPeriod, maximumSize, systemClock());
+    }
+
+    PackedRateLimiter(long capacity, long refillTokens, Duration refillPeriod, long maximumSize, LongSupplier clock) {
+        if (capacity < 1 || capacity > MAX_CAPACITY) {
+            throw new IllegalArgumentException("Rate limit capacity must be between 1 and " + MAX_CAPACITY);
+        }
+        if (refillTokens < 1 || refillPeriod.toMillis() < 1) {
+            throw new IllegalArgumentException("Rate limit refill must add at least one token per millisecond or longer");
+        }
+        this.capacity = capacity;
+        this.refillTokens = refillTokens;
+        this.periodMillis = refillPeriod.toMillis();
+        this.periodsToFill = (capacity + refillTokens - 1) / refillTokens;
+        this.clock = clock;
+
+        long slots = Math.min(MAX_SLOTS, Math.max(64L, Long.highestOneBit(Math.max(1L, maximumSize) * 2 - 1) << 1));
+        this.table = new AtomicLongArray((int) slots * 2);
+        this.slotMask = (int) slots - 1;
+    }
+
+    @Override
+    public boolean tryConsume(String username) {
+        long key = hash(username);
+        long now = clock.getAsLong();
+
+        while (true) {
+            int result = probe(key, now);
+            if (result != MOVED) {
+                return result == ALLOWED;
+            }
+            // The slot was taken over by another user while this one was idle; start again
+        }
+    }
+
+    /**
+     * Get the number of table slots in use
+     * @return Slots holding a user
+     */
+    public long getUsedSlots() {
+        return usedSlots.get();
+    }
+
+    /**
+     * Get the number of requests allowed because no slot was free
+     * @return Overflowed requests
+     */
+    public long getOverflows() {
+        return overflows.get();
+    }
+
+    private int probe(long key, long now) {
+        while (true) {
+            int idleSlot = -1;
+            long idleKey = EMPTY;
+            long idleState = EMPTY;
+            int slot = (int) key & slotMask;
+            for (int probe = 0; probe < MAX_PROBES; probe++, slot = (slot + 1) & slotMask) {
+                long current = table.get(slot << 1);
+                if (current == key) {
+                    return consume(slot, key, now);
+                }
+                if (current == EMPTY) {
+                    if (table.compareAndSet(slot << 1, EMPTY, key)) {
+                        usedSlots.incrementAndGet();
+                        return consume(slot, key, now);
+                    }
+                    if (table.get(slot << 1) == key) {
+                        return consume(slot, key, now);
+                    }
+                } else if (idleSlot < 0) {
+                    long state = table.get((slot << 1) + 1);
+                    if (isIdle(state, now)) {
+                        idleSlot = slot;
+                        idleKey = current;
+                        idleState = state;
+                    }
+                }
+            }
+
+            if (idleSlot < 0) {
+                // Every nearby slot belongs to an active user; fail open as an evicted bucket would
+                overflows.incrementAndGet();
+                return ALLOWED;
+            }
+            // Claiming the exact state seen as idle fails if the old owner used the slot since
+            int stateIndex = (idleSlot << 1) + 1;
+            if (table.compareAndSet(stateIndex, idleState, CLAIMED)) {
+                // Only the claimer changes the key of a claimed slot
+                table.set(idleSlot << 1, key);
+                table.set(stateIndex, EMPTY);
+                return consume(idleSlot, key, now);
+            }
+            // The old owner came back or another user claimed the slot first; probe again
+        }
+    }
+
+    private int consume(int slot, long key, long now) {
+        int index = (slot << 1) + 1;
+        while (true) {
+            long state = table.get(index);
+            if (state == CLAIMED) {
+                // A takeover is swapping the key; wait for it, then check whose slot this is
+                Thread.onSpinWait();
+                continue;
+            }
+            if (table.get(slot << 1) != key) {
+                return MOVED;
+            }
+            long tokens;
+            long lastRefill;
+            if (state == EMPTY) {
+                tokens = capacity;
+                lastRefill = now;
+            } else {
+                tokens = state >>> TIME_BITS;
+                lastRefill = state & TIME_MASK;
+                long periods = (now - lastRefill) / periodMillis;
+                if (periods >= periodsToFill) {
+                    tokens = capacity;
+                    lastRefill = now;
+                } else if (periods > 0) {
+                    tokens = Math.min(capacity, tokens + periods * refillTokens);
+                    lastRefill += periods * periodMillis;
+                }
+            }
+
+            if (tokens == 0) {
+                return DENIED;
+            }
+            if (table.compareAndSet(index, state, (tokens - 1) << TIME_BITS | lastRefill)) {
+                return ALLOWED;
+            }
+        }
+    }
+
+    // A slot whose state is still empty has just been claimed and is about to be used
+    private boolean isIdle(long state, long now) {
+        return state != EMPTY && state != CLAIMED && (now - (state & TIME_MASK)) / periodMillis >= periodsToFill;
+    }
+
+    private void registerMetrics(MeterRegistry registry) {
+        Gauge.builder("rate.limit.packed.slots.used", usedSlots, AtomicLong::get)
+                .description("Rate limiter table slots holding a user")
+                .register(registry);
+        FunctionCounter.builder("rate.limit.packed.overflow", overflows, AtomicLong::get)
+                .description("Requests allowed because no rate limiter slot was free")
+                .register(registry);
+    }
+
+    // The spec's maximumSize; a spec without one gets the default bound
+    static long maximumSize(String cacheSpec) {
+        for (String option : cacheSpec.split(",")) {
+            String[] keyValue = option.trim().split("=", 2);
+            if (keyValue.length == 2 && keyValue[0].trim().equals("maximumSize")) {
+                return Long.parseLong(keyValue[1].trim());
+            }
+        }
+        return DEFAULT_MAXIMUM_SIZE;
+    }
+
+    // Milliseconds since startup, starting at 1 so a used state is never zero
+    private static LongSupplier systemClock() {
+        long origin = System.nanoTime();
+        return () -> (System.nanoTime() - origin) / 1_000_000L + 1;
+    }
+
+    // Never EMPTY, which marks a free slot
+    private static long hash(String username) {
+        long h = StringHash.hash64(username);
+        return h == EMPTY ? 1L : h;
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.demo.infrastructure.ratelimit;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.github.bucket4j.Bandwidth;
+import io.github.bucket4j.Bucket;
+import io.github.bucket4j.Refill;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Per-user rate limit buckets shared by RateLimitFilter and CombinedSecurityFilter.
+ * This is the default engine ({@code rate.limit.engine=bucket4j}).
+ *
+ * Buckets live in a bounded Caffeine cache and expire after a period without
+ * requests, so idle users do not accumulate. The cache is configured by the
+ * {@code spring.cache.caffeine.spec} that also declares the {@code rate-limit-buckets} cache. An evicted bucket is rebuilt full on
+ * the user's next request. Expiry does not loosen the limit as long as the idle period
+ * is at least the refill period, since the bucket would have refilled anyway.
+ * Eviction because the cache is full can drop a drained bucket early and hand its user
+ * a full one, so keep the spec's {@code maximumSize} above the number of users active
+ * within one refill period, and its {@code expireAfterAccess} at least the refill period.
+ * Bucket count, hits and evictions are published as {@code cache.*} metrics
+ * tagged {@code cache=rate-limit-buckets}.
+ */
+@Component
+@ConditionalOnProperty(name = "rate.limit.engine", havingValue = "bucket4j", matchIfMissing = true)
+public class RateLimitBucketStore implements RateLimiter {
+
+    private static final String CACHE_NAME = "rate-limit-buckets";
+
+    // Used when no spring.cache.caffeine.spec is configured
+    static final String DEFAULT_CACHE_SPEC = "maximumSize=100000,expireAfterAccess=3600s";
+
+    private final Cache<String, Bucket> buckets;
+    private final Bandwidth limit;
+
+    /**
+     * Constructor
+     * @param capacity Maximum requests in a burst
+     * @param refillTokens Requests added back each refill period
+     * @param refillMinutes Refill period
+     * @param cacheSpec Caffeine spec for the bucket cache, e.g. {@code maximumSize=100000,expireAfterAccess=3600s}
+     * @param meterRegistry Registry for bucket metrics, if available
+     */
+    @Autowired
+    public RateLimitBucketStore(
+            @Value("${rate.limit.capacity:20}") int capacity,
+            @Value("${rate.limit.refill-tokens:20}") int refillTokens,
+            @Value("${rate.limit.refill-minutes:1}") int refillMinutes,
+            @Value("${spring.cache.caffeine.spec:" + DEFAULT_CACHE_SPEC + "}") String cacheSpec,
+            ObjectProvider<MeterRegistry> meterRegistry) {
+        this(capacity, refillTokens, Duration.ofMinutes(refillMinutes), Caffeine.from(cacheSpec));
+        meterRegistry.ifAvailable(registry -> CaffeineCacheMetrics.monitor(registry, buckets, CACHE_NAME));
+    }
+
+    /**
+     * Constructor without metrics
+     * @param capacity Maximum requests in a burst
+     * @param refillTokens Requests added back each refill period
+     * @param refillPeriod Refill period
+     * @param maximumSize Maximum buckets kept
+     * @param expireAfterAccess Idle time after which a bucket is dropped
+     */
+    public RateLimitBucketStore(int capacity, int refillTokens, Duration refillPeriod,
+                                long maximumSize, Duration expireAfterAccess) {
+        this(capacity, refillTokens, refillPeriod,
+                Caffeine.newBuilder().maximumSize(maximumSize).expireAfterAccess(expireAfterAccess));
+    }
+
+    private RateLimitBucketStore(int capacity, int refillTokens, Duration refillPeriod, Caffeine<Object, Object> cache) {
+        this.limit = Bandwidth.classic(capacity, Refill.intervally(refillTokens, refillPeriod));
+        this.buckets = cache.recordStats().build();
+    }
+
+    @Override
+    public boolean tryConsume(String username) {
+        return buckets.get(username, this::createNewBucket).tryConsume(1);
+    }
+
+    /**
+     * Get the number of buckets currently kept
+     * @return Approximate bucket count
+     */
+    public long getBucketCount() {
+        return buckets.estimatedSize();
+    }
+
+    // Runs pending evictions now instead of on Caffeine's maintenance thread
+    void cleanUp() {
+        buckets.cleanUp();
+    }
+
+    private Bucket createNewBucket(String username) {
+        return Bucket.builder()
+                .addLimit(limit)
+                .build();
+    }
+}
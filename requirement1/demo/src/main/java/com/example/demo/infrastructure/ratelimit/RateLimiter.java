@@ -0,0 +1,15 @@
+package com.example.demo.infrastructure.ratelimit;
+
+/**
+ * Per-user request rate limit used by the security filters.
+ * The engine is selected with {@code rate.limit.engine}.
+ */
+public interface RateLimiter {
+
+    /**
+     * Take one request from the user's allowance
+     * @param username Username
+     * @return true if the request is within the limit
+     */
+    boolean tryConsume(String username);
+}
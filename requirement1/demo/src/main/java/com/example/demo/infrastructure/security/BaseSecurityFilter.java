@@ -1,5 +1,6 @@
 package com.example.demo.infrastructure.security;
 
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -65,6 +66,16 @@ public abstract class BaseSecurityFilter extends OncePerRequestFilter {
         return null;
     }
 
+    /**
+     * Get the verified claims of the request's token.
+     * The token is verified once per request; later filters reuse the result.
+     * @param request The HTTP request
+     * @return Verified claims, or null if there is no valid token
+     */
+    protected Claims resolveClaims(HttpServletRequest request) {
+        return jwtService.resolveClaims(request);
+    }
+
     /**
      * Extract username from JWT token or security context
      * @param request The HTTP request
@@ -76,16 +87,8 @@ public abstract class BaseSecurityFilter extends OncePerRequestFilter {
             return SecurityUtils.getCurrentUsername();
         }
         
-        // Fall back to extracting from token
-        String token = extractToken(request);
-        if (token != null) {
-            try {
-                return jwtService.extractUsername(token);
-            } catch (Exception e) {
-                // Token validation failed, return null
-                return null;
-            }
-        }
-        return null;
+        // Fall back to the verified token claims
+        Claims claims = resolveClaims(request);
+        return claims != null ? claims.getSubject() : null;
     }
 }
@@ -1,88 +1,69 @@
 package com.example.demo.infrastructure.security;
 
-import io.github.bucket4j.Bandwidth;
-import io.github.bucket4j.Bucket;
-import io.github.bucket4j.Refill;
+import com.example.demo.infrastructure.ratelimit.RateLimiter;
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.core.annotation.Order;
 import org.springframework.http.HttpStatus;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.userdetails.UserDetails;
-import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
-import java.time.Duration;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 
 /**
- * Combined security filter that handles both JWT authentication and rate limiting.
- * This approach merges both security concerns into a single filter to reduce duplication.
+ * Combined security filter that handles JWT authentication, rate limiting and user ID
+ * authorization in a single pass.
+ * This approach merges the security concerns into a single filter to reduce duplication:
+ * the token is read and the security context consulted once per request.
+ * Enabled with {@code security.filter.mode=combined}.
  */
 @Component
 @Order(1)
+@ConditionalOnProperty(name = "security.filter.mode", havingValue = "combined")
 public class CombinedSecurityFilter extends OncePerRequestFilter {
 
-    private final UserDetailsService userDetailsService;
     private final JwtService jwtService;
     
-    // Rate limiting
-    private final Map<String, Bucket> userRequestBuckets = new ConcurrentHashMap<>();
-    
-    @Value("${rate.limit.capacity:20}")
-    private int capacity;
-    
-    @Value("${rate.limit.refill-tokens:20}")
-    private int refillTokens;
-    
-    @Value("${rate.limit.refill-minutes:1}")
-    private int refillMinutes;
+    // Rate limiting, engine selected by rate.limit.engine
+    private final RateLimiter rateLimiter;
 
     @Autowired
-    public CombinedSecurityFilter(UserDetailsService userDetailsService, JwtService jwtService) {
-        this.userDetailsService = userDetailsService;
+    public CombinedSecurityFilter(JwtService jwtService, RateLimiter rateLimiter) {
         this.jwtService = jwtService;
+        this.rateLimiter = rateLimiter;
     }
 
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
             throws ServletException, IOException {
         
-        // Skip rate limiting for non-API paths
+        // Skip rate limiting and user ID checks for non-API paths
         boolean isRewardsEndpoint = request.getRequestURI().startsWith("/rewards/");
         
-        String token = extractToken(request);
-        String username = null;
-        
-        // Extract username from token if available
-        if (token != null) {
-            try {
-                username = jwtService.extractUsername(token);
-            } catch (Exception e) {
-                // Token validation failed, continue without username
-            }
-        }
+        // Verify the token once; null if missing or invalid
+        Claims claims = jwtService.resolveClaims(request);
 
-        // Process JWT authentication if username is available and not already authenticated
-        if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-            processAuthentication(request, token, username);
+        // Process JWT authentication if a valid token is present and not already authenticated
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (claims != null && authentication == null) {
+            authentication = processAuthentication(request, claims);
         }
         
-        // Apply rate limiting only for protected endpoints
+        // Apply rate limiting and user ID authorization only for protected endpoints
         if (isRewardsEndpoint) {
             // Try to get authenticated username first, then fallback to token username
-            String rateUsername = SecurityUtils.isAuthenticated() 
-                    ? SecurityUtils.getCurrentUsername() 
-                    : username;
+            String rateUsername = authentication != null && authentication.isAuthenticated()
+                    ? authentication.getName()
+                    : claims != null ? claims.getSubject() : null;
             
             if (rateUsername != null) {
                 // Apply rate limiting
@@ -91,28 +72,29 @@ public class CombinedSecurityFilter extends OncePerRequestFilter {
                     return;
                 }
             }
+            
+            // Same check as UserIdAuthorizationFilter, reusing the authentication from above
+            if (!UserIdAuthorizationFilter.authorizeUserId(request, response, authentication)) {
+                return;
+            }
         }
         
         // Continue with the filter chain
         filterChain.doFilter(request, response);
     }
     
-    private void processAuthentication(HttpServletRequest request, String token, String username) {
-        UserDetails userDetails = userDetailsService.loadUserByUsername(username);
-        if (jwtService.validateToken(token, userDetails)) {
-            UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
-                userDetails,
-                null,
-                userDetails.getAuthorities());
+    private Authentication processAuthentication(HttpServletRequest request, Claims claims) {
+        // Roles come from the token, so the user is not loaded on every request
+        UsernamePasswordAuthenticationToken authToken = jwtService.authenticate(claims);
+        if (authToken != null) {
             authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
             SecurityContextHolder.getContext().setAuthentication(authToken);
         }
+        return authToken;
     }
     
     private boolean processRateLimit(HttpServletResponse response, String username) throws IOException {
-        Bucket bucket = userRequestBuckets.computeIfAbsent(username, this::createNewBucket);
-        
-        if (bucket.tryConsume(1)) {
+        if (rateLimiter.tryConsume(username)) {
             return true; // Rate limit not exceeded
         } else {
             // Rate limit exceeded
@@ -122,20 +104,4 @@ public class CombinedSecurityFilter extends OncePerRequestFilter {
             return false;
         }
     }
-    
-    private String extractToken(HttpServletRequest request) {
-        String authHeader = request.getHeader("Authorization");
-        if (authHeader != null && authHeader.startsWith("Bearer ")) {
-            return authHeader.substring(7); // Remove "Bearer " prefix
-        }
-        return null;
-    }
-    
-    private Bucket createNewBucket(String username) {
-        Bandwidth limit = Bandwidth.classic(capacity, 
-                Refill.intervally(refillTokens, Duration.ofMinutes(refillMinutes)));
-        return Bucket.builder()
-                .addLimit(limit)
-                .build();
-    }
 }
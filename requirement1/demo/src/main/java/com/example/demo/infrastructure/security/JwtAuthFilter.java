@@ -1,28 +1,26 @@
 package com.example.demo.infrastructure.security;
 
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.userdetails.UserDetails;
-import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 
 import java.io.IOException;
 
 @Component
+@ConditionalOnProperty(name = "security.filter.mode", havingValue = "separate", matchIfMissing = true)
 public class JwtAuthFilter extends BaseSecurityFilter {
 
-  private final UserDetailsService userDetailsService;
-
   @Autowired
-  public JwtAuthFilter(UserDetailsService userDetailsService, JwtService jwtService) {
+  public JwtAuthFilter(JwtService jwtService) {
     super(jwtService);
-    this.userDetailsService = userDetailsService;
   }
 
   @Override
@@ -35,20 +33,13 @@ public class JwtAuthFilter extends BaseSecurityFilter {
   protected void processFilter(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
         throws ServletException, IOException {
     
-    String token = extractToken(request);
-    String username = null;
-
-    if (token != null) {
-      username = jwtService.extractUsername(token);
-    }
+    // Verified at most once per request, shared with the other security filters
+    Claims claims = resolveClaims(request);
 
-    if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-      UserDetails userDetails = userDetailsService.loadUserByUsername(username);
-      if (jwtService.validateToken(token, userDetails)) {
-        UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
-            userDetails,
-            null,
-            userDetails.getAuthorities());
+    if (claims != null && SecurityContextHolder.getContext().getAuthentication() == null) {
+      // Roles come from the token, so the user is not loaded on every request
+      UsernamePasswordAuthenticationToken authToken = jwtService.authenticate(claims);
+      if (authToken != null) {
         authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
         SecurityContextHolder.getContext().setAuthentication(authToken);
       }
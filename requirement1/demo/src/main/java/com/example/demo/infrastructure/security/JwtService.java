@@ -1,28 +1,109 @@
 package com.example.demo.infrastructure.security;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.security.Keys;
+import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
 
 import javax.crypto.SecretKey;
+import java.util.ArrayList;
 import java.util.Base64;
+import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 
+/**
+ * Issues and verifies JWTs.
+ *
+ * The signing key and parser are built once. Verified claims are kept in a bounded
+ * cache keyed by a SHA-256 digest of the token until the token expires, so a client
+ * reusing its token skips signature checking and JSON parsing. Filters should use
+ * {@link #resolveClaims(HttpServletRequest)}, which verifies a request's token at most
+ * once and shares the result through a request attribute.
+ *
+ * Tokens carry the user's roles and token version, so {@link #authenticate(Claims)}
+ * builds the authentication without loading the user; tokens older than the user's
+ * version in the {@link TokenRevocationList} are rejected.
+ */
 @Component
 public class JwtService {
-    @Value("${jwt.secret}")
-    private String SECRET;
 
-    @Value("${jwt.expiration.time}")
-    private long EXPIRATION_TIME;
+    /**
+     * Request attribute holding the verified claims of the request's bearer token
+     */
+    public static final String CLAIMS_ATTRIBUTE = JwtService.class.getName() + ".claims";
+
+    static final String ROLES_CLAIM = "roles";
+    static final String VERSION_CLAIM = "ver";
+
+    // Marks a request whose token is missing or invalid, so it is not verified again
+    private static final Object NO_CLAIMS = new Object();
+
+    private final long expirationTime;
+    private final SecretKey signKey;
+    private final JwtParser parser;
+    // Null when the cache is disabled
+    private final Cache<TokenDigest, Claims> verifiedClaims;
+    private final TokenRevocationList revocationList;
+
+    /**
+     * Constructor
+     * @param secret Base64-encoded HMAC signing key
+     * @param expirationTime Token lifetime in milliseconds
+     * @param cacheSize Maximum verified tokens to cache (0 disables the cache)
+     * @param revocationList Per-user token versions
+     */
+    public JwtService(
+            @Value("${jwt.secret}") String secret,
+            @Value("${jwt.expiration.time}") long expirationTime,
+            @Value("${jwt.claims-cache.size:100000}") long cacheSize,
+            TokenRevocationList revocationList) {
+        this.expirationTime = expirationTime;
+        this.revocationList = revocationList;
+        this.signKey = Keys.hmacShaKeyFor(Base64.getDecoder().decode(secret));
+        this.parser = Jwts.parser().verifyWith(signKey).build();
+        this.verifiedClaims = cacheSize > 0
+                ? Caffeine.newBuilder()
+                        .maximumSize(cacheSize)
+                        .expireAfter(new UntilTokenExpiry())
+                        .build()
+                : null;
+    }
 
     public String generateToken(String email) {
-        return createToken(new HashMap<>(), email);
+        Map<String, Object> claims = new HashMap<>();
+        claims.put(VERSION_CLAIM, revocationList.currentVersion(email));
+        return createToken(claims, email);
+    }
+
+    /**
+     * Generate a token carrying the user's roles and current token version
+     * @param userDetails The user
+     * @return Signed JWT
+     */
+    public String generateToken(UserDetails userDetails) {
+        List<String> roles = new ArrayList<>();
+        for (GrantedAuthority authority : userDetails.getAuthorities()) {
+            roles.add(authority.getAuthority());
+        }
+        Map<String, Object> claims = new HashMap<>();
+        claims.put(ROLES_CLAIM, roles);
+        claims.put(VERSION_CLAIM, revocationList.currentVersion(userDetails.getUsername()));
+        return createToken(claims, userDetails.getUsername());
     }
 
     private String createToken(Map<String, Object> claims, String email) {
@@ -30,14 +111,87 @@ public class JwtService {
             .claims(claims)
             .subject(email)
             .issuedAt(new Date())
-            .expiration(new Date(System.currentTimeMillis() + EXPIRATION_TIME))
-            .signWith(getSignKey(), Jwts.SIG.HS256)
+            .expiration(new Date(System.currentTimeMillis() + expirationTime))
+            .signWith(signKey, Jwts.SIG.HS256)
             .compact();
     }
 
-    private SecretKey getSignKey() {
-        byte[] keyBytes = Base64.getDecoder().decode(SECRET);
-        return Keys.hmacShaKeyFor(keyBytes);
+    /**
+     * Verify a token and return its claims, using the cache when possible
+     * @param token The JWT
+     * @return Verified claims
+     * @throws JwtException if the token is invalid or expired
+     */
+    public Claims verify(String token) {
+        if (verifiedClaims == null) {
+            return parser.parseSignedClaims(token).getPayload();
+        }
+        TokenDigest key = TokenDigest.of(token);
+        Claims claims = verifiedClaims.getIfPresent(key);
+        if (claims == null) {
+            claims = parser.parseSignedClaims(token).getPayload();
+            if (claims.getExpiration() != null) {
+                verifiedClaims.put(key, claims);
+            }
+        }
+        return claims;
+    }
+
+    /**
+     * @return Number of verified tokens currently cached
+     */
+    long cachedTokens() {
+        if (verifiedClaims == null) {
+            return 0;
+        }
+        verifiedClaims.cleanUp();
+        return verifiedClaims.estimatedSize();
+    }
+
+    /**
+     * Get the verified claims of the request's bearer token.
+     * The token is verified on first use and the result is kept as the
+     * {@link #CLAIMS_ATTRIBUTE} request attribute for later filters.
+     * @param request The HTTP request
+     * @return Verified claims, or null if there is no valid bearer token
+     */
+    public Claims resolveClaims(HttpServletRequest request) {
+        Object resolved = request.getAttribute(CLAIMS_ATTRIBUTE);
+        if (resolved == null) {
+            resolved = NO_CLAIMS;
+            String authHeader = request.getHeader("Authorization");
+            if (authHeader != null && authHeader.startsWith("Bearer ")) {
+                try {
+                    resolved = verify(authHeader.substring(7));
+                } catch (JwtException | IllegalArgumentException e) {
+                    // Invalid or expired token, treat the request as unauthenticated
+                }
+            }
+            request.setAttribute(CLAIMS_ATTRIBUTE, resolved);
+        }
+        return resolved instanceof Claims ? (Claims) resolved : null;
+    }
+
+    /**
+     * Build an authentication from verified claims without loading the user
+     * @param claims Verified claims
+     * @return Authentication, or null if the token has been revoked
+     */
+    public UsernamePasswordAuthenticationToken authenticate(Claims claims) {
+        String username = claims.getSubject();
+        Number version = claims.get(VERSION_CLAIM, Number.class);
+        if (username == null || revocationList.isRevoked(username, version != null ? version.longValue() : 0L)) {
+            return null;
+        }
+
+        List<GrantedAuthority> authorities = new ArrayList<>();
+        Collection<?> roles = claims.get(ROLES_CLAIM, Collection.class);
+        if (roles != null) {
+            for (Object role : roles) {
+                authorities.add(new SimpleGrantedAuthority(role.toString()));
+            }
+        }
+        return UsernamePasswordAuthenticationToken.authenticated(username, null, authorities);
     }
 
     public String extractUsername(String token) {
@@ -45,17 +199,44 @@ public class JwtService {
     }
 
     public <T> T extractClaim(String token, Function<Claims, T> claimsResolver) {
-        final Claims claims = Jwts.parser()
-            .verifyWith(getSignKey())
-            .build()
-            .parseSignedClaims(token)
-            .getPayload();
-        return claimsResolver.apply(claims);
+        return claimsResolver.apply(verify(token));
     }
 
     public Boolean validateToken(String token, UserDetails userDetails) {
-        final String username = extractUsername(token);
-        final Date expiration = extractClaim(token, Claims::getExpiration);
-        return (username.equals(userDetails.getUsername()) && !expiration.before(new Date()));
+        return validateToken(verify(token), userDetails);
+    }
+
+    /**
+     * Check already verified claims against a user
+     * @param claims Verified claims
+     * @param userDetails The user
+     * @return true if the claims belong to the user and have not expired
+     */
+    public boolean validateToken(Claims claims, UserDetails userDetails) {
+        final Date expiration = claims.getExpiration();
+        return claims.getSubject().equals(userDetails.getUsername()) &&
+               (expiration == null || !expiration.before(new Date()));
+    }
+
+    /**
+     * Keeps each cached entry until its token expires
+     */
+    private static final class UntilTokenExpiry implements Expiry<TokenDigest, Claims> {
+
+        @Override
+        public long expireAfterCreate(TokenDigest key, Claims claims, long currentTime) {
+            long remainingMillis = claims.getExpiration().getTime() - System.currentTimeMillis();
+            return TimeUnit.MILLISECONDS.toNanos(Math.max(0, remainingMillis));
+        }
+
+        @Override
+        public long expireAfterUpdate(TokenDigest key, Claims claims, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, claims, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(TokenDigest key, Claims claims, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
     }
 }
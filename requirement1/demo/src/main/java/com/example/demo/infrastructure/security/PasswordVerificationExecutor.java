@@ -0,0 +1,91 @@
+package com.example.demo.infrastructure.security;
+
+import com.example.demo.infrastructure.exception.ServiceOverloadedException;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Runs password checks (BCrypt) on a dedicated pool sized to the available cores.
+ *
+ * BCrypt is deliberately CPU-bound, so running more checks at once than there are
+ * cores only makes every login slower. Work beyond the bounded queue is rejected
+ * straight away with a {@link ServiceOverloadedException} (503) rather than tying up
+ * request threads during a login storm.
+ */
+@Component
+public class PasswordVerificationExecutor {
+
+    private final ThreadPoolExecutor executor;
+    private final AtomicLong rejected = new AtomicLong();
+
+    /**
+     * Constructor
+     * @param threads Worker threads (0 means one per available processor)
+     * @param queueCapacity Checks allowed to wait (0 means four per thread)
+     * @param meterRegistry Registry for pool metrics, if available
+     */
+    public PasswordVerificationExecutor(
+            @Value("${auth.password.threads:0}") int threads,
+            @Value("${auth.password.queue-capacity:0}") int queueCapacity,
+            ObjectProvider<MeterRegistry> meterRegistry) {
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        int capacity = queueCapacity > 0 ? queueCapacity : poolSize * 4;
+        this.executor = new ThreadPoolExecutor(
+                poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(capacity),
+                r -> {
+                    Thread thread = new Thread(r, "password-verifier");
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+
+        meterRegistry.ifAvailable(this::registerMetrics);
+    }
+
+    /**
+     * Run a password check on the pool
+     * @param check The check
+     * @param <T> Result type
+     * @return Future result of the check
+     * @throws ServiceOverloadedException if the queue is full
+     */
+    public <T> CompletableFuture<T> submit(Supplier<T> check) {
+        try {
+            return CompletableFuture.supplyAsync(check, executor);
+        } catch (RejectedExecutionException e) {
+            rejected.incrementAndGet();
+            throw new ServiceOverloadedException("Too many login attempts in progress, please retry shortly");
+        }
+    }
+
+    /**
+     * Stop the pool
+     */
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void registerMetrics(MeterRegistry registry) {
+        Gauge.builder("auth.password.queue.depth", executor, pool -> pool.getQueue().size())
+                .description("Password checks waiting for a thread")
+                .register(registry);
+        FunctionCounter.builder("auth.password.rejected", rejected, AtomicLong::get)
+                .description("Logins rejected because the password check queue was full")
+                .register(registry);
+    }
+}
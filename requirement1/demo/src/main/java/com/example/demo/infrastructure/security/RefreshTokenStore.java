@@ -0,0 +1,396 @@
+package com.example.demo.infrastructure.security;
+
+import com.example.demo.infrastructure.command.journal.CommandJournal;
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.SecureRandom;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Server-side table of long-lived opaque refresh tokens.
+ *
+ * A refresh token can be exchanged once for a new JWT and a new refresh token, so
+ * clients stay logged in without sending their password (and paying for BCrypt)
+ * again. Only a digest of each token is stored. Refresh tokens carry the user's
+ * token version, so revoking a user's tokens also invalidates their refresh tokens.
+ * Each user keeps at most a fixed number of tokens; issuing one more drops their oldest.
+ *
+ * Every issued and used token is appended to a file and forced to disk before the
+ * call returns, and the file is replayed on startup, so a restart neither logs every
+ * client out nor accepts a used token again. The file is rewritten with only the live
+ * tokens on startup and whenever it grows to twice their size.
+ */
+@Component
+public class RefreshTokenStore {
+
+    private static final Logger log = LoggerFactory.getLogger(RefreshTokenStore.class);
+
+    private static final int TOKEN_BYTES = 32;
+
+    // Record layout: magic(4) type(1) version(8) expiresAt(8) digest(16) usernameLength(2) username crc32(4)
+    private static final int MAGIC = 0x52465431; // "RFT1"
+    private static final byte ISSUED = 1;
+    private static final byte REMOVED = 2;
+    private static final int HEADER_SIZE = 39;
+    private static final int MAX_USERNAME_BYTES = 1024;
+    private static final long MIN_COMPACT_BYTES = 1 << 20;
+    private static final String FILE_NAME = "refresh-tokens.dat";
+
+    private final SecureRandom random = new SecureRandom();
+    private final long expirationMillis;
+    private final int maxPerUser;
+    private final TokenRevocationList revocationList;
+    private final ScheduledExecutorService cleaner;
+
+    // Both maps and the file are guarded by this object's monitor
+    private final Map<TokenDigest, Entry> tokens = new HashMap<>();
+    // Each user's tokens, oldest first
+    private final Map<String, ArrayDeque<TokenDigest>> tokensByUser = new HashMap<>();
+
+    // Token file, or null to keep tokens in memory only
+    private final Path path;
+    private FileChannel channel;
+    private long endPosition;
+    // Bytes the live tokens take in the file
+    private long liveBytes;
+
+    /**
+     * Constructor
+     * @param expirationMillis Refresh token lifetime
+     * @param maxPerUser Tokens kept per user before the oldest is dropped
+     * @param directory Directory holding the token file; empty keeps tokens in memory only
+     * @param revocationList Per-user token versions
+     */
+    @Autowired
+    public RefreshTokenStore(
+            @Value("${jwt.refresh.expiration-ms:2592000000}") long expirationMillis,
+            @Value("${jwt.refresh.max-per-user:10}") int maxPerUser,
+            @Value("${jwt.refresh.directory:data/security}") String directory,
+            TokenRevocationList revocationList) {
+        if (maxPerUser < 1) {
+            throw new IllegalArgumentException("jwt.refresh.max-per-user must be at least 1");
+        }
+        this.expirationMillis = expirationMillis;
+        this.maxPerUser = maxPerUser;
+        this.revocationList = revocationList;
+
+        if (directory == null || directory.isBlank()) {
+            this.path = null;
+        } else {
+            try {
+                Path dir = Paths.get(directory);
+                Files.createDirectories(dir);
+                this.path = dir.resolve(FILE_NAME);
+                recover();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to open refresh tokens in " + directory, e);
+            }
+        }
+
+        this.cleaner = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "refresh-token-cleaner");
+            thread.setDaemon(true);
+            return thread;
+        });
+        cleaner.scheduleWithFixedDelay(this::removeExpired, 1, 1, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Constructor for a store that keeps tokens in memory only
+     * @param expirationMillis Refresh token lifetime
+     * @param maxPerUser Tokens kept per user before the oldest is dropped
+     * @param revocationList Per-user token versions
+     */
+    public RefreshTokenStore(long expirationMillis, int maxPerUser, TokenRevocationList revocationList) {
+        this(expirationMillis, maxPerUser, null, revocationList);
+    }
+
+    /**
+     * Issue a new refresh token for a user
+     * @param username Username
+     * @return Opaque refresh token
+     * @throws UncheckedIOException if the token could not be stored
+     */
+    public String issue(String username) {
+        byte[] name = username.getBytes(StandardCharsets.UTF_8);
+        if (name.length > MAX_USERNAME_BYTES) {
+            throw new IllegalArgumentException("Username must be at most " + MAX_USERNAME_BYTES + " bytes");
+        }
+        byte[] bytes = new byte[TOKEN_BYTES];
+        random.nextBytes(bytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        TokenDigest digest = TokenDigest.of(token);
+        Entry entry = new Entry(username, revocationList.currentVersion(username),
+                System.currentTimeMillis() + expirationMillis);
+
+        synchronized (this) {
+            ArrayDeque<TokenDigest> owned = tokensByUser.get(username);
+            int evicted = owned != null ? Math.max(0, owned.size() + 1 - maxPerUser) : 0;
+            if (path != null) {
+                ByteBuffer records = ByteBuffer.allocate(evicted * (HEADER_SIZE + 4) + HEADER_SIZE + name.length + 4);
+                Iterator<TokenDigest> oldest = evicted > 0 ? owned.iterator() : null;
+                for (int i = 0; i < evicted; i++) {
+                    putRecord(records, REMOVED, oldest.next(), 0, 0, new byte[0]);
+                }
+                putRecord(records, ISSUED, digest, entry.getVersion(), entry.getExpiresAtMillis(), name);
+                write(records);
+            }
+            for (int i = 0; i < evicted; i++) {
+                remove(owned.pollFirst());
+            }
+            add(digest, entry);
+        }
+        return token;
+    }
+
+    /**
+     * Use up a refresh token. Each token is accepted at most once.
+     * @param token Opaque refresh token
+     * @return Username the token was issued to, or null if it is unknown, expired, used or revoked
+     * @throws UncheckedIOException if the use could not be stored; the token is still valid
+     */
+    public String redeem(String token) {
+        TokenDigest digest = TokenDigest.of(token);
+        Entry entry;
+        synchronized (this) {
+            entry = tokens.get(digest);
+            if (entry == null) {
+                return null;
+            }
+            if (path != null) {
+                ByteBuffer record = ByteBuffer.allocate(HEADER_SIZE + 4);
+                putRecord(record, REMOVED, digest, 0, 0, new byte[0]);
+                write(record);
+            }
+            remove(digest);
+            ArrayDeque<TokenDigest> owned = tokensByUser.get(entry.getUsername());
+            owned.remove(digest);
+            if (owned.isEmpty()) {
+                tokensByUser.remove(entry.getUsername());
+            }
+        }
+        if (entry.getExpiresAtMillis() < System.currentTimeMillis() ||
+                revocationList.isRevoked(entry.getUsername(), entry.getVersion())) {
+            return null;
+        }
+        return entry.getUsername();
+    }
+
+    /**
+     * Get the number of stored refresh tokens
+     * @return Stored tokens
+     */
+    public synchronized int size() {
+        return tokens.size();
+    }
+
+    /**
+     * Stop removing expired tokens and close the token file
+     */
+    @PreDestroy
+    public void close() {
+        cleaner.shutdownNow();
+        synchronized (this) {
+            if (channel == null) {
+                return;
+            }
+            try {
+                channel.close();
+            } catch (IOException e) {
+                log.warn("Failed to close refresh tokens", e);
+            }
+        }
+    }
+
+    // Expired tokens need no record: replay drops them by their expiry
+    private synchronized void removeExpired() {
+        long now = System.currentTimeMillis();
+        tokensByUser.values().removeIf(owned -> {
+            owned.removeIf(digest -> {
+                Entry entry = tokens.get(digest);
+                if (entry.getExpiresAtMillis() >= now) {
+                    return false;
+                }
+                remove(digest);
+                return true;
+            });
+            return owned.isEmpty();
+        });
+
+        if (channel != null && endPosition > Math.max(MIN_COMPACT_BYTES, liveBytes * 2)) {
+            try {
+                compact();
+            } catch (IOException | UncheckedIOException e) {
+                log.warn("Failed to compact refresh tokens", e);
+            }
+        }
+    }
+
+    // Caller must hold this object's monitor
+    private void add(TokenDigest digest, Entry entry) {
+        tokens.put(digest, entry);
+        tokensByUser.computeIfAbsent(entry.getUsername(), username -> new ArrayDeque<>()).addLast(digest);
+        liveBytes += recordSize(entry);
+    }
+
+    // Removes the token but not its place in the owner's queue; caller must hold this object's monitor
+    private void remove(TokenDigest digest) {
+        Entry entry = tokens.remove(digest);
+        if (entry != null) {
+            liveBytes -= recordSize(entry);
+        }
+    }
+
+    // Caller must hold this object's monitor
+    private void write(ByteBuffer records) {
+        records.flip();
+        try {
+            long position = endPosition;
+            while (records.hasRemaining()) {
+                position += channel.write(records, position);
+            }
+            channel.force(false);
+            endPosition = position;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to store refresh token", e);
+        }
+    }
+
+    private void recover() throws IOException {
+        Map<TokenDigest, Entry> replayed = new HashMap<>();
+        if (Files.exists(path)) {
+            ByteBuffer file = ByteBuffer.wrap(Files.readAllBytes(path));
+            while (file.remaining() >= HEADER_SIZE + 4 && file.getInt(file.position()) == MAGIC) {
+                int start = file.position();
+                int length = file.getShort(start + HEADER_SIZE - 2);
+                if (length < 0 || length > MAX_USERNAME_BYTES || file.remaining() < HEADER_SIZE + length + 4) {
+                    break;
+                }
+                CRC32 crc = new CRC32();
+                crc.update(file.array(), start, HEADER_SIZE + length);
+                if (file.getInt(start + HEADER_SIZE + length) != (int) crc.getValue()) {
+                    break;
+                }
+                TokenDigest digest = new TokenDigest(file.getLong(start + 21), file.getLong(start + 29));
+                if (file.get(start + 4) == ISSUED) {
+                    String username = new String(file.array(), start + HEADER_SIZE, length, StandardCharsets.UTF_8);
+                    replayed.put(digest, new Entry(username, file.getLong(start + 5), file.getLong(start + 13)));
+                } else {
+                    replayed.remove(digest);
+                }
+                file.position(start + HEADER_SIZE + length + 4);
+            }
+            if (file.hasRemaining()) {
+                // Torn write from a crash: that token was never handed out
+                log.warn("Ignoring {} bytes of refresh tokens after an incomplete record", file.remaining());
+            }
+        }
+
+        // Issue order is expiry order, since every token gets the same lifetime
+        long now = System.currentTimeMillis();
+        List<Map.Entry<TokenDigest, Entry>> live = new ArrayList<>(replayed.entrySet());
+        live.sort(Comparator.comparingLong(e -> e.getValue().getExpiresAtMillis()));
+        for (Map.Entry<TokenDigest, Entry> e : live) {
+            if (e.getValue().getExpiresAtMillis() >= now) {
+                add(e.getKey(), e.getValue());
+                ArrayDeque<TokenDigest> owned = tokensByUser.get(e.getValue().getUsername());
+                if (owned.size() > maxPerUser) {
+                    remove(owned.pollFirst());
+                }
+            }
+        }
+
+        // Start from a file holding only the live tokens, which also drops a torn tail
+        compact();
+        log.info("Loaded {} refresh tokens", tokens.size());
+    }
+
+    // Rewrites the file with the live tokens; caller must hold this object's monitor
+    private void compact() throws IOException {
+        Path temp = path.resolveSibling(FILE_NAME + ".tmp");
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+            for (Map.Entry<TokenDigest, Entry> e : tokens.entrySet()) {
+                Entry entry = e.getValue();
+                byte[] name = entry.getUsername().getBytes(StandardCharsets.UTF_8);
+                if (buffer.remaining() < HEADER_SIZE + name.length + 4) {
+                    drain(out, buffer);
+                }
+                putRecord(buffer, ISSUED, e.getKey(), entry.getVersion(), entry.getExpiresAtMillis(), name);
+            }
+            drain(out, buffer);
+            out.force(false);
+        }
+
+        if (channel != null) {
+            channel.close();
+        }
+        try {
+            Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            CommandJournal.forceDirectory(path.getParent());
+        } finally {
+            // Keeps appending to the old file if it could not be replaced
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            endPosition = channel.size();
+        }
+    }
+
+    private static void drain(FileChannel out, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private static void putRecord(ByteBuffer buffer, byte type, TokenDigest digest, long version, long expiresAt, byte[] name) {
+        int start = buffer.position();
+        buffer.putInt(MAGIC).put(type).putLong(version).putLong(expiresAt)
+                .putLong(digest.getHigh()).putLong(digest.getLow())
+                .putShort((short) name.length).put(name);
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), start, HEADER_SIZE + name.length);
+        buffer.putInt((int) crc.getValue());
+    }
+
+    private static long recordSize(Entry entry) {
+        return HEADER_SIZE + entry.getUsername().getBytes(StandardCharsets.UTF_8).length + 4;
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    private static final class Entry {
+        private final String username;
+        private final long version;
+        private final long expiresAtMillis;
+    }
+}
@@ -102,4 +102,27 @@ public class SecurityUtils {
         String currentUsername = getCurrentUsername();
         return isAdmin() || (currentUsername != null && currentUsername.equals(userId));
     }
+    
+    /**
+     * Check if the given authentication belongs to the requested user or an admin,
+     * without going through the SecurityContextHolder
+     * @param authentication The authentication to check
+     * @param userId The user ID to check against
+     * @return true if it's the same user or an admin, false otherwise
+     */
+    public static boolean isUserOrAdmin(Authentication authentication, String userId) {
+        if (authentication == null || !authentication.isAuthenticated()) {
+            return false;
+        }
+        
+        if (userId.equals(authentication.getName())) {
+            return true;
+        }
+        for (GrantedAuthority authority : authentication.getAuthorities()) {
+            if ("ROLE_ADMIN".equals(authority.getAuthority())) {
+                return true;
+            }
+        }
+        return false;
+    }
 }
@@ -0,0 +1,47 @@
+package com.example.demo.infrastructure.security;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * 128 bits of a token's SHA-256 digest, used as a compact map key so raw tokens
+ * are never kept in memory tables
+ */
+@EqualsAndHashCode
+@Getter
+@RequiredArgsConstructor
+final class TokenDigest {
+
+    private static final ThreadLocal<MessageDigest> DIGESTS = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    });
+
+    private final long high;
+    private final long low;
+
+    /**
+     * Digest a token
+     * @param token The token
+     * @return Its digest
+     */
+    static TokenDigest of(String token) {
+        byte[] hash = DIGESTS.get().digest(token.getBytes(StandardCharsets.US_ASCII));
+        // 128 bits of the digest are plenty to tell tokens apart
+        long high = 0;
+        long low = 0;
+        for (int i = 0; i < 8; i++) {
+            high = (high << 8) | (hash[i] & 0xFF);
+            low = (low << 8) | (hash[i + 8] & 0xFF);
+        }
+        return new TokenDigest(high, low);
+    }
+}
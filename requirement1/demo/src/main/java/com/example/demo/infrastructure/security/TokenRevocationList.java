@@ -0,0 +1,252 @@
+package com.example.demo.infrastructure.security;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.zip.CRC32;
+
+/**
+ * Tracks each user's token version so issued JWTs can be revoked without a
+ * per-request user lookup.
+ *
+ * Every token carries the version that was current when it was issued; revoking a
+ * user's tokens bumps the version, and tokens with an older version are rejected.
+ * Most users never revoke, so a bloom filter of revoked users answers the common case
+ * with a few bit reads; only users that may have revoked are checked in the exact map.
+ *
+ * Each revocation is appended to a file and forced to disk before it takes effect, and
+ * the file is replayed on startup, so a restart never accepts a revoked token again.
+ */
+@Component
+public class TokenRevocationList {
+
+    private static final Logger log = LoggerFactory.getLogger(TokenRevocationList.class);
+
+    private static final int HASHES = 4;
+
+    // Record layout: magic(4) usernameLength(2) version(8) username crc32(4)
+    private static final int MAGIC = 0x52564b31; // "RVK1"
+    private static final int HEADER_SIZE = 14;
+    private static final int MAX_USERNAME_BYTES = 1024;
+    private static final String FILE_NAME = "revocations.dat";
+
+    // Bloom filter over usernames that have a version above zero
+    private final AtomicLongArray bits;
+    private final int bitMask;
+
+    // Exact current version per user that has revoked tokens
+    private final Map<String, Long> versions = new ConcurrentHashMap<>();
+
+    // Revocation file, or null to keep revocations in memory only; writes hold this object's monitor
+    private final FileChannel channel;
+    private long endPosition;
+
+    /**
+     * Constructor
+     * @param bloomBits Size of the bloom filter in bits, rounded up to a power of two
+     * @param directory Directory holding the revocation file; empty keeps revocations in memory only
+     */
+    @Autowired
+    public TokenRevocationList(
+            @Value("${jwt.revocation.bloom-bits:1048576}") int bloomBits,
+            @Value("${jwt.revocation.directory:data/security}") String directory) {
+        int size = Integer.highestOneBit(Math.max(64, bloomBits) - 1) << 1;
+        this.bits = new AtomicLongArray(size / 64);
+        this.bitMask = size - 1;
+
+        if (directory == null || directory.isBlank()) {
+            this.channel = null;
+            return;
+        }
+        try {
+            Path path = Paths.get(directory);
+            Files.createDirectories(path);
+            this.channel = FileChannel.open(path.resolve(FILE_NAME),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            recover();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open token revocations in " + directory, e);
+        }
+    }
+
+    /**
+     * Constructor for a list that keeps revocations in memory only
+     * @param bloomBits Size of the bloom filter in bits, rounded up to a power of two
+     */
+    public TokenRevocationList(int bloomBits) {
+        this(bloomBits, null);
+    }
+
+    /**
+     * Get the version to embed in a new token for the user
+     * @param username Username
+     * @return Current token version
+     */
+    public long currentVersion(String username) {
+        if (!mightBeRevoked(username)) {
+            return 0L;
+        }
+        return versions.getOrDefault(username, 0L);
+    }
+
+    /**
+     * Check whether a token issued at the given version has been revoked
+     * @param username Username
+     * @param tokenVersion Version carried by the token
+     * @return true if the token must be rejected
+     */
+    public boolean isRevoked(String username, long tokenVersion) {
+        return tokenVersion < currentVersion(username);
+    }
+
+    /**
+     * Revoke every token issued to the user so far
+     * @param username Username
+     * @return New token version
+     * @throws UncheckedIOException if the revocation could not be stored; it has not taken effect
+     */
+    public long revokeAll(String username) {
+        if (channel == null) {
+            markRevoked(username);
+            return versions.merge(username, 1L, Long::sum);
+        }
+        synchronized (this) {
+            long version = versions.getOrDefault(username, 0L) + 1;
+            write(username, version);
+            markRevoked(username);
+            versions.put(username, version);
+            return version;
+        }
+    }
+
+    /**
+     * Close the revocation file
+     */
+    @PreDestroy
+    public void close() {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            log.warn("Failed to close token revocations", e);
+        }
+    }
+
+    // Set the bits before publishing the version so a reader that sees it also passes the filter
+    private void markRevoked(String username) {
+        int h1 = username.hashCode();
+        int h2 = spread(h1);
+        for (int i = 0; i < HASHES; i++) {
+            setBit((h1 + i * h2) & bitMask);
+        }
+    }
+
+    // Caller must hold this object's monitor
+    private void write(String username, long version) {
+        byte[] name = username.getBytes(StandardCharsets.UTF_8);
+        if (name.length > MAX_USERNAME_BYTES) {
+            throw new IllegalArgumentException("Username must be at most " + MAX_USERNAME_BYTES + " bytes");
+        }
+        ByteBuffer record = ByteBuffer.allocate(HEADER_SIZE + name.length + 4);
+        record.putInt(MAGIC).putShort((short) name.length).putLong(version).put(name);
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), 0, record.position());
+        record.putInt((int) crc.getValue());
+        record.flip();
+
+        try {
+            long position = endPosition;
+            while (record.hasRemaining()) {
+                position += channel.write(record, position);
+            }
+            channel.force(false);
+            endPosition = position;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to store token revocation for " + username, e);
+        }
+    }
+
+    private void recover() throws IOException {
+        long fileSize = channel.size();
+        ByteBuffer file = ByteBuffer.allocate((int) Math.min(fileSize, Integer.MAX_VALUE - 8));
+        while (file.hasRemaining()) {
+            if (channel.read(file, file.position()) < 0) {
+                break;
+            }
+        }
+        file.flip();
+
+        long position = 0;
+        while (file.remaining() >= HEADER_SIZE + 4 && file.getInt(file.position()) == MAGIC) {
+            int start = file.position();
+            int length = file.getShort(start + 4);
+            if (length < 0 || length > MAX_USERNAME_BYTES || file.remaining() < HEADER_SIZE + length + 4) {
+                break;
+            }
+            CRC32 crc = new CRC32();
+            crc.update(file.array(), start, HEADER_SIZE + length);
+            if (file.getInt(start + HEADER_SIZE + length) != (int) crc.getValue()) {
+                break;
+            }
+            String username = new String(file.array(), start + HEADER_SIZE, length, StandardCharsets.UTF_8);
+            markRevoked(username);
+            versions.merge(username, file.getLong(start + 6), Math::max);
+            file.position(start + HEADER_SIZE + length + 4);
+            position = file.position();
+        }
+
+        if (position < fileSize) {
+            // Torn write from a crash: that revocation was never acknowledged
+            log.warn("Truncating token revocations from {} to {} bytes after an incomplete record", fileSize, position);
+            channel.truncate(position);
+        }
+        endPosition = position;
+        log.info("Loaded token revocations for {} users", versions.size());
+    }
+
+    private boolean mightBeRevoked(String username) {
+        int h1 = username.hashCode();
+        int h2 = spread(h1);
+        for (int i = 0; i < HASHES; i++) {
+            int bit = (h1 + i * h2) & bitMask;
+            if ((bits.get(bit >>> 6) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void setBit(int bit) {
+        int index = bit >>> 6;
+        long mask = 1L << bit;
+        long current;
+        do {
+            current = bits.get(index);
+        } while ((current & mask) == 0 && !bits.compareAndSet(index, current, current | mask));
+    }
+
+    // Second hash derived from the first; odd so the probe sequence visits distinct bits
+    private static int spread(int h) {
+        h *= 0x9E3779B9;
+        h ^= h >>> 16;
+        return h | 1;
+    }
+}
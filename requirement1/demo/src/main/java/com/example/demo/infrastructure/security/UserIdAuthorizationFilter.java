@@ -4,7 +4,9 @@ import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.http.HttpStatus;
+import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
@@ -15,6 +17,7 @@ import java.io.IOException;
  * This replaces the @PreAuthorize annotations with filter-based security.
  */
 @Component
+@ConditionalOnProperty(name = "security.filter.mode", havingValue = "separate", matchIfMissing = true)
 public class UserIdAuthorizationFilter extends OncePerRequestFilter {
 
     @Override
@@ -28,29 +31,46 @@ public class UserIdAuthorizationFilter extends OncePerRequestFilter {
             return;
         }
         
+        if (authorizeUserId(request, response, SecurityUtils.getAuthentication())) {
+            filterChain.doFilter(request, response);
+        }
+    }
+
+    /**
+     * Check that the caller may access the user named by the userId parameter,
+     * writing an error response if not
+     * @param request The HTTP request
+     * @param response The HTTP response
+     * @param authentication The caller's authentication, or null
+     * @return true if the request may continue
+     * @throws IOException if the error response cannot be written
+     */
+    static boolean authorizeUserId(HttpServletRequest request, HttpServletResponse response, Authentication authentication)
+            throws IOException {
+        
         // Get the userId from the request parameters
         String userId = request.getParameter("userId");
         if (userId == null || userId.isEmpty()) {
-            filterChain.doFilter(request, response);
-            return;
+            return true;
         }
         
         // Check if user is authenticated
-        if (!SecurityUtils.isAuthenticated()) {
+        if (authentication == null || !authentication.isAuthenticated()) {
             response.setStatus(HttpStatus.UNAUTHORIZED.value());
             response.setContentType("application/json");
             response.getWriter().write("{\"status\":\"error\",\"message\":\"Authentication required\"}");
-            return;
+            return false;
         }
         
         // Either the user is accessing their own data or they're an admin
-        if (SecurityUtils.isUserOrAdmin(userId)) {
-            filterChain.doFilter(request, response);
-        } else {
-            // Access denied - user is trying to access another user's data
-            response.setStatus(HttpStatus.FORBIDDEN.value());
-            response.setContentType("application/json");
-            response.getWriter().write("{\"status\":\"error\",\"message\":\"Access denied: You can only access your own data\"}");
+        if (SecurityUtils.isUserOrAdmin(authentication, userId)) {
+            return true;
         }
+        
+        // Access denied - user is trying to access another user's data
+        response.setStatus(HttpStatus.FORBIDDEN.value());
+        response.setContentType("application/json");
+        response.getWriter().write("{\"status\":\"error\",\"message\":\"Access denied: You can only access your own data\"}");
+        return false;
     }
 }
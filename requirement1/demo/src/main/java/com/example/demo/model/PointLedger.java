@@ -0,0 +1,218 @@
+package com.example.demo.model;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable, append-only ledger of point transactions stored in fixed-size chunks.
+ * Appending returns a new ledger that shares every full chunk with the previous one,
+ * and any entry can be reached by index in constant time, so reading a page of
+ * history costs O(page size) no matter how long the ledger is.
+ *
+ * Entries are stored column-wise in primitive arrays (type, points, epoch millis,
+ * description template and argument), about 25 bytes per entry. {@link PointTransaction}
+ * objects are only created when history is read.
+ */
+public final class PointLedger {
+
+    private static final int CHUNK_SHIFT = 6;
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    private static final TransactionType[] TYPES = TransactionType.values();
+
+    public static final PointLedger EMPTY = new PointLedger(new Chunk[0], Chunk.EMPTY, 0);
+
+    // Full chunks, never modified once sealed
+    private final Chunk[] chunks;
+
+    // Partially filled last chunk, copied on append
+    private final Chunk tail;
+
+    private final int size;
+
+    private PointLedger(Chunk[] chunks, Chunk tail, int size) {
+        this.chunks = chunks;
+        this.tail = tail;
+        this.size = size;
+    }
+
+    /**
+     * Get the number of transactions in the ledger
+     * @return Ledger size
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Create a new ledger with an entry appended
+     * @param type Transaction type
+     * @param points Points added or removed
+     * @param epochMillis Time of the transaction
+     * @param template Description template
+     * @param argument Description template argument
+     * @return New ledger
+     */
+    public PointLedger append(TransactionType type, int points, long epochMillis,
+                              TransactionTemplate template, long argument) {
+        if (tail.length() == CHUNK_SIZE) {
+            Chunk[] sealed = Arrays.copyOf(chunks, chunks.length + 1);
+            sealed[chunks.length] = tail;
+            return new PointLedger(sealed, Chunk.EMPTY.with(type, points, epochMillis, template, argument), size + 1);
+        }
+        return new PointLedger(chunks, tail.with(type, points, epochMillis, template, argument), size + 1);
+    }
+
+    /**
+     * Get the type of an entry without materializing it
+     * @param index Position, 0 being the oldest transaction
+     * @return Transaction type
+     */
+    public TransactionType getType(int index) {
+        return TYPES[chunkFor(index).types[index & CHUNK_MASK]];
+    }
+
+    /**
+     * Get the points of an entry without materializing it
+     * @param index Position, 0 being the oldest transaction
+     * @return Points added or removed
+     */
+    public int getPoints(int index) {
+        return chunkFor(index).points[index & CHUNK_MASK];
+    }
+
+    /**
+     * Get the time of an entry without materializing it
+     * @param index Position, 0 being the oldest transaction
+     * @return Epoch milliseconds
+     */
+    public long getEpochMillis(int index) {
+        return chunkFor(index).epochMillis[index & CHUNK_MASK];
+    }
+
+    /**
+     * Get the description template of an entry without materializing it
+     * @param index Position, 0 being the oldest transaction
+     * @return Description template
+     */
+    public TransactionTemplate getTemplate(int index) {
+        return TransactionTemplate.fromId(chunkFor(index).templateIds[index & CHUNK_MASK]);
+    }
+
+    /**
+     * Get the description template argument of an entry without materializing it
+     * @param index Position, 0 being the oldest transaction
+     * @return Template argument
+     */
+    public long getArgument(int index) {
+        return chunkFor(index).arguments[index & CHUNK_MASK];
+    }
+
+    /**
+     * Materialize a transaction by position
+     * @param index Position, 0 being the oldest transaction
+     * @param userId Owner of the ledger
+     * @return The transaction
+     */
+    public PointTransaction get(int index, String userId) {
+        Chunk chunk = chunkFor(index);
+        int slot = index & CHUNK_MASK;
+        return new PointTransaction(
+                TYPES[chunk.types[slot]],
+                chunk.points[slot],
+                TransactionTemplate.fromId(chunk.templateIds[slot]).render(chunk.arguments[slot]),
+                LocalDateTime.ofInstant(Instant.ofEpochMilli(chunk.epochMillis[slot]), ZoneId.systemDefault()),
+                userId);
+    }
+
+    /**
+     * Get the transactions in a range of positions
+     * @param fromIndex First position (inclusive)
+     * @param toIndex Last position (exclusive)
+     * @param userId Owner of the ledger
+     * @return Unmodifiable list of transactions, oldest first
+     */
+    public List<PointTransaction> range(int fromIndex, int toIndex, String userId) {
+        int from = Math.max(0, fromIndex);
+        int to = Math.min(size, toIndex);
+        if (from >= to) {
+            return Collections.emptyList();
+        }
+        PointTransaction[] entries = new PointTransaction[to - from];
+        for (int i = from; i < to; i++) {
+            entries[i - from] = get(i, userId);
+        }
+        return Collections.unmodifiableList(Arrays.asList(entries));
+    }
+
+    /**
+     * Get up to {@code limit} transactions before a position, newest first
+     * @param beforeIndex Position to page back from (exclusive)
+     * @param limit Maximum number of transactions
+     * @param userId Owner of the ledger
+     * @return Unmodifiable list of transactions, newest first
+     */
+    public List<PointTransaction> pageBefore(int beforeIndex, int limit, String userId) {
+        int end = Math.min(size, beforeIndex);
+        int count = Math.max(0, Math.min(limit, end));
+        PointTransaction[] entries = new PointTransaction[count];
+        for (int i = 0; i < count; i++) {
+            entries[i] = get(end - 1 - i, userId);
+        }
+        return Collections.unmodifiableList(Arrays.asList(entries));
+    }
+
+    private Chunk chunkFor(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for ledger size " + size);
+        }
+        int chunk = index >>> CHUNK_SHIFT;
+        return chunk < chunks.length ? chunks[chunk] : tail;
+    }
+
+    /**
+     * Column-oriented block of up to CHUNK_SIZE entries
+     */
+    private static final class Chunk {
+        static final Chunk EMPTY = new Chunk(new byte[0], new int[0], new long[0], new int[0], new long[0]);
+
+        final byte[] types;
+        final int[] points;
+        final long[] epochMillis;
+        final int[] templateIds;
+        final long[] arguments;
+
+        Chunk(byte[] types, int[] points, long[] epochMillis, int[] templateIds, long[] arguments) {
+            this.types = types;
+            this.points = points;
+            this.epochMillis = epochMillis;
+            this.templateIds = templateIds;
+            this.arguments = arguments;
+        }
+
+        int length() {
+            return types.length;
+        }
+
+        Chunk with(TransactionType type, int entryPoints, long entryEpochMillis,
+                   TransactionTemplate template, long argument) {
+            int n = types.length;
+            Chunk chunk = new Chunk(
+                    Arrays.copyOf(types, n + 1),
+                    Arrays.copyOf(points, n + 1),
+                    Arrays.copyOf(epochMillis, n + 1),
+                    Arrays.copyOf(templateIds, n + 1),
+                    Arrays.copyOf(arguments, n + 1));
+            chunk.types[n] = (byte) type.ordinal();
+            chunk.points[n] = entryPoints;
+            chunk.epochMillis[n] = entryEpochMillis;
+            chunk.templateIds[n] = template.getId();
+            chunk.arguments[n] = argument;
+            return chunk;
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.example.demo.model;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.List;
+
+/**
+ * One page of a user's transaction history, newest first
+ */
+@Getter
+@RequiredArgsConstructor
+public class TransactionPage {
+    private final List<PointTransaction> transactions;
+
+    // Opaque cursor for the next (older) page, or null when there are no more entries
+    private final String nextCursor;
+}
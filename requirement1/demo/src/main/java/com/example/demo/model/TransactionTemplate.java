@@ -0,0 +1,54 @@
+package com.example.demo.model;
+
+/**
+ * Description templates for point transactions.
+ * The ledger stores only the template id and one numeric argument per entry;
+ * the description text is rendered when a transaction is read.
+ */
+public enum TransactionTemplate {
+    // Ids are the ordinals and are persisted, so only append new templates
+    INITIAL_BALANCE("Initial balance"),
+    EARNED_FROM_AMOUNT("Earned points from transaction amount: %.2f"),
+    REDEEMED_POINTS("Redeemed %d points");
+
+    private static final TransactionTemplate[] VALUES = values();
+
+    private final String pattern;
+
+    TransactionTemplate(String pattern) {
+        this.pattern = pattern;
+    }
+
+    /**
+     * Get the persisted id of this template
+     * @return Template id
+     */
+    public int getId() {
+        return ordinal();
+    }
+
+    /**
+     * Look up a template by its persisted id
+     * @param id Template id
+     * @return The template
+     */
+    public static TransactionTemplate fromId(int id) {
+        return VALUES[id];
+    }
+
+    /**
+     * Render the description for a stored argument
+     * @param argument Argument stored with the entry
+     * @return Description text
+     */
+    public String render(long argument) {
+        switch (this) {
+            case EARNED_FROM_AMOUNT:
+                return String.format(pattern, Double.longBitsToDouble(argument));
+            case REDEEMED_POINTS:
+                return String.format(pattern, argument);
+            default:
+                return pattern;
+        }
+    }
+}
@@ -1,139 +1,211 @@
 package com.example.demo.model;
 
+import lombok.AccessLevel;
 import lombok.Getter;
+import lombok.RequiredArgsConstructor;
 import lombok.Setter;
 
-import java.time.LocalDateTime;
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
- * Thread-safe model class for user reward points
+ * Thread-safe model class for user reward points.
+ * All mutable data lives in one immutable {@link State} that writers replace
+ * with a single compare-and-set, so readers always see a consistent
+ * balance and ledger without taking a lock.
  */
-@Getter
 public class UserRewardPoints {
-    
+
+    @Getter
     @Setter
     private String userId;
-    
-    // Using AtomicInteger for thread-safe operations on the point balance
-    private final AtomicInteger rewardPoints;
-    
-    // Using synchronized list for thread-safe access to transactions
-    private final List<PointTransaction> transactions = Collections.synchronizedList(new ArrayList<>());
-    
-    // Lock for complex operations that need to be atomic
-    private final ReadWriteLock lock = new ReentrantReadWriteLock();
-    
+
+    // Current balance, ledger and version, swapped atomically on every write
+    private final AtomicReference<State> state;
+
     /**
      * Constructor with user ID
      * @param userId User ID
      */
     public UserRewardPoints(String userId) {
         this.userId = userId;
-        this.rewardPoints = new AtomicInteger(500); // Initial points
-        
+
         // Record initial balance as a transaction
-        this.transactions.add(new PointTransaction(
+        PointLedger ledger = PointLedger.EMPTY.append(
                 TransactionType.INITIAL,
                 500,
-                "Initial balance",
-                LocalDateTime.now(),
-                userId));
+                System.currentTimeMillis(),
+                TransactionTemplate.INITIAL_BALANCE,
+                0L);
+        this.state = new AtomicReference<>(new State(500, ledger, 1));
+    }
+
+    private UserRewardPoints(String userId, State state) {
+        this.userId = userId;
+        this.state = new AtomicReference<>(state);
     }
-    
+
+    /**
+     * Rebuild a user's points from a previously recorded ledger
+     * @param userId User ID
+     * @param ledger Recorded ledger
+     * @return User reward points with the balance implied by the ledger
+     */
+    public static UserRewardPoints restore(String userId, PointLedger ledger) {
+        int balance = 0;
+        for (int i = 0; i < ledger.size(); i++) {
+            switch (ledger.getType(i)) {
+                case INITIAL:
+                    balance = ledger.getPoints(i);
+                    break;
+                case EARN:
+                    balance += ledger.getPoints(i);
+                    break;
+                case REDEEM:
+                    balance -= ledger.getPoints(i);
+                    break;
+            }
+        }
+        return new UserRewardPoints(userId, new State(balance, ledger, ledger.size()));
+    }
+
+    /**
+     * Get a consistent snapshot of balance, ledger and version
+     * @return Current state
+     */
+    public State getState() {
+        return state.get();
+    }
+
     /**
      * Get current reward points
      * @return Current reward points
      */
     public int getRewardPoints() {
-        return rewardPoints.get();
+        return state.get().getBalance();
     }
-    
+
+    /**
+     * Get the number of transactions applied to this user.
+     * Matches the ledger size, so a user restored from its ledger has the same version.
+     * @return Current version
+     */
+    public long getVersion() {
+        return state.get().getVersion();
+    }
+
     /**
-     * Set reward points (thread-safe)
+     * Set reward points (thread-safe).
+     * No transaction is recorded, so the version is unchanged.
      * @param points New points value
      */
     public void setRewardPoints(int points) {
-        rewardPoints.set(points);
+        State current;
+        do {
+            current = state.get();
+        } while (!state.compareAndSet(current, new State(
+                points,
+                current.getLedger(),
+                current.getVersion())));
     }
-    
+
     /**
      * Add points to balance (thread-safe)
      * @param points Points to add
-     * @param description Transaction description
+     * @param template Transaction description template
+     * @param argument Description template argument
      * @return Updated balance
      */
-    public int addPoints(int points, String description) {
-        lock.writeLock().lock();
-        try {
-            // Atomic update of points
-            int newBalance = rewardPoints.addAndGet(points);
-            
-            // Record transaction
-            transactions.add(new PointTransaction(
-                    TransactionType.EARN,
-                    points,
-                    description,
-                    LocalDateTime.now(),
-                    userId));
-            
-            return newBalance;
-        } finally {
-            lock.writeLock().unlock();
+    public int addPoints(int points, TransactionTemplate template, long argument) {
+        return addPoints(points, template, argument, System.currentTimeMillis());
+    }
+
+    /**
+     * Add points to balance with a given transaction time (thread-safe)
+     * @param points Points to add
+     * @param template Transaction description template
+     * @param argument Description template argument
+     * @param epochMillis Transaction time
+     * @return Updated balance
+     */
+    public int addPoints(int points, TransactionTemplate template, long argument, long epochMillis) {
+        while (true) {
+            State current = state.get();
+            State next = current.append(current.getBalance() + points,
+                    TransactionType.EARN, points, epochMillis, template, argument);
+            if (state.compareAndSet(current, next)) {
+                return next.getBalance();
+            }
         }
     }
-    
+
     /**
      * Deduct points from balance (thread-safe)
      * @param points Points to deduct
-     * @param description Transaction description
+     * @param template Transaction description template
+     * @param argument Description template argument
+     * @return true if deducted successfully
+     */
+    public boolean deductPoints(int points, TransactionTemplate template, long argument) {
+        return deductPoints(points, template, argument, System.currentTimeMillis());
+    }
+
+    /**
+     * Deduct points from balance with a given transaction time (thread-safe)
+     * @param points Points to deduct
+     * @param template Transaction description template
+     * @param argument Description template argument
+     * @param epochMillis Transaction time
      * @return true if deducted successfully
      */
-    public boolean deductPoints(int points, String description) {
-        lock.writeLock().lock();
-        try {
+    public boolean deductPoints(int points, TransactionTemplate template, long argument, long epochMillis) {
+        while (true) {
             // Check if we have enough points
-            int currentPoints = rewardPoints.get();
-            if (currentPoints >= points) {
-                // Atomic update
-                boolean updated = rewardPoints.compareAndSet(currentPoints, currentPoints - points);
-                
-                if (!updated) {
-                    // If the update failed due to concurrent modification, try again
-                    return deductPoints(points, description);
-                }
-                
-                // Record transaction
-                transactions.add(new PointTransaction(
-                        TransactionType.REDEEM,
-                        points,
-                        description,
-                        LocalDateTime.now(),
-                        userId));
-                
+            State current = state.get();
+            if (current.getBalance() < points) {
+                return false;
+            }
+
+            State next = current.append(current.getBalance() - points,
+                    TransactionType.REDEEM, points, epochMillis, template, argument);
+            if (state.compareAndSet(current, next)) {
                 return true;
             }
-            return false;
-        } finally {
-            lock.writeLock().unlock();
         }
     }
-    
+
     /**
      * Get transaction history (thread-safe)
-     * @return Unmodifiable list of transactions
+     * @return Unmodifiable list of transactions, oldest first
      */
     public List<PointTransaction> getTransactions() {
-        lock.readLock().lock();
-        try {
-            return Collections.unmodifiableList(new ArrayList<>(transactions));
-        } finally {
-            lock.readLock().unlock();
+        PointLedger ledger = state.get().getLedger();
+        return ledger.range(0, ledger.size(), userId);
+    }
+
+    /**
+     * Immutable snapshot of a user's points.
+     * The ledger is a persistent {@link PointLedger}, so appending shares
+     * every older entry with the previous state.
+     */
+    @Getter
+    @RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+    public static final class State {
+        private final int balance;
+        private final PointLedger ledger;
+        private final long version;
+
+        private State append(int newBalance, TransactionType type, int points, long epochMillis,
+                             TransactionTemplate template, long argument) {
+            return new State(newBalance, ledger.append(type, points, epochMillis, template, argument), version + 1);
+        }
+
+        /**
+         * Get the number of transactions recorded in this snapshot
+         * @return Transaction count
+         */
+        public int getTransactionCount() {
+            return ledger.size();
         }
     }
 }
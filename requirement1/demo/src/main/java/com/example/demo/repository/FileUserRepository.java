@@ -0,0 +1,401 @@
+package com.example.demo.repository;
+
+import com.example.demo.infrastructure.hash.StringHash;
+import com.example.demo.model.User;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * File-backed implementation of UserRepository for millions of accounts.
+ *
+ * Users are appended as variable-size records to a single file; a save of an
+ * existing username appends a newer record. Only a compact index stays in memory:
+ * an open-addressing table from a 64-bit username hash to the offset of the latest
+ * record (16 bytes per slot; the table is at most half full, so 32 to 64 bytes per user).
+ * Users are read from the file on first lookup and kept in a bounded cache of hot users.
+ * The index is rebuilt by scanning the file on startup; a corrupt record is skipped by
+ * searching for the next record that checks out, and only a bad tail is truncated.
+ * A bulk import skips users whose stored password is unchanged, so re-importing the
+ * same export does not grow the file.
+ *
+ * Enable with {@code user.store.type=file}.
+ */
+@Repository
+@ConditionalOnProperty(name = "user.store.type", havingValue = "file")
+public class FileUserRepository implements UserRepository {
+
+    private static final Logger log = LoggerFactory.getLogger(FileUserRepository.class);
+
+    // Record layout: magic(4) usernameLength(2) passwordLength(2) username password crc32(4)
+    private static final int MAGIC = 0x55535231; // "USR1"
+    private static final int HEADER_SIZE = 8;
+    private static final int MAX_FIELD_BYTES = 255;
+    private static final int MAX_RECORD_SIZE = HEADER_SIZE + 2 * MAX_FIELD_BYTES + 4;
+    private static final int IMPORT_BATCH_BYTES = 1 << 20;
+    private static final String FILE_NAME = "users.dat";
+
+    private final FileChannel channel;
+    private final Cache<String, User> hotUsers;
+
+    // Guards the index and the end of the file
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private long[] hashes = new long[1024];
+    private long[] offsets = new long[1024]; // record offset + 1; 0 marks an empty slot
+    private int size;
+    private long endPosition;
+
+    /**
+     * Constructor
+     * @param directory Directory holding the user file
+     * @param cacheSize Maximum users kept in memory
+     */
+    public FileUserRepository(
+            @Value("${user.store.directory:data/users}") String directory,
+            @Value("${user.store.cache-size:100000}") long cacheSize) {
+        this.hotUsers = Caffeine.newBuilder().maximumSize(cacheSize).build();
+        try {
+            Path path = Paths.get(directory);
+            Files.createDirectories(path);
+            this.channel = FileChannel.open(path.resolve(FILE_NAME),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            recover();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open user store in " + directory, e);
+        }
+    }
+
+    @Override
+    public Optional<User> findByUsername(String username) {
+        User user = hotUsers.getIfPresent(username);
+        if (user != null) {
+            return Optional.of(user);
+        }
+
+        lock.readLock().lock();
+        try {
+            user = find(username);
+            if (user != null) {
+                // Cached under the lock so a concurrent save cannot be overwritten by this older copy
+                hotUsers.put(username, user);
+            }
+            return Optional.ofNullable(user);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public User save(User user) {
+        ByteBuffer record = ByteBuffer.allocate(MAX_RECORD_SIZE);
+        encode(user, record);
+        record.flip();
+
+        lock.writeLock().lock();
+        try {
+            long offset = endPosition;
+            write(record, offset);
+            channel.force(false);
+            endPosition += record.limit();
+            index(user.getUsername(), offset);
+            hotUsers.put(user.getUsername(), user);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to save user " + user.getUsername(), e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return user;
+    }
+
+    @Override
+    public boolean existsByUsername(String username) {
+        return findByUsername(username).isPresent();
+    }
+
+    @Override
+    public long saveAll(Stream<User> users) {
+        ByteBuffer batch = ByteBuffer.allocateDirect(IMPORT_BATCH_BYTES);
+        List<String> usernames = new ArrayList<>();
+        List<Integer> positions = new ArrayList<>();
+        long saved = 0;
+        long unchanged = 0;
+
+        Iterator<User> iterator = users.iterator();
+        while (iterator.hasNext()) {
+            User user = iterator.next();
+            if (isStored(user)) {
+                unchanged++;
+                continue;
+            }
+            if (batch.remaining() < MAX_RECORD_SIZE) {
+                writeBatch(batch, usernames, positions);
+            }
+            positions.add(batch.position());
+            usernames.add(user.getUsername());
+            encode(user, batch);
+            saved++;
+        }
+        writeBatch(batch, usernames, positions);
+
+        try {
+            channel.force(false);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to flush user store", e);
+        }
+        log.info("Imported {} users, skipped {} unchanged", saved, unchanged);
+        return saved;
+    }
+
+    @Override
+    public long count() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Close the user file
+     */
+    @PreDestroy
+    public void close() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            log.warn("Failed to close user store", e);
+        }
+    }
+
+    // Reads the index without touching the hot-user cache, which a bulk import would flush
+    private boolean isStored(User user) {
+        lock.readLock().lock();
+        try {
+            User stored = find(user.getUsername());
+            return stored != null && stored.getPassword().equals(user.getPassword());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Writes one import batch and indexes it, holding the write lock only for this batch
+    private void writeBatch(ByteBuffer batch, List<String> usernames, List<Integer> positions) {
+        if (usernames.isEmpty()) {
+            return;
+        }
+        batch.flip();
+        lock.writeLock().lock();
+        try {
+            long base = endPosition;
+            write(batch, base);
+            endPosition += batch.limit();
+            for (int i = 0; i < usernames.size(); i++) {
+                index(usernames.get(i), base + positions.get(i));
+                hotUsers.invalidate(usernames.get(i));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to import users", e);
+        } finally {
+            lock.writeLock().unlock();
+            batch.clear();
+            usernames.clear();
+            positions.clear();
+        }
+    }
+
+    private void recover() throws IOException {
+        long fileSize = channel.size();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(IMPORT_BATCH_BYTES);
+        buffer.flip();
+        long readPosition = 0;
+        long position = 0;
+        long corruptFrom = -1;
+        long skippedBytes = 0;
+
+        while (true) {
+            if (buffer.remaining() < MAX_RECORD_SIZE && readPosition < fileSize) {
+                buffer.compact();
+                int read = channel.read(buffer, readPosition);
+                if (read > 0) {
+                    readPosition += read;
+                }
+                buffer.flip();
+            }
+            if (!buffer.hasRemaining()) {
+                break;
+            }
+            int start = buffer.position();
+            User user = decode(buffer);
+            if (user == null) {
+                // Search byte by byte for the next record with a valid magic and checksum
+                if (corruptFrom < 0) {
+                    corruptFrom = position;
+                }
+                buffer.position(start + 1);
+                position++;
+                continue;
+            }
+            if (corruptFrom >= 0) {
+                log.error("Skipped corrupt user store bytes {} to {}; users last saved there are lost", corruptFrom, position);
+                skippedBytes += position - corruptFrom;
+                corruptFrom = -1;
+            }
+            index(user.getUsername(), position);
+            position += buffer.position() - start;
+        }
+
+        if (corruptFrom >= 0) {
+            // Nothing valid follows, so this is a torn write from a crash: drop it
+            log.warn("Truncating user store from {} to {} bytes after an incomplete record", fileSize, corruptFrom);
+            channel.truncate(corruptFrom);
+            position = corruptFrom;
+        }
+        endPosition = position;
+        log.info("Indexed {} users from the user store, skipping {} corrupt bytes", size, skippedBytes);
+    }
+
+    // Caller must hold the lock
+    private User find(String username) {
+        long hash = StringHash.hash64(username);
+        int mask = offsets.length - 1;
+        for (int slot = (int) hash & mask; offsets[slot] != 0; slot = (slot + 1) & mask) {
+            if (hashes[slot] == hash) {
+                User user = read(offsets[slot] - 1);
+                if (user != null && user.getUsername().equals(username)) {
+                    return user;
+                }
+            }
+        }
+        return null;
+    }
+
+    // Caller must hold the write lock; the record must already be in the file
+    private void index(String username, long offset) {
+        long hash = StringHash.hash64(username);
+        int mask = offsets.length - 1;
+        int slot = (int) hash & mask;
+        for (; offsets[slot] != 0; slot = (slot + 1) & mask) {
+            if (hashes[slot] == hash) {
+                User existing = read(offsets[slot] - 1);
+                if (existing != null && existing.getUsername().equals(username)) {
+                    offsets[slot] = offset + 1;
+                    return;
+                }
+            }
+        }
+        hashes[slot] = hash;
+        offsets[slot] = offset + 1;
+        if (++size * 2 > offsets.length) {
+            resize();
+        }
+    }
+
+    private void resize() {
+        long[] oldHashes = hashes;
+        long[] oldOffsets = offsets;
+        hashes = new long[oldHashes.length * 2];
+        offsets = new long[oldOffsets.length * 2];
+        int mask = offsets.length - 1;
+        for (int i = 0; i < oldOffsets.length; i++) {
+            if (oldOffsets[i] != 0) {
+                int slot = (int) oldHashes[i] & mask;
+                while (offsets[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                hashes[slot] = oldHashes[i];
+                offsets[slot] = oldOffsets[i];
+            }
+        }
+    }
+
+    private User read(long offset) {
+        ByteBuffer record = ByteBuffer.allocate(MAX_RECORD_SIZE);
+        try {
+            while (record.hasRemaining()) {
+                if (channel.read(record, offset + record.position()) < 0) {
+                    break;
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read user store", e);
+        }
+        record.flip();
+        return decode(record);
+    }
+
+    private void write(ByteBuffer data, long position) throws IOException {
+        while (data.hasRemaining()) {
+            position += channel.write(data, position);
+        }
+    }
+
+    private static void encode(User user, ByteBuffer target) {
+        byte[] username = user.getUsername().getBytes(StandardCharsets.UTF_8);
+        byte[] password = user.getPassword().getBytes(StandardCharsets.UTF_8);
+        if (username.length > MAX_FIELD_BYTES || password.length > MAX_FIELD_BYTES) {
+            throw new IllegalArgumentException("Username and password hash must be at most " + MAX_FIELD_BYTES + " bytes");
+        }
+
+        int start = target.position();
+        target.putInt(MAGIC)
+                .putShort((short) username.length)
+                .putShort((short) password.length)
+                .put(username)
+                .put(password);
+        CRC32 crc = new CRC32();
+        crc.update(target.duplicate().position(start).limit(target.position()));
+        target.putInt((int) crc.getValue());
+    }
+
+    // Decodes the record at the buffer's position and moves past it; null if it is incomplete or corrupt
+    private static User decode(ByteBuffer source) {
+        int start = source.position();
+        if (source.remaining() < HEADER_SIZE || source.getInt(start) != MAGIC) {
+            return null;
+        }
+        int usernameLength = source.getShort(start + 4);
+        int passwordLength = source.getShort(start + 6);
+        if (usernameLength < 0 || usernameLength > MAX_FIELD_BYTES ||
+                passwordLength < 0 || passwordLength > MAX_FIELD_BYTES ||
+                source.remaining() < HEADER_SIZE + usernameLength + passwordLength + 4) {
+            return null;
+        }
+
+        int end = start + HEADER_SIZE + usernameLength + passwordLength;
+        CRC32 crc = new CRC32();
+        crc.update(source.duplicate().position(start).limit(end));
+        if (source.getInt(end) != (int) crc.getValue()) {
+            return null;
+        }
+
+        byte[] username = new byte[usernameLength];
+        byte[] password = new byte[passwordLength];
+        source.position(start + HEADER_SIZE);
+        source.get(username).get(password);
+        source.position(end + 4);
+        return new User(new String(username, StandardCharsets.UTF_8), new String(password, StandardCharsets.UTF_8));
+    }
+}
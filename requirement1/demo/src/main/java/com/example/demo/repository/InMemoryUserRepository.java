@@ -0,0 +1,53 @@
+package com.example.demo.repository;
+
+import com.example.demo.model.User;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * In-memory implementation of UserRepository backed by a concurrent index,
+ * safe for concurrent lookups and registration.
+ * Default; select explicitly with {@code user.store.type=memory}.
+ */
+@Repository
+@ConditionalOnProperty(name = "user.store.type", havingValue = "memory", matchIfMissing = true)
+public class InMemoryUserRepository implements UserRepository {
+
+    private final Map<String, User> users = new ConcurrentHashMap<>();
+
+    @Override
+    public Optional<User> findByUsername(String username) {
+        return Optional.ofNullable(users.get(username));
+    }
+
+    @Override
+    public User save(User user) {
+        users.put(user.getUsername(), user);
+        return user;
+    }
+
+    @Override
+    public boolean existsByUsername(String username) {
+        return users.containsKey(username);
+    }
+
+    @Override
+    public long saveAll(Stream<User> users) {
+        long[] saved = new long[1];
+        users.forEach(user -> {
+            this.users.put(user.getUsername(), user);
+            saved[0]++;
+        });
+        return saved[0];
+    }
+
+    @Override
+    public long count() {
+        return users.size();
+    }
+}
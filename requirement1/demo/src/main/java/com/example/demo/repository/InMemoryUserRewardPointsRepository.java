@@ -1,27 +1,27 @@
 package com.example.demo.repository;
 
 import com.example.demo.model.UserRewardPoints;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Repository;
 
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 /**
- * Thread-safe in-memory implementation of UserRewardPointsRepository
+ * Thread-safe in-memory implementation of UserRewardPointsRepository.
+ * Every operation touches a single key, so the ConcurrentHashMap's own
+ * per-bin locking is enough and no repository-wide lock is needed.
  */
 @Repository
+@ConditionalOnProperty(name = "reward.repository.type", havingValue = "memory", matchIfMissing = true)
 public class InMemoryUserRewardPointsRepository implements UserRewardPointsRepository {
     
     // Using ConcurrentHashMap for thread-safe storage
     private final Map<String, UserRewardPoints> userPointsMap = new ConcurrentHashMap<>();
     
-    // Global lock for operations that need to be atomic across the entire repository
-    private final ReadWriteLock globalLock = new ReentrantReadWriteLock();
-    
     public InMemoryUserRewardPointsRepository() {
         // Initialize with a demo user for testing purposes
         userPointsMap.put("user123", new UserRewardPoints("user123"));
@@ -29,51 +29,38 @@ public class InMemoryUserRewardPointsRepository implements UserRewardPointsRepos
     
     @Override
     public Optional<UserRewardPoints> findByUserId(String userId) {
-        Lock readLock = globalLock.readLock();
-        readLock.lock();
-        try {
-            UserRewardPoints userRewardPoints = userPointsMap.get(userId);
-            // Return a deep copy to prevent race conditions
-            if (userRewardPoints != null) {
-                return Optional.of(userRewardPoints);
-            }
-            return Optional.empty();
-        } finally {
-            readLock.unlock();
-        }
+        return Optional.ofNullable(userPointsMap.get(userId));
     }
     
     @Override
-    public UserRewardPoints save(UserRewardPoints userRewardPoints) {
-        Lock writeLock = globalLock.writeLock();
-        writeLock.lock();
-        try {
-            userPointsMap.put(userRewardPoints.getUserId(), userRewardPoints);
+    public UserRewardPoints findOrCreate(String userId, Function<String, UserRewardPoints> factory) {
+        // Plain read first so existing users never lock a map bin
+        UserRewardPoints userRewardPoints = userPointsMap.get(userId);
+        if (userRewardPoints != null) {
             return userRewardPoints;
-        } finally {
-            writeLock.unlock();
         }
+        return userPointsMap.computeIfAbsent(userId, factory);
+    }
+    
+    @Override
+    public UserRewardPoints save(UserRewardPoints userRewardPoints) {
+        userPointsMap.put(userRewardPoints.getUserId(), userRewardPoints);
+        return userRewardPoints;
     }
     
     @Override
     public boolean existsByUserId(String userId) {
-        Lock readLock = globalLock.readLock();
-        readLock.lock();
-        try {
-            return userPointsMap.containsKey(userId);
-        } finally {
-            readLock.unlock();
-        }
+        return userPointsMap.containsKey(userId);
     }
     
     @Override
     public void deleteByUserId(String userId) {
-        Lock writeLock = globalLock.writeLock();
-        writeLock.lock();
-        try {
-            userPointsMap.remove(userId);
-        } finally {
-            writeLock.unlock();
-        }
+        userPointsMap.remove(userId);
+    }
+    
+    @Override
+    public void forEach(Consumer<UserRewardPoints> action) {
+        // ConcurrentHashMap iteration is weakly consistent, no lock needed
+        userPointsMap.values().forEach(action);
     }
 }
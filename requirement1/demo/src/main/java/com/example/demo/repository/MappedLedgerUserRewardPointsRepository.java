@@ -0,0 +1,384 @@
+package com.example.demo.repository;
+
+import com.example.demo.infrastructure.exception.InvalidTransactionException;
+import com.example.demo.model.PointLedger;
+import com.example.demo.model.TransactionTemplate;
+import com.example.demo.model.TransactionType;
+import com.example.demo.model.UserRewardPoints;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Durable implementation of UserRewardPointsRepository.
+ * Every saved ledger entry is appended as a fixed-size binary record to a
+ * memory-mapped segment file, so a save is a memory copy rather than a database
+ * round trip. A background thread forces dirty pages to disk in batches, and on
+ * startup all segments are scanned to rebuild balances and transaction history.
+ * Each existing segment is read up to its own file length, so changing the
+ * configured segment size only affects segments created afterwards.
+ *
+ * Enable with {@code reward.repository.type=mapped}.
+ */
+@Repository
+@ConditionalOnProperty(name = "reward.repository.type", havingValue = "mapped")
+public class MappedLedgerUserRewardPointsRepository implements UserRewardPointsRepository {
+
+    private static final Logger log = LoggerFactory.getLogger(MappedLedgerUserRewardPointsRepository.class);
+
+    // Record layout (128 bytes):
+    // magic(4) type(1) userIdLength(1) reserved(2) points(4) epochMillis(8)
+    // templateId(4) templateArgument(8) userId(92) crc32(4)
+    private static final int RECORD_SIZE = 128;
+    private static final int MAGIC = 0x4C454432; // "LED2"
+    private static final int USER_ID_OFFSET = 32;
+    private static final int CRC_OFFSET = RECORD_SIZE - 4;
+    private static final int MAX_USER_ID_BYTES = CRC_OFFSET - USER_ID_OFFSET;
+    private static final byte TOMBSTONE = 0x7F;
+    private static final String SEGMENT_PREFIX = "ledger-";
+    private static final String SEGMENT_SUFFIX = ".seg";
+
+    private final Map<String, UserRewardPoints> userPointsMap = new ConcurrentHashMap<>();
+
+    // Number of each user's ledger entries already written to a segment
+    private final Map<String, Integer> persistedCounts = new ConcurrentHashMap<>();
+
+    private final Path directory;
+    private final int segmentSize;
+    private final int fsyncBatchSize;
+
+    // Serializes appends so that records never interleave within a segment
+    private final Lock appendLock = new ReentrantLock();
+    private final byte[] recordBuffer = new byte[RECORD_SIZE];
+    private final CRC32 crc = new CRC32();
+
+    private final ScheduledExecutorService flusher;
+    private final AtomicInteger unflushedRecords = new AtomicInteger();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+
+    private volatile MappedByteBuffer segment;
+    private int segmentIndex;
+    private int currentSegmentSize;
+    private int writePosition;
+
+    /**
+     * Constructor
+     * @param directory Directory holding the segment files
+     * @param segmentSizeBytes Size of each new segment file
+     * @param fsyncIntervalMillis Maximum time between forced flushes
+     * @param fsyncBatchSize Number of unflushed records that triggers an early flush
+     */
+    public MappedLedgerUserRewardPointsRepository(
+            @Value("${reward.ledger.directory:data/ledger}") String directory,
+            @Value("${reward.ledger.segment-size-bytes:67108864}") int segmentSizeBytes,
+            @Value("${reward.ledger.fsync-interval-ms:10}") long fsyncIntervalMillis,
+            @Value("${reward.ledger.fsync-batch-size:512}") int fsyncBatchSize) {
+        this.directory = Paths.get(directory);
+        this.segmentSize = Math.max(RECORD_SIZE, segmentSizeBytes - segmentSizeBytes % RECORD_SIZE);
+        this.fsyncBatchSize = fsyncBatchSize;
+
+        try {
+            Files.createDirectories(this.directory);
+            recover();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open reward ledger in " + directory, e);
+        }
+
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "reward-ledger-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flush, fsyncIntervalMillis, fsyncIntervalMillis, TimeUnit.MILLISECONDS);
+
+        // Initialize with a demo user for testing purposes
+        if (!userPointsMap.containsKey("user123")) {
+            save(new UserRewardPoints("user123"));
+        }
+    }
+
+    @Override
+    public Optional<UserRewardPoints> findByUserId(String userId) {
+        return Optional.ofNullable(userPointsMap.get(userId));
+    }
+
+    @Override
+    public UserRewardPoints findOrCreate(String userId, Function<String, UserRewardPoints> factory) {
+        UserRewardPoints existing = userPointsMap.get(userId);
+        if (existing != null) {
+            return existing;
+        }
+
+        // Publish first so racing callers share one instance, then persist it.
+        // Not done inside computeIfAbsent: save takes appendLock, which would nest inside the map's bin lock.
+        UserRewardPoints created = factory.apply(userId);
+        existing = userPointsMap.putIfAbsent(userId, created);
+        if (existing != null) {
+            return existing;
+        }
+        return save(created);
+    }
+
+    @Override
+    public UserRewardPoints save(UserRewardPoints userRewardPoints) {
+        String userId = userRewardPoints.getUserId();
+        byte[] userIdBytes = userId.getBytes(StandardCharsets.UTF_8);
+        if (userIdBytes.length > MAX_USER_ID_BYTES) {
+            throw new InvalidTransactionException("User ID must be at most " + MAX_USER_ID_BYTES + " bytes");
+        }
+
+        int appended;
+        appendLock.lock();
+        try {
+            PointLedger ledger = userRewardPoints.getState().getLedger();
+            int persisted = persistedCounts.getOrDefault(userId, 0);
+            for (int i = persisted; i < ledger.size(); i++) {
+                writeRecord(
+                        (byte) ledger.getType(i).ordinal(),
+                        userIdBytes,
+                        ledger.getPoints(i),
+                        ledger.getEpochMillis(i),
+                        ledger.getTemplate(i).getId(),
+                        ledger.getArgument(i));
+            }
+            persistedCounts.put(userId, ledger.size());
+            userPointsMap.put(userId, userRewardPoints);
+            appended = Math.max(0, ledger.size() - persisted);
+        } finally {
+            appendLock.unlock();
+        }
+
+        requestFlushIfNeeded(appended);
+        return userRewardPoints;
+    }
+
+    @Override
+    public boolean existsByUserId(String userId) {
+        return userPointsMap.containsKey(userId);
+    }
+
+    @Override
+    public void deleteByUserId(String userId) {
+        appendLock.lock();
+        try {
+            if (userPointsMap.remove(userId) != null) {
+                writeRecord(TOMBSTONE, userId.getBytes(StandardCharsets.UTF_8), 0, 0L, 0, 0L);
+                persistedCounts.remove(userId);
+            }
+        } finally {
+            appendLock.unlock();
+        }
+        requestFlushIfNeeded(1);
+    }
+
+    @Override
+    public void forEach(Consumer<UserRewardPoints> action) {
+        userPointsMap.values().forEach(action);
+    }
+
+    /**
+     * Force all pending records to disk and stop the background flusher
+     */
+    @PreDestroy
+    public void close() {
+        flusher.shutdown();
+        flush();
+    }
+
+    // Caller must hold appendLock
+    private void writeRecord(byte type, byte[] userIdBytes, int points, long epochMillis,
+                             int templateId, long templateArgument) {
+        if (writePosition + RECORD_SIZE > currentSegmentSize) {
+            rollSegment();
+        }
+
+        byte[] record = recordBuffer;
+        Arrays.fill(record, (byte) 0);
+        putInt(record, 0, MAGIC);
+        record[4] = type;
+        record[5] = (byte) userIdBytes.length;
+        putInt(record, 8, points);
+        putLong(record, 12, epochMillis);
+        putInt(record, 20, templateId);
+        putLong(record, 24, templateArgument);
+        System.arraycopy(userIdBytes, 0, record, USER_ID_OFFSET, userIdBytes.length);
+        crc.reset();
+        crc.update(record, 0, CRC_OFFSET);
+        putInt(record, CRC_OFFSET, (int) crc.getValue());
+
+        segment.put(writePosition, record);
+        writePosition += RECORD_SIZE;
+    }
+
+    private void requestFlushIfNeeded(int appended) {
+        if (unflushedRecords.addAndGet(appended) >= fsyncBatchSize
+                && flushRequested.compareAndSet(false, true)) {
+            flusher.execute(this::flush);
+        }
+    }
+
+    private void flush() {
+        flushRequested.set(false);
+        if (unflushedRecords.getAndSet(0) == 0) {
+            return;
+        }
+        MappedByteBuffer current = segment;
+        try {
+            current.force();
+        } catch (RuntimeException e) {
+            log.error("Failed to flush reward ledger segment", e);
+        }
+    }
+
+    // Caller must hold appendLock
+    private void rollSegment() {
+        // Make the full segment durable before moving on; it is never written again
+        segment.force();
+        segmentIndex++;
+        segment = mapSegment(segmentIndex, segmentSize);
+        currentSegmentSize = segmentSize;
+        writePosition = 0;
+    }
+
+    private MappedByteBuffer mapSegment(int index, int size) {
+        Path path = segmentPath(index);
+        try (FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to map reward ledger segment " + path, e);
+        }
+    }
+
+    /**
+     * Scan every segment in order and rebuild all users from their ledger records.
+     * Scanning stops at the first empty or corrupt record, which marks the end of
+     * the last write before shutdown or crash. A segment's size is taken from its
+     * file rather than the configuration, which may have changed since it was written.
+     */
+    private void recover() throws IOException {
+        List<Path> segments;
+        try (Stream<Path> files = Files.list(directory)) {
+            segments = files
+                    .filter(p -> p.getFileName().toString().startsWith(SEGMENT_PREFIX))
+                    .sorted()
+                    .toList();
+        }
+
+        Map<String, PointLedger> ledgers = new LinkedHashMap<>();
+        TransactionType[] types = TransactionType.values();
+        byte[] record = new byte[RECORD_SIZE];
+        long recovered = 0;
+
+        segmentIndex = 0;
+        currentSegmentSize = segmentSize;
+        writePosition = 0;
+        for (Path path : segments) {
+            String name = path.getFileName().toString();
+            segmentIndex = Integer.parseInt(
+                    name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+            long fileSize = Files.size(path);
+            currentSegmentSize = fileSize >= RECORD_SIZE ? (int) (fileSize - fileSize % RECORD_SIZE) : segmentSize;
+            segment = mapSegment(segmentIndex, currentSegmentSize);
+            writePosition = 0;
+
+            while (writePosition + RECORD_SIZE <= currentSegmentSize) {
+                segment.get(writePosition, record);
+                if (!isValid(record)) {
+                    break;
+                }
+
+                String userId = new String(record, USER_ID_OFFSET, record[5], StandardCharsets.UTF_8);
+                if (record[4] == TOMBSTONE) {
+                    ledgers.remove(userId);
+                } else {
+                    ledgers.put(userId, ledgers.getOrDefault(userId, PointLedger.EMPTY).append(
+                            types[record[4]],
+                            getInt(record, 8),
+                            getLong(record, 12),
+                            TransactionTemplate.fromId(getInt(record, 20)),
+                            getLong(record, 24)));
+                }
+                writePosition += RECORD_SIZE;
+                recovered++;
+            }
+        }
+
+        if (segment == null) {
+            segment = mapSegment(segmentIndex, segmentSize);
+        }
+
+        for (Map.Entry<String, PointLedger> entry : ledgers.entrySet()) {
+            userPointsMap.put(entry.getKey(), UserRewardPoints.restore(entry.getKey(), entry.getValue()));
+            persistedCounts.put(entry.getKey(), entry.getValue().size());
+        }
+        log.info("Recovered {} ledger records for {} users from {} segments",
+                recovered, ledgers.size(), segments.size());
+    }
+
+    private Path segmentPath(int index) {
+        return directory.resolve(String.format("%s%08d%s", SEGMENT_PREFIX, index, SEGMENT_SUFFIX));
+    }
+
+    private boolean isValid(byte[] record) {
+        if (getInt(record, 0) != MAGIC) {
+            return false;
+        }
+        crc.reset();
+        crc.update(record, 0, CRC_OFFSET);
+        return getInt(record, CRC_OFFSET) == (int) crc.getValue();
+    }
+
+    private static void putInt(byte[] buffer, int offset, int value) {
+        buffer[offset] = (byte) (value >>> 24);
+        buffer[offset + 1] = (byte) (value >>> 16);
+        buffer[offset + 2] = (byte) (value >>> 8);
+        buffer[offset + 3] = (byte) value;
+    }
+
+    private static void putLong(byte[] buffer, int offset, long value) {
+        putInt(buffer, offset, (int) (value >>> 32));
+        putInt(buffer, offset + 4, (int) value);
+    }
+
+    private static int getInt(byte[] buffer, int offset) {
+        return ((buffer[offset] & 0xFF) << 24)
+                | ((buffer[offset + 1] & 0xFF) << 16)
+                | ((buffer[offset + 2] & 0xFF) << 8)
+                | (buffer[offset + 3] & 0xFF);
+    }
+
+    private static long getLong(byte[] buffer, int offset) {
+        return ((long) getInt(buffer, offset) << 32) | (getInt(buffer, offset + 4) & 0xFFFFFFFFL);
+    }
+}
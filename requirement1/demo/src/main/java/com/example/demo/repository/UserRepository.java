@@ -0,0 +1,47 @@
+package com.example.demo.repository;
+
+import com.example.demo.model.User;
+
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * Repository interface for login accounts
+ */
+public interface UserRepository {
+    
+    /**
+     * Find a user by username
+     * @param username Username
+     * @return Optional containing the user if found
+     */
+    Optional<User> findByUsername(String username);
+    
+    /**
+     * Save a user, replacing any existing user with the same username
+     * @param user User to save
+     * @return Saved user
+     */
+    User save(User user);
+    
+    /**
+     * Check if a user exists
+     * @param username Username
+     * @return true if the user exists
+     */
+    boolean existsByUsername(String username);
+    
+    /**
+     * Save many users at once, e.g. to seed accounts from an export.
+     * Cheaper per user than repeated {@link #save(User)} calls.
+     * @param users Users to save; existing users with the same username are replaced
+     * @return Number of users saved; implementations may leave out users that were already stored unchanged
+     */
+    long saveAll(Stream<User> users);
+    
+    /**
+     * Get the number of stored users
+     * @return Number of users
+     */
+    long count();
+}
@@ -3,6 +3,8 @@ package com.example.demo.repository;
 import com.example.demo.model.UserRewardPoints;
 
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 /**
  * Repository interface for managing user reward points
@@ -16,6 +18,15 @@ public interface UserRewardPointsRepository {
      */
     Optional<UserRewardPoints> findByUserId(String userId);
     
+    /**
+     * Find user reward points, creating and saving them atomically if absent.
+     * Concurrent callers for the same new user all receive the same instance.
+     * @param userId User ID
+     * @param factory Creates the user reward points if none exist
+     * @return Existing or newly created user reward points
+     */
+    UserRewardPoints findOrCreate(String userId, Function<String, UserRewardPoints> factory);
+    
     /**
      * Save user reward points
      * @param userRewardPoints User reward points to save
@@ -35,4 +46,11 @@ public interface UserRewardPointsRepository {
      * @param userId User ID
      */
     void deleteByUserId(String userId);
+    
+    /**
+     * Visit every stored user without blocking writers.
+     * Users saved or deleted during the iteration may or may not be visited.
+     * @param action Action to apply to each user
+     */
+    void forEach(Consumer<UserRewardPoints> action);
 }
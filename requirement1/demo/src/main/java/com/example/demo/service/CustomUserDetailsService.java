@@ -1,25 +1,123 @@
 package com.example.demo.service;
 
 import com.example.demo.model.User;
+import com.example.demo.repository.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.stereotype.Service;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.stream.Stream;
 
+/**
+ * Loads login accounts from the configured {@link UserRepository}
+ * ({@code user.store.type=memory} or {@code file})
+ */
 @Service
 public class CustomUserDetailsService implements UserDetailsService {
 
-    private Map<String, User> users = new HashMap<>();
+    private static final Logger log = LoggerFactory.getLogger(CustomUserDetailsService.class);
 
-    public CustomUserDetailsService() {
-        // In-memory users with password encoded
-        users.put("user123", new User("user123", "$2a$10$O2i4nHWGDQ9tPqznQXDa5OsHAB.tBIHPM2C0vV2qtsR5ACWC22qgO")); // password: password
+    // Written next to the import file once it has been imported
+    private static final String MARKER_SUFFIX = ".imported";
+
+    private final UserRepository userRepository;
+
+    /**
+     * Constructor
+     * @param userRepository Repository holding the accounts
+     * @param importFile Optional CSV file of accounts to import once, on the first startup that sees it
+     */
+    public CustomUserDetailsService(
+            UserRepository userRepository,
+            @Value("${user.store.import-file:}") String importFile) {
+        this.userRepository = userRepository;
+
+        // Demo user with password encoded
+        if (!userRepository.existsByUsername("user123")) {
+            userRepository.save(new User("user123", "$2a$10$O2i4nHWGDQ9tPqznQXDa5OsHAB.tBIHPM2C0vV2qtsR5ACWC22qgO")); // password: password
+        }
+
+        if (!importFile.isEmpty()) {
+            importOnce(Paths.get(importFile));
+        }
     }
 
     @Override
     public UserDetails loadUserByUsername(String username) {
-        return users.get(username);
+        return userRepository.findByUsername(username).orElse(null);
+    }
+
+    /**
+     * Add or replace an account
+     * @param username Username
+     * @param encodedPassword BCrypt-encoded password
+     * @return The saved user
+     */
+    public User saveUser(String username, String encodedPassword) {
+        return userRepository.save(new User(username, encodedPassword));
+    }
+
+    /**
+     * Bulk import accounts from a CSV file with one {@code username,bcryptHash} line per user.
+     * Blank lines and lines starting with {@code #} are skipped; existing users are replaced.
+     * @param csv File to import
+     * @return Number of users imported
+     */
+    public long importUsers(Path csv) {
+        long start = System.currentTimeMillis();
+        try (Stream<String> lines = Files.lines(csv)) {
+            long imported = userRepository.saveAll(lines
+                    .filter(line -> !line.isBlank() && !line.startsWith("#"))
+                    .map(CustomUserDetailsService::parseUser));
+            log.info("Imported {} users from {} in {} ms", imported, csv, System.currentTimeMillis() - start);
+            return imported;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to import users from " + csv, e);
+        }
+    }
+
+    /**
+     * Import a CSV file unless this exact file was imported before.
+     * A marker file next to it records the size and modification time of the imported
+     * version, so later startups skip it until the file changes.
+     * @param csv File to import
+     * @return Number of users imported, 0 if the file was skipped
+     */
+    public long importOnce(Path csv) {
+        Path marker = csv.resolveSibling(csv.getFileName() + MARKER_SUFFIX);
+        String version;
+        try {
+            version = Files.size(csv) + ":" + Files.getLastModifiedTime(csv).toMillis();
+            if (Files.exists(marker) && Files.readString(marker).equals(version)) {
+                log.info("Skipping import of {}, it was already imported", csv);
+                return 0;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to check import file " + csv, e);
+        }
+
+        long imported = importUsers(csv);
+        try {
+            Files.writeString(marker, version);
+        } catch (IOException e) {
+            log.warn("Failed to write import marker {}; the file will be imported again on the next startup", marker, e);
+        }
+        return imported;
+    }
+
+    private static User parseUser(String line) {
+        int comma = line.indexOf(',');
+        if (comma <= 0 || comma == line.length() - 1) {
+            throw new IllegalArgumentException("Expected username,bcryptHash but got: " + line);
+        }
+        return new User(line.substring(0, comma).trim(), line.substring(comma + 1).trim());
     }
 }
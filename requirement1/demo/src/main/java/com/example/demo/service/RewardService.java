@@ -1,22 +1,37 @@
 package com.example.demo.service;
 
+import com.example.demo.dto.BatchItemResponse;
+import com.example.demo.dto.BatchOperationRequest;
 import com.example.demo.infrastructure.command.CommandExecutorService;
 import com.example.demo.infrastructure.command.reward.EarnPointsCommand;
 import com.example.demo.infrastructure.command.reward.RedeemPointsCommand;
 import com.example.demo.infrastructure.event.EventPublisher;
+import com.example.demo.infrastructure.exception.InsufficientPointsException;
 import com.example.demo.infrastructure.exception.InvalidTransactionException;
 import com.example.demo.infrastructure.factory.UserRewardPointsFactory;
+import com.example.demo.infrastructure.lock.StripedLock;
+import com.example.demo.model.PointLedger;
 import com.example.demo.model.PointTransaction;
+import com.example.demo.model.TransactionPage;
 import com.example.demo.model.UserRewardPoints;
 import com.example.demo.repository.UserRewardPointsRepository;
 import com.example.demo.strategy.PointCalculationStrategy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
 
 /**
  * Thread-safe service for managing reward points
@@ -24,6 +39,15 @@ import java.util.concurrent.locks.ReentrantLock;
 @Service
 public class RewardService {
 
+    private static final Logger log = LoggerFactory.getLogger(RewardService.class);
+
+    // Page size bounds for transaction history
+    public static final int DEFAULT_PAGE_SIZE = 50;
+    public static final int MAX_PAGE_SIZE = 500;
+
+    // How long an operation waits for exclusive access to a user
+    private static final long USER_WAIT_MILLIS = 5000;
+
     private final UserRewardPointsRepository userRewardPointsRepository;
     private final PointCalculationStrategy pointCalculationStrategy;
     private final UserRewardPointsFactory userRewardPointsFactory;
@@ -32,7 +56,7 @@ public class RewardService {
     
     // User-specific locks to prevent concurrent modifications to the same user's data
     // while allowing operations on different users to proceed in parallel
-    private final Lock lock = new ReentrantLock();
+    private final StripedLock userLocks;
 
     /**
      * Constructor
@@ -41,6 +65,7 @@ public class RewardService {
      * @param userRewardPointsFactory Factory for creating user reward points
      * @param commandExecutorService Service for executing commands
      * @param eventPublisher Event publisher
+     * @param userLocks Striped per-user locks
      */
     @Autowired
     public RewardService(
@@ -48,12 +73,14 @@ public class RewardService {
             PointCalculationStrategy pointCalculationStrategy,
             UserRewardPointsFactory userRewardPointsFactory,
             CommandExecutorService commandExecutorService,
-            EventPublisher eventPublisher) {
+            EventPublisher eventPublisher,
+            StripedLock userLocks) {
         this.userRewardPointsRepository = userRewardPointsRepository;
         this.pointCalculationStrategy = pointCalculationStrategy;
         this.userRewardPointsFactory = userRewardPointsFactory;
         this.commandExecutorService = commandExecutorService;
         this.eventPublisher = eventPublisher;
+        this.userLocks = userLocks;
     }
 
     /**
@@ -69,32 +96,13 @@ public class RewardService {
             throw new InvalidTransactionException("Transaction amount must be positive");
         }
 
-        // Try to acquire a lock for this user's operations (timeout after 5 seconds)
-        try {
-            if (lock.tryLock(5, TimeUnit.SECONDS)) {
-                try {
-                    // Get or create user reward points
-                    UserRewardPoints userRewardPoints = getUserRewardPoints(userId);
-                    
-                    // Create and execute the command
-                    EarnPointsCommand command = new EarnPointsCommand(
-                            userRewardPoints, 
-                            transactionAmount, 
-                            pointCalculationStrategy,
-                            userRewardPointsRepository,
-                            eventPublisher);
-                    
-                    return commandExecutorService.executeCommand(command);
-                } finally {
-                    lock.unlock();
-                }
-            } else {
-                throw new InvalidTransactionException("System is busy, please try again later");
-            }
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            throw new InvalidTransactionException("Operation was interrupted");
-        }
+        return runForUser(userId, () -> {
+            // Get or create user reward points
+            UserRewardPoints userRewardPoints = getUserRewardPoints(userId);
+            
+            // Create and execute the command
+            return commandExecutorService.executeCommand(newEarnCommand(userRewardPoints, transactionAmount));
+        });
     }
 
     /**
@@ -110,31 +118,116 @@ public class RewardService {
             throw new InvalidTransactionException("Points to redeem must be positive");
         }
 
-        // Try to acquire a lock for this user's operations (timeout after 5 seconds)
+        return runForUser(userId, () -> {
+            // Get user reward points
+            UserRewardPoints userRewardPoints = getUserRewardPoints(userId);
+            
+            // Create and execute the command, converting the result to boolean (non-zero = success)
+            return commandExecutorService.executeCommand(newRedeemCommand(userRewardPoints, pointsToRedeem)) > 0;
+        });
+    }
+
+    /**
+     * Process a batch of earn and redeem operations (thread-safe).
+     * Operations are grouped by user and each user's group runs under a single
+     * lock acquisition (or as one task on the user's partition), in request order.
+     * Each operation reports its own outcome: a failing operation does not affect the
+     * others, and if a user's group cannot run, only the operations that never ran fail.
+     * @param operations Operations to apply
+     * @return One result per operation, in request order
+     */
+    public List<BatchItemResponse> processBatch(List<BatchOperationRequest> operations) {
+        // Group operation positions by user, keeping first-seen user order
+        Map<String, List<Integer>> positionsByUser = new LinkedHashMap<>();
+        for (int i = 0; i < operations.size(); i++) {
+            positionsByUser.computeIfAbsent(operations.get(i).getUserId(), id -> new ArrayList<>()).add(i);
+        }
+
+        BatchItemResponse[] results = new BatchItemResponse[operations.size()];
+        Map<String, CompletableFuture<Void>> submitted = new LinkedHashMap<>();
+        for (Map.Entry<String, List<Integer>> group : positionsByUser.entrySet()) {
+            String userId = group.getKey();
+            Supplier<Void> work = () -> {
+                UserRewardPoints userRewardPoints = getUserRewardPoints(userId);
+                for (int position : group.getValue()) {
+                    results[position] = applyBatchOperation(userRewardPoints, operations.get(position));
+                }
+                return null;
+            };
+            
+            if (commandExecutorService.isPartitioned()) {
+                // Queue every user's group first so that partitions work on them in parallel
+                submitted.put(userId, commandExecutorService.submit(userId, work));
+                continue;
+            }
+            try {
+                withUserLock(userId, work);
+            } catch (RuntimeException e) {
+                failBatchGroup(results, userId, group.getValue(), e);
+            }
+        }
+        
+        for (Map.Entry<String, CompletableFuture<Void>> entry : submitted.entrySet()) {
+            try {
+                commandExecutorService.await(entry.getValue(), USER_WAIT_MILLIS);
+            } catch (RuntimeException e) {
+                failBatchGroup(results, entry.getKey(), positionsByUser.get(entry.getKey()), e);
+            }
+        }
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Mark the operations of a user's group that never ran as failed (the lock or partition
+     * was unavailable, or the group stopped part way). Results of operations that ran are kept.
+     * @param results Results being built
+     * @param userId User ID
+     * @param positions Positions of the user's operations
+     * @param failure Why the group could not run
+     */
+    private static void failBatchGroup(BatchItemResponse[] results, String userId, List<Integer> positions, RuntimeException failure) {
+        String message = failure.getMessage();
+        if (!(failure instanceof InvalidTransactionException)) {
+            log.error("Batch operations for user {} failed", userId, failure);
+            message = "Operation failed";
+        }
+        for (int position : positions) {
+            if (results[position] == null) {
+                results[position] = BatchItemResponse.error(userId, message);
+            }
+        }
+    }
+
+    /**
+     * Apply one batch operation; the caller must have exclusive access to the user
+     * @param userRewardPoints User reward points
+     * @param operation Operation to apply
+     * @return Result of the operation
+     */
+    private BatchItemResponse applyBatchOperation(UserRewardPoints userRewardPoints, BatchOperationRequest operation) {
+        String userId = userRewardPoints.getUserId();
         try {
-            if (lock.tryLock(5, TimeUnit.SECONDS)) {
-                try {
-                    // Get user reward points
-                    UserRewardPoints userRewardPoints = getUserRewardPoints(userId);
-                    
-                    // Create and execute the command
-                    RedeemPointsCommand command = new RedeemPointsCommand(
-                            userRewardPoints, 
-                            pointsToRedeem, 
-                            userRewardPointsRepository,
-                            eventPublisher);
-                    
-                    // Execute command and convert result to boolean (non-zero = success)
-                    return commandExecutorService.executeCommand(command) > 0;
-                } finally {
-                    lock.unlock();
+            int points;
+            if (operation.getType() == BatchOperationRequest.OperationType.EARN) {
+                if (operation.getTransactionAmount() <= 0) {
+                    throw new InvalidTransactionException("Transaction amount must be positive");
                 }
+                points = commandExecutorService.executeCommand(
+                        newEarnCommand(userRewardPoints, operation.getTransactionAmount()));
             } else {
-                throw new InvalidTransactionException("System is busy, please try again later");
+                if (operation.getPoints() <= 0) {
+                    throw new InvalidTransactionException("Points to redeem must be positive");
+                }
+                points = commandExecutorService.executeCommand(
+                        newRedeemCommand(userRewardPoints, operation.getPoints()));
             }
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            throw new InvalidTransactionException("Operation was interrupted");
+            return BatchItemResponse.success(userId, points, userRewardPoints.getRewardPoints());
+        } catch (InvalidTransactionException | InsufficientPointsException e) {
+            return BatchItemResponse.error(userId, e.getMessage());
+        } catch (RuntimeException e) {
+            // Report it for this operation only; the rest of the user's group still runs
+            log.error("Batch operation for user {} failed", userId, e);
+            return BatchItemResponse.error(userId, "Operation failed");
         }
     }
 
@@ -165,16 +258,123 @@ public class RewardService {
         return getUserRewardPoints(userId).getTransactions();
     }
     
+    /**
+     * Get one page of transaction history for a user, newest first (thread-safe)
+     * @param userId User ID
+     * @param cursor Cursor returned with the previous page, or null for the newest entries
+     * @param limit Maximum number of transactions (capped at MAX_PAGE_SIZE)
+     * @return Page of transactions with the cursor for the next page
+     * @throws InvalidTransactionException if the cursor or limit is invalid
+     */
+    public TransactionPage getTransactionPage(String userId, String cursor, int limit) {
+        if (limit <= 0) {
+            throw new InvalidTransactionException("Page limit must be positive");
+        }
+        
+        PointLedger ledger = getUserRewardPoints(userId).getState().getLedger();
+        int before = cursor == null || cursor.isEmpty() ? ledger.size() : decodeCursor(cursor);
+        List<PointTransaction> transactions = ledger.pageBefore(before, Math.min(limit, MAX_PAGE_SIZE), userId);
+        
+        int next = Math.min(before, ledger.size()) - transactions.size();
+        return new TransactionPage(transactions, next > 0 ? encodeCursor(next) : null);
+    }
+    
     /**
      * Get or create user reward points (thread-safe)
      * @param userId User ID
      * @return User reward points
      */
     private UserRewardPoints getUserRewardPoints(String userId) {
-        return userRewardPointsRepository.findByUserId(userId)
-                .orElseGet(() -> {
-                    UserRewardPoints newUserRewardPoints = userRewardPointsFactory.createUserRewardPoints(userId);
-                    return userRewardPointsRepository.save(newUserRewardPoints);
-                });
+        return userRewardPointsRepository.findOrCreate(userId, userRewardPointsFactory::createUserRewardPoints);
+    }
+    
+    private EarnPointsCommand newEarnCommand(UserRewardPoints userRewardPoints, double transactionAmount) {
+        return new EarnPointsCommand(
+                userRewardPoints, 
+                transactionAmount, 
+                pointCalculationStrategy,
+                userRewardPointsRepository,
+                eventPublisher);
+    }
+    
+    private RedeemPointsCommand newRedeemCommand(UserRewardPoints userRewardPoints, int pointsToRedeem) {
+        return new RedeemPointsCommand(
+                userRewardPoints, 
+                pointsToRedeem, 
+                userRewardPointsRepository,
+                eventPublisher);
+    }
+    
+    /**
+     * Encode a ledger position as an opaque page cursor
+     * @param position Ledger position to continue from
+     * @return Cursor string
+     */
+    private static String encodeCursor(int position) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(Integer.toString(position).getBytes(StandardCharsets.US_ASCII));
+    }
+    
+    /**
+     * Decode a page cursor back into a ledger position
+     * @param cursor Cursor string
+     * @return Ledger position
+     * @throws InvalidTransactionException if the cursor is malformed
+     */
+    private static int decodeCursor(String cursor) {
+        try {
+            int position = Integer.parseInt(
+                    new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.US_ASCII));
+            if (position < 0) {
+                throw new InvalidTransactionException("Invalid page cursor");
+            }
+            return position;
+        } catch (IllegalArgumentException e) {
+            throw new InvalidTransactionException("Invalid page cursor");
+        }
+    }
+    
+    /**
+     * Run an action with exclusive access to the given user's data.
+     * In partitioned mode the action runs on the user's command partition thread and is
+     * abandoned if it has not started within 5 seconds; otherwise it runs on the calling
+     * thread under the user's lock.
+     * @param userId User ID
+     * @param action Action to run
+     * @param <T> Result type
+     * @return Result of the action
+     * @throws InvalidTransactionException if the user could not be accessed in time
+     */
+    private <T> T runForUser(String userId, Supplier<T> action) {
+        if (!commandExecutorService.isPartitioned()) {
+            return withUserLock(userId, action);
+        }
+        return commandExecutorService.await(commandExecutorService.submit(userId, action), USER_WAIT_MILLIS);
+    }
+    
+    /**
+     * Run an action while holding the lock for the given user (timeout after 5 seconds)
+     * @param userId User ID
+     * @param action Action to run
+     * @param <T> Result type
+     * @return Result of the action
+     * @throws InvalidTransactionException if the lock cannot be acquired
+     */
+    private <T> T withUserLock(String userId, Supplier<T> action) {
+        Lock lock = userLocks.get(userId);
+        try {
+            if (lock.tryLock(USER_WAIT_MILLIS, TimeUnit.MILLISECONDS)) {
+                try {
+                    return action.get();
+                } finally {
+                    lock.unlock();
+                }
+            } else {
+                throw new InvalidTransactionException("System is busy, please try again later");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InvalidTransactionException("Operation was interrupted");
+        }
     }
 }
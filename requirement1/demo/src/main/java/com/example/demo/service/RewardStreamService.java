@@ -0,0 +1,253 @@
+package com.example.demo.service;
+
+import com.example.demo.dto.BalanceResponse;
+import com.example.demo.infrastructure.event.Event;
+import com.example.demo.infrastructure.event.EventListener;
+import com.example.demo.infrastructure.event.EventTypes;
+import com.example.demo.infrastructure.event.reward.RewardEventData;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter.DataWithMediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntSupplier;
+
+/**
+ * Pushes reward balance changes to clients over server-sent events.
+ *
+ * Receives reward events from the {@link com.example.demo.infrastructure.event.EventPublisher}
+ * and queues them per subscriber. Each subscriber has a bounded queue, drained by a
+ * small sender pool, so a slow client never blocks event delivery or other clients;
+ * a subscriber whose queue overflows is disconnected and is expected to reconnect.
+ * Connections are held as async requests and use no servlet thread while idle.
+ */
+@Service
+public class RewardStreamService implements EventListener<Event<RewardEventData>> {
+
+    private static final Logger log = LoggerFactory.getLogger(RewardStreamService.class);
+
+    private static final String BALANCE_EVENT = "BALANCE";
+
+    private final Set<Subscriber> noSubscribers = Set.of();
+    private final ConcurrentHashMap<String, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+    private final AtomicLong evictedSubscribers = new AtomicLong();
+
+    private final int queueCapacity;
+    private final int maxSubscribers;
+    private final long timeoutMillis;
+    private final ExecutorService senders;
+    private final ScheduledExecutorService heartbeats;
+
+    /**
+     * Constructor
+     * @param queueCapacity Events buffered per subscriber before it is evicted
+     * @param maxSubscribers Maximum open streams
+     * @param timeoutMillis Time after which a stream is closed and the client reconnects
+     * @param heartbeatMillis Interval between keep-alive comments (0 disables them)
+     * @param senderThreads Threads writing events to clients
+     * @param meterRegistry Registry for stream metrics, if available
+     */
+    public RewardStreamService(
+            @Value("${reward.stream.queue-capacity:64}") int queueCapacity,
+            @Value("${reward.stream.max-subscribers:10000}") int maxSubscribers,
+            @Value("${reward.stream.timeout-ms:1800000}") long timeoutMillis,
+            @Value("${reward.stream.heartbeat-ms:15000}") long heartbeatMillis,
+            @Value("${reward.stream.sender-threads:2}") int senderThreads,
+            ObjectProvider<MeterRegistry> meterRegistry) {
+        this.queueCapacity = Math.max(1, queueCapacity);
+        this.maxSubscribers = maxSubscribers;
+        this.timeoutMillis = timeoutMillis;
+
+        this.senders = Executors.newFixedThreadPool(Math.max(1, senderThreads), r -> {
+            Thread thread = new Thread(r, "reward-stream-sender");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.heartbeats = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "reward-stream-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (heartbeatMillis > 0) {
+            heartbeats.scheduleWithFixedDelay(this::sendHeartbeats, heartbeatMillis, heartbeatMillis, TimeUnit.MILLISECONDS);
+        }
+
+        meterRegistry.ifAvailable(this::registerMetrics);
+    }
+
+    /**
+     * Open a stream of balance changes for a user.
+     * The current balance is sent first, followed by every later earn and redeem.
+     * The balance is read after the subscriber is registered, so no change is missed.
+     * @param userId User ID
+     * @param currentBalance Reads the user's current balance
+     * @return Emitter for the stream, or empty if the subscriber limit is reached
+     */
+    public Optional<SseEmitter> subscribe(String userId, IntSupplier currentBalance) {
+        if (subscriberCount.incrementAndGet() > maxSubscribers) {
+            subscriberCount.decrementAndGet();
+            return Optional.empty();
+        }
+
+        SseEmitter emitter = new SseEmitter(timeoutMillis);
+        Subscriber subscriber = new Subscriber(userId, emitter, queueCapacity);
+        subscribers.computeIfAbsent(userId, id -> ConcurrentHashMap.newKeySet()).add(subscriber);
+
+        emitter.onCompletion(() -> remove(subscriber));
+        emitter.onTimeout(() -> remove(subscriber));
+        emitter.onError(error -> remove(subscriber));
+
+        enqueue(subscriber, SseEmitter.event()
+                .name(BALANCE_EVENT)
+                .data(new BalanceResponse(userId, currentBalance.getAsInt()))
+                .build());
+        return Optional.of(emitter);
+    }
+
+    @Override
+    public void onEvent(Event<RewardEventData> event) {
+        Set<Subscriber> targets = subscribers.getOrDefault(event.getUserId(), noSubscribers);
+        if (targets.isEmpty()) {
+            return;
+        }
+
+        // Built once and shared; the encoded message is not modified after build()
+        Set<DataWithMediaType> message = SseEmitter.event()
+                .id(event.getEventId())
+                .name(event.getEventType())
+                .data(event.getEventData())
+                .build();
+        for (Subscriber subscriber : targets) {
+            enqueue(subscriber, message);
+        }
+    }
+
+    @Override
+    public boolean supportsEventType(String eventType) {
+        return eventType.equals(EventTypes.POINTS_EARNED) ||
+               eventType.equals(EventTypes.POINTS_REDEEMED);
+    }
+
+    /**
+     * Get the number of open streams
+     * @return Open streams
+     */
+    public int getSubscriberCount() {
+        return subscriberCount.get();
+    }
+
+    /**
+     * Close every stream and stop the sender threads
+     */
+    @PreDestroy
+    public void shutdown() {
+        heartbeats.shutdownNow();
+        senders.shutdownNow();
+        subscribers.values().forEach(users -> users.forEach(subscriber -> subscriber.emitter.complete()));
+    }
+
+    private void enqueue(Subscriber subscriber, Set<DataWithMediaType> message) {
+        if (subscriber.closed) {
+            return;
+        }
+        if (!subscriber.queue.offer(message)) {
+            // The client is not keeping up; it reconnects and starts from its current balance
+            evictedSubscribers.incrementAndGet();
+            log.debug("Evicting slow reward stream subscriber for user {}", subscriber.userId);
+            close(subscriber);
+            return;
+        }
+        if (subscriber.scheduled.compareAndSet(false, true)) {
+            senders.execute(() -> drain(subscriber));
+        }
+    }
+
+    private void drain(Subscriber subscriber) {
+        do {
+            Set<DataWithMediaType> message;
+            while ((message = subscriber.queue.poll()) != null) {
+                if (subscriber.closed) {
+                    subscriber.queue.clear();
+                    break;
+                }
+                try {
+                    subscriber.emitter.send(message);
+                } catch (IOException | IllegalStateException e) {
+                    // The client has gone away
+                    close(subscriber);
+                }
+            }
+            subscriber.scheduled.set(false);
+            // An event queued after the last poll but before the flag was cleared still needs sending
+        } while (!subscriber.queue.isEmpty() && subscriber.scheduled.compareAndSet(false, true));
+    }
+
+    private void sendHeartbeats() {
+        Set<DataWithMediaType> heartbeat = SseEmitter.event().comment("keep-alive").build();
+        subscribers.values().forEach(users -> users.forEach(subscriber -> enqueue(subscriber, heartbeat)));
+    }
+
+    private void close(Subscriber subscriber) {
+        if (remove(subscriber)) {
+            subscriber.emitter.complete();
+        }
+    }
+
+    private boolean remove(Subscriber subscriber) {
+        synchronized (subscriber) {
+            if (subscriber.closed) {
+                return false;
+            }
+            subscriber.closed = true;
+        }
+        subscriberCount.decrementAndGet();
+        subscribers.computeIfPresent(subscriber.userId, (userId, users) -> {
+            users.remove(subscriber);
+            return users.isEmpty() ? null : users;
+        });
+        return true;
+    }
+
+    private void registerMetrics(MeterRegistry registry) {
+        Gauge.builder("rewards.stream.subscribers", this, RewardStreamService::getSubscriberCount)
+                .description("Open reward balance streams")
+                .register(registry);
+        FunctionCounter.builder("rewards.stream.evicted", evictedSubscribers, AtomicLong::get)
+                .description("Reward balance streams closed because the client fell behind")
+                .register(registry);
+    }
+
+    private static final class Subscriber {
+        private final String userId;
+        private final SseEmitter emitter;
+        private final ArrayBlockingQueue<Set<DataWithMediaType>> queue;
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private volatile boolean closed;
+
+        private Subscriber(String userId, SseEmitter emitter, int capacity) {
+            this.userId = userId;
+            this.emitter = emitter;
+            this.queue = new ArrayBlockingQueue<>(capacity);
+        }
+    }
+}
@@ -3,6 +3,7 @@ package com.example.demo.service;
 import com.example.demo.infrastructure.exception.InvalidTransactionException;
 import com.example.demo.infrastructure.exception.SecurityException;
 import com.example.demo.model.PointTransaction;
+import com.example.demo.model.TransactionPage;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -166,4 +167,17 @@ public class SecureRewardService {
     public List<PointTransaction> getTransactionHistory(String userId) {
         return rewardService.getTransactionHistory(userId);
     }
+    
+    /**
+     * Get one page of transaction history for a user, newest first
+     * (No security verification needed for query operations)
+     * 
+     * @param userId User ID
+     * @param cursor Cursor returned with the previous page, or null for the newest entries
+     * @param limit Maximum number of transactions
+     * @return Page of transactions
+     */
+    public TransactionPage getTransactionPage(String userId, String cursor, int limit) {
+        return rewardService.getTransactionPage(userId, cursor, limit);
+    }
 }
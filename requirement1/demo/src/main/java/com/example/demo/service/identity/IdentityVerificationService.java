@@ -3,6 +3,7 @@ package com.example.demo.service.identity;
 import com.example.demo.dto.IdentityVerificationRequest;
 import com.example.demo.dto.IdentityVerificationResult;
 import com.example.demo.infrastructure.event.EventPublisher;
+import com.example.demo.infrastructure.id.IdGenerator;
 import com.example.demo.model.User;
 import com.example.demo.service.CustomUserDetailsService;
 import org.slf4j.Logger;
@@ -20,7 +21,6 @@ import java.time.Duration;
 import java.time.Instant;
 import java.util.Base64;
 import java.util.Map;
-import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
@@ -58,20 +58,24 @@ public class IdentityVerificationService {
     
     private final CustomUserDetailsService userDetailsService;
     private final EventPublisher eventPublisher;
+    private final IdGenerator idGenerator;
     
     /**
      * Constructor
      * @param cacheManager Cache manager for storing verification results
      * @param userDetailsService User details service
      * @param eventPublisher Event publisher for audit and monitoring events
+     * @param idGenerator Generator for request and verification IDs
      */
     @Autowired
     public IdentityVerificationService(CacheManager cacheManager, 
                                        CustomUserDetailsService userDetailsService,
-                                       EventPublisher eventPublisher) {
+                                       EventPublisher eventPublisher,
+                                       IdGenerator idGenerator) {
         this.verificationCache = cacheManager.getCache("identityVerificationCache");
         this.userDetailsService = userDetailsService;
         this.eventPublisher = eventPublisher;
+        this.idGenerator = idGenerator;
     }
     
     /**
@@ -137,7 +141,7 @@ public class IdentityVerificationService {
         
         try {
             // Generate a request ID for traceability
-            String requestId = UUID.randomUUID().toString();
+            String requestId = idGenerator.nextId();
             
             // 1. Create the verification payload
             String requestPayload = createVerificationPayload(userId, requestId);
@@ -228,7 +232,7 @@ public class IdentityVerificationService {
         
         // Successful verification
         return IdentityVerificationResult.success(
-                UUID.randomUUID().toString(), // Verification ID from third-party
+                idGenerator.nextId(), // Verification ID from third-party
                 "STANDARD"  // Verification level
         );
     }
@@ -335,7 +339,7 @@ public class IdentityVerificationService {
             
             // Create successful verification result
             IdentityVerificationResult result = IdentityVerificationResult.success(
-                    UUID.randomUUID().toString(),
+                    idGenerator.nextId(),
                     "MFA_VERIFIED");
             
             // Cache the result
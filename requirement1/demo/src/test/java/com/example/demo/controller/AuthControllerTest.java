@@ -0,0 +1,113 @@
+package com.example.demo.controller;
+
+import com.example.demo.infrastructure.GlobalExceptionHandler;
+import com.example.demo.infrastructure.security.JwtService;
+import com.example.demo.infrastructure.security.PasswordVerificationExecutor;
+import com.example.demo.infrastructure.security.RefreshTokenStore;
+import com.example.demo.infrastructure.security.TokenRevocationList;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.http.MediaType;
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Runs the login and refresh endpoints without the security filters, which only
+ * pass these paths through
+ */
+class AuthControllerTest {
+
+    private static final String SECRET = "5367566859703373367639792F423F452848284D6251655468576D5A71347437";
+
+    private final UserDetails alice = User.withUsername("alice").password("secret").roles("USER").build();
+    private final TokenRevocationList revocationList = new TokenRevocationList(1 << 10);
+    private final RefreshTokenStore refreshTokenStore = new RefreshTokenStore(TimeUnit.DAYS.toMillis(1), 10, revocationList);
+    private final PasswordVerificationExecutor passwordVerificationExecutor = new PasswordVerificationExecutor(
+            1, 1, new StaticListableBeanFactory(Map.of()).getBeanProvider(MeterRegistry.class));
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        AuthenticationManager authenticationManager = authentication -> {
+            if (alice.getUsername().equals(authentication.getName()) && alice.getPassword().equals(authentication.getCredentials())) {
+                return UsernamePasswordAuthenticationToken.authenticated(alice, null, alice.getAuthorities());
+            }
+            throw new BadCredentialsException("Bad credentials");
+        };
+        UserDetailsService userDetailsService = username -> alice;
+
+        AuthController controller = new AuthController();
+        ReflectionTestUtils.setField(controller, "authenticationManager", authenticationManager);
+        ReflectionTestUtils.setField(controller, "jwtService", new JwtService(SECRET, TimeUnit.HOURS.toMillis(1), 1000, revocationList));
+        ReflectionTestUtils.setField(controller, "tokenRevocationList", revocationList);
+        ReflectionTestUtils.setField(controller, "refreshTokenStore", refreshTokenStore);
+        ReflectionTestUtils.setField(controller, "passwordVerificationExecutor", passwordVerificationExecutor);
+        ReflectionTestUtils.setField(controller, "userDetailsService", userDetailsService);
+        mockMvc = MockMvcBuilders.standaloneSetup(controller)
+                .setControllerAdvice(new GlobalExceptionHandler())
+                .build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        passwordVerificationExecutor.shutdown();
+        refreshTokenStore.close();
+    }
+
+    @Test
+    void testLoginWithBadCredentialsIsUnauthorized() throws Exception {
+        MvcResult result = mockMvc.perform(post("/login")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"username\":\"alice\",\"password\":\"wrong\"}"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        // The failure arrives through the CompletableFuture, wrapped in a CompletionException
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isUnauthorized())
+                .andExpect(jsonPath("$.message").value("Invalid username or password"));
+    }
+
+    @Test
+    void testRefreshTokenFromLoginWorksOnce() throws Exception {
+        MvcResult login = mockMvc.perform(post("/login")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"username\":\"alice\",\"password\":\"secret\"}"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String refreshToken = mockMvc.perform(asyncDispatch(login))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(AuthController.REFRESH_TOKEN_HEADER);
+        assertNotNull(refreshToken);
+
+        String body = "{\"refreshToken\":\"" + refreshToken + "\"}";
+        String next = mockMvc.perform(post("/tokens/refresh").contentType(MediaType.APPLICATION_JSON).content(body))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(AuthController.REFRESH_TOKEN_HEADER);
+        assertNotNull(next);
+        mockMvc.perform(post("/tokens/refresh").contentType(MediaType.APPLICATION_JSON).content(body))
+                .andExpect(status().isUnauthorized());
+    }
+}
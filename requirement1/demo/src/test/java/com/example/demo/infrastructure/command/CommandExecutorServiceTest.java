@@ -0,0 +1,143 @@
+package com.example.demo.infrastructure.command;
+
+import com.example.demo.infrastructure.command.journal.CommandJournal;
+import com.example.demo.infrastructure.command.journal.CommandRecord;
+import com.example.demo.infrastructure.command.reward.EarnPointsCommand;
+import com.example.demo.infrastructure.exception.InvalidTransactionException;
+import com.example.demo.model.UserRewardPoints;
+import com.example.demo.repository.InMemoryUserRewardPointsRepository;
+import com.example.demo.repository.UserRewardPointsRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CommandExecutorServiceTest {
+
+    @TempDir
+    Path directory;
+
+    private final UserRewardPointsRepository repository = new InMemoryUserRewardPointsRepository();
+
+    @Test
+    void testJournaledCommandIsRecordedWithTheVersionItProduces() throws Exception {
+        CommandJournal journal = new CommandJournal(directory.toString(), 16, 1024);
+        CommandExecutorService executor = new CommandExecutorService(
+                CommandExecutorService.MODE_INLINE, 0, 16, 1000, journal);
+        UserRewardPoints user = new UserRewardPoints("alice");
+
+        int points = executor.executeCommand(earn(user, 100));
+        assertEquals(10, points);
+        assertEquals(1, journal.getAppliedLsn());
+        journal.close();
+
+        List<CommandRecord> records = new ArrayList<>();
+        CommandJournal reopened = new CommandJournal(directory.toString(), 16, 1024);
+        reopened.replay(records::add);
+        reopened.close();
+        assertEquals(1, records.size());
+        assertEquals(10, records.get(0).getPoints());
+        assertEquals(user.getVersion(), records.get(0).getVersion());
+    }
+
+    @Test
+    void testCommandIsNotAppliedWhenTheJournalCannotRecordIt() throws Exception {
+        CommandJournal journal = new CommandJournal(directory.toString(), 16, 1024);
+        journal.close();
+        CommandExecutorService executor = new CommandExecutorService(
+                CommandExecutorService.MODE_INLINE, 0, 16, 1000, journal);
+        UserRewardPoints user = new UserRewardPoints("alice");
+        int balance = user.getRewardPoints();
+
+        assertThrows(InvalidTransactionException.class, () -> executor.executeCommand(earn(user, 100)));
+        assertEquals(balance, user.getRewardPoints());
+        assertEquals(1, user.getVersion());
+    }
+
+    @Test
+    void testUserIdTooLongForTheJournalIsAnInvalidTransaction() throws Exception {
+        CommandJournal journal = new CommandJournal(directory.toString(), 16, 1024);
+        CommandExecutorService executor = new CommandExecutorService(
+                CommandExecutorService.MODE_INLINE, 0, 16, 1000, journal);
+        // Two bytes per character in UTF-8
+        UserRewardPoints user = new UserRewardPoints("ü".repeat(CommandJournal.MAX_USER_ID_BYTES / 2 + 1));
+        int balance = user.getRewardPoints();
+
+        try {
+            assertThrows(InvalidTransactionException.class, () -> executor.executeCommand(earn(user, 100)));
+            assertEquals(balance, user.getRewardPoints());
+            assertEquals(0, journal.getAppliedLsn());
+        } finally {
+            journal.close();
+        }
+    }
+
+    @Test
+    void testShutdownFailsQueuedWorkAndRejectsNewWork() throws Exception {
+        CommandExecutorService executor = new CommandExecutorService(
+                CommandExecutorService.MODE_PARTITIONED, 1, 16, 1000, (CommandJournal) null);
+        CompletableFuture<Void> release = new CompletableFuture<>();
+        CountDownLatch started = new CountDownLatch(1);
+        AtomicInteger queuedRuns = new AtomicInteger();
+
+        CompletableFuture<Integer> running = executor.submit("alice", () -> {
+            started.countDown();
+            release.join();
+            return 1;
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        CompletableFuture<Integer> queued = executor.submit("alice", queuedRuns::incrementAndGet);
+
+        Thread stopper = new Thread(executor::shutdown);
+        stopper.start();
+        CompletionException failure = assertThrows(CompletionException.class, queued::join);
+        assertTrue(failure.getCause() instanceof InvalidTransactionException);
+        assertThrows(CompletionException.class, () -> executor.submit("bob", () -> 2).join());
+
+        // Work that already started finishes normally
+        release.complete(null);
+        int result = running.join();
+        assertEquals(1, result);
+        stopper.join(5000);
+        assertEquals(0, queuedRuns.get());
+    }
+
+    @Test
+    void testAwaitCancelsWorkThatHasNotStarted() throws Exception {
+        CommandExecutorService executor = new CommandExecutorService(
+                CommandExecutorService.MODE_PARTITIONED, 1, 16, 1000, (CommandJournal) null);
+        CompletableFuture<Void> release = new CompletableFuture<>();
+        AtomicInteger queuedRuns = new AtomicInteger();
+        try {
+            CompletableFuture<Integer> running = executor.submit("alice", () -> {
+                release.join();
+                return 1;
+            });
+            CompletableFuture<Integer> queued = executor.submit("alice", queuedRuns::incrementAndGet);
+
+            assertThrows(InvalidTransactionException.class, () -> executor.await(queued, 50));
+            release.complete(null);
+            int result = executor.await(running, 50);
+            assertEquals(1, result);
+            assertEquals(0, queuedRuns.get());
+        } finally {
+            release.complete(null);
+            executor.shutdown();
+        }
+    }
+
+    private EarnPointsCommand earn(UserRewardPoints user, double amount) {
+        return new EarnPointsCommand(user, amount, value -> (int) (value / 10), repository, null);
+    }
+}
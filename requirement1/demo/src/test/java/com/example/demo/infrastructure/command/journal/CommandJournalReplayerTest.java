@@ -0,0 +1,97 @@
+package com.example.demo.infrastructure.command.journal;
+
+import com.example.demo.infrastructure.command.CommandExecutorService;
+import com.example.demo.infrastructure.command.reward.EarnPointsCommand;
+import com.example.demo.infrastructure.command.reward.RedeemPointsCommand;
+import com.example.demo.model.PointLedger;
+import com.example.demo.model.UserRewardPoints;
+import com.example.demo.repository.InMemoryUserRewardPointsRepository;
+import com.example.demo.repository.UserRewardPointsRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CommandJournalReplayerTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testRestartRestoresSnapshotAndLaterCommandsWithTheirTimestamps() throws Exception {
+        UserRewardPointsRepository repository = new InMemoryUserRewardPointsRepository();
+        CommandJournal journal = openJournal();
+        RewardSnapshotStore snapshots = openSnapshots(journal, repository);
+        CommandExecutorService executor = new CommandExecutorService(
+                CommandExecutorService.MODE_INLINE, 0, 16, 1000, journal);
+
+        UserRewardPoints alice = repository.findOrCreate("alice", UserRewardPoints::new);
+        for (int i = 0; i < 3; i++) {
+            executor.executeCommand(new EarnPointsCommand(alice, 100, amount -> 10, repository, null));
+        }
+        assertEquals(3, snapshots.snapshot());
+
+        // Segments hold two records each; the one covered by the snapshot is gone
+        assertEquals(List.of("commands-00000000000000000003.journal"), segmentNames());
+
+        executor.executeCommand(new RedeemPointsCommand(alice, 25, repository, null));
+        UserRewardPoints bob = repository.findOrCreate("bob", UserRewardPoints::new);
+        executor.executeCommand(new EarnPointsCommand(bob, 50, amount -> 5, repository, null));
+        journal.close();
+        snapshots.close();
+        Thread.sleep(20);
+
+        UserRewardPointsRepository restored = new InMemoryUserRewardPointsRepository();
+        CommandJournal reopened = openJournal();
+        RewardSnapshotStore reopenedSnapshots = openSnapshots(reopened, restored);
+        try {
+            new CommandJournalReplayer(reopened, reopenedSnapshots, restored, UserRewardPoints::new,
+                    new StaticListableBeanFactory().getBeanProvider(MeterRegistry.class)).replay();
+
+            assertSameLedger(alice, restored.findByUserId("alice").orElseThrow(), 0);
+            // Bob is not in the snapshot, so their initial balance is dated with their first command
+            UserRewardPoints restoredBob = restored.findByUserId("bob").orElseThrow();
+            assertSameLedger(bob, restoredBob, 1);
+            assertEquals(bob.getState().getLedger().getEpochMillis(1), restoredBob.getState().getLedger().getEpochMillis(0));
+            assertEquals(505, restored.findByUserId("alice").orElseThrow().getRewardPoints());
+        } finally {
+            reopened.close();
+            reopenedSnapshots.close();
+        }
+    }
+
+    private CommandJournal openJournal() {
+        return new CommandJournal(directory.resolve("journal").toString(), 16, 2);
+    }
+
+    private RewardSnapshotStore openSnapshots(CommandJournal journal, UserRewardPointsRepository repository) {
+        return new RewardSnapshotStore(directory.resolve("snapshots").toString(), 0, 2, journal, repository);
+    }
+
+    private List<String> segmentNames() throws Exception {
+        try (Stream<Path> files = Files.list(directory.resolve("journal"))) {
+            return files.map(file -> file.getFileName().toString()).sorted().collect(Collectors.toList());
+        }
+    }
+
+    private static void assertSameLedger(UserRewardPoints expected, UserRewardPoints actual, int from) {
+        PointLedger expectedLedger = expected.getState().getLedger();
+        PointLedger actualLedger = actual.getState().getLedger();
+        assertEquals(expectedLedger.size(), actualLedger.size());
+        for (int i = from; i < expectedLedger.size(); i++) {
+            assertEquals(expectedLedger.getType(i), actualLedger.getType(i));
+            assertEquals(expectedLedger.getPoints(i), actualLedger.getPoints(i));
+            assertEquals(expectedLedger.getArgument(i), actualLedger.getArgument(i));
+            assertEquals(expectedLedger.getEpochMillis(i), actualLedger.getEpochMillis(i));
+        }
+        assertEquals(expected.getVersion(), actual.getVersion());
+    }
+}
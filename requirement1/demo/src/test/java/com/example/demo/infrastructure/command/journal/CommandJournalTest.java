@@ -0,0 +1,291 @@
+package com.example.demo.infrastructure.command.journal;
+
+import com.example.demo.infrastructure.command.CommandTypes;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CommandJournalTest {
+
+    private static final String FIRST_SEGMENT = "commands-00000000000000000001.journal";
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testRecordsSurviveReopen() throws Exception {
+        String userId = "ü".repeat(38);
+        long epochMillis = 1_700_000_000_123L;
+        CommandJournal journal = open();
+        append(journal, new CommandRecord(CommandTypes.EARN_POINTS, userId, 12, Double.doubleToLongBits(120.5), 1, 112, epochMillis));
+        append(journal, new CommandRecord(CommandTypes.REDEEM_POINTS, "alice", 7, 7, 2, 105, epochMillis + 1));
+        journal.close();
+
+        CommandJournal reopened = open();
+        try {
+            List<CommandRecord> records = new ArrayList<>();
+            List<Long> lsns = new ArrayList<>();
+            reopened.replay(0L, (lsn, record) -> {
+                lsns.add(lsn);
+                records.add(record);
+            });
+
+            assertEquals(List.of(1L, 2L), lsns);
+            CommandRecord earn = records.get(0);
+            assertEquals(CommandTypes.EARN_POINTS, earn.getCommandType());
+            assertEquals(userId, earn.getUserId());
+            assertEquals(12, earn.getPoints());
+            assertEquals(120.5, Double.longBitsToDouble(earn.getArgument()));
+            assertEquals(1, earn.getVersion());
+            assertEquals(112, earn.getBalanceAfter());
+            assertEquals(epochMillis, earn.getEpochMillis());
+            CommandRecord redeem = records.get(1);
+            assertEquals(CommandTypes.REDEEM_POINTS, redeem.getCommandType());
+            assertEquals("alice", redeem.getUserId());
+            assertEquals(7, redeem.getPoints());
+            assertEquals(2, redeem.getVersion());
+            assertEquals(epochMillis + 1, redeem.getEpochMillis());
+            assertEquals(2, reopened.getDurableLsn());
+        } finally {
+            reopened.close();
+        }
+    }
+
+    @Test
+    void testTornTailIsTruncated() throws Exception {
+        CommandJournal journal = open();
+        for (int i = 1; i <= 3; i++) {
+            append(journal, earn("alice", i));
+        }
+        journal.close();
+
+        // Half of a fourth record, as left by a crash during the write
+        Path file = directory.resolve(FIRST_SEGMENT);
+        byte[] first = new byte[CommandJournal.RECORD_SIZE / 2];
+        System.arraycopy(Files.readAllBytes(file), 0, first, 0, first.length);
+        Files.write(file, first, StandardOpenOption.APPEND);
+
+        CommandJournal recovered = open();
+        assertEquals(3, recovered.getDurableLsn());
+        assertEquals(4, append(recovered, earn("bob", 1)));
+        recovered.close();
+        assertEquals(4L * CommandJournal.RECORD_SIZE, Files.size(file));
+
+        CommandJournal reopened = open();
+        try {
+            List<String> users = new ArrayList<>();
+            reopened.replay(record -> users.add(record.getUserId()));
+            assertEquals(List.of("alice", "alice", "alice", "bob"), users);
+        } finally {
+            reopened.close();
+        }
+    }
+
+    @Test
+    void testReplayStartsAfterSnapshotLsn() throws Exception {
+        CommandJournal journal = open();
+        try {
+            for (int i = 1; i <= 5; i++) {
+                append(journal, earn("alice", i));
+            }
+
+            List<Long> lsns = new ArrayList<>();
+            journal.replay(3L, (lsn, record) -> {
+                lsns.add(lsn);
+                assertEquals(lsn, record.getVersion());
+            });
+            assertEquals(List.of(4L, 5L), lsns);
+
+            lsns.clear();
+            journal.replay(5L, (lsn, record) -> lsns.add(lsn));
+            assertEquals(List.of(), lsns);
+        } finally {
+            journal.close();
+        }
+    }
+
+    @Test
+    void testAppliedLsnWaitsForEveryEarlierCommand() throws Exception {
+        CommandJournal journal = open();
+        try {
+            long first = journal.append(earn("alice", 1));
+            long second = journal.append(earn("bob", 1));
+            journal.whenDurable(second).join();
+
+            journal.markApplied(second);
+            assertEquals(0, journal.getAppliedLsn());
+            journal.markApplied(first);
+            assertEquals(2, journal.getAppliedLsn());
+        } finally {
+            journal.close();
+        }
+    }
+
+    @Test
+    void testFailedWriteStopsJournalWithoutLeavingAnLsnGap() throws Exception {
+        // The second batch is half written before the device fails
+        CommandJournal journal = new CommandJournal(directory, 16, 1024,
+                file -> new FailingChannel(FileChannel.open(file,
+                        StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE), 1));
+        assertEquals(1, append(journal, earn("alice", 1)));
+
+        long failed = journal.append(earn("alice", 2));
+        assertThrows(CompletionException.class, () -> journal.whenDurable(failed).join());
+        assertThrows(UncheckedIOException.class, () -> journal.append(earn("alice", 3)));
+        assertEquals(1, journal.getDurableLsn());
+        assertEquals(CommandJournal.RECORD_SIZE, Files.size(directory.resolve(FIRST_SEGMENT)));
+        journal.close();
+
+        // After a restart the next command continues directly after the last durable one
+        CommandJournal restarted = open();
+        assertEquals(2, append(restarted, earn("bob", 2)));
+        restarted.close();
+
+        CommandJournal reopened = open();
+        try {
+            List<String> entries = new ArrayList<>();
+            reopened.replay(0L, (lsn, record) -> entries.add(lsn + ":" + record.getUserId()));
+            assertEquals(List.of("1:alice", "2:bob"), entries);
+        } finally {
+            reopened.close();
+        }
+    }
+
+    private CommandJournal open() {
+        return new CommandJournal(directory.toString(), 16, 1024);
+    }
+
+    private static long append(CommandJournal journal, CommandRecord record) {
+        long lsn = journal.append(record);
+        journal.whenDurable(lsn).join();
+        journal.markApplied(lsn);
+        return lsn;
+    }
+
+    private static CommandRecord earn(String userId, long version) {
+        return new CommandRecord(CommandTypes.EARN_POINTS, userId, 10, Double.doubleToLongBits(100), version, 100 + (int) version * 10, 1_700_000_000_000L);
+    }
+
+    /**
+     * Channel that writes half of a buffer and then fails once the allowed writes are used up
+     */
+    private static final class FailingChannel extends FileChannel {
+        private final FileChannel delegate;
+        private int writesLeft;
+
+        FailingChannel(FileChannel delegate, int successfulWrites) {
+            this.delegate = delegate;
+            this.writesLeft = successfulWrites;
+        }
+
+        @Override
+        public int write(ByteBuffer src, long position) throws IOException {
+            if (writesLeft-- > 0) {
+                return delegate.write(src, position);
+            }
+            ByteBuffer half = src.duplicate();
+            half.limit(src.position() + src.remaining() / 2);
+            delegate.write(half, position);
+            throw new IOException("Simulated device failure");
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            return delegate.read(dst);
+        }
+
+        @Override
+        public long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
+            return delegate.read(dsts, offset, length);
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            return delegate.write(src);
+        }
+
+        @Override
+        public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+            return delegate.write(srcs, offset, length);
+        }
+
+        @Override
+        public long position() throws IOException {
+            return delegate.position();
+        }
+
+        @Override
+        public FileChannel position(long newPosition) throws IOException {
+            delegate.position(newPosition);
+            return this;
+        }
+
+        @Override
+        public long size() throws IOException {
+            return delegate.size();
+        }
+
+        @Override
+        public FileChannel truncate(long size) throws IOException {
+            delegate.truncate(size);
+            return this;
+        }
+
+        @Override
+        public void force(boolean metaData) throws IOException {
+            delegate.force(metaData);
+        }
+
+        @Override
+        public long transferTo(long position, long count, WritableByteChannel target) throws IOException {
+            return delegate.transferTo(position, count, target);
+        }
+
+        @Override
+        public long transferFrom(ReadableByteChannel src, long position, long count) throws IOException {
+            return delegate.transferFrom(src, position, count);
+        }
+
+        @Override
+        public int read(ByteBuffer dst, long position) throws IOException {
+            return delegate.read(dst, position);
+        }
+
+        @Override
+        public MappedByteBuffer map(MapMode mode, long position, long size) throws IOException {
+            return delegate.map(mode, position, size);
+        }
+
+        @Override
+        public FileLock lock(long position, long size, boolean shared) throws IOException {
+            return delegate.lock(position, size, shared);
+        }
+
+        @Override
+        public FileLock tryLock(long position, long size, boolean shared) throws IOException {
+            return delegate.tryLock(position, size, shared);
+        }
+
+        @Override
+        protected void implCloseChannel() throws IOException {
+            delegate.close();
+        }
+    }
+}
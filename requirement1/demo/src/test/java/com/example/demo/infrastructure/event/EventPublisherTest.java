@@ -0,0 +1,231 @@
+package com.example.demo.infrastructure.event;
+
+import com.example.demo.infrastructure.event.outbox.EventOutbox;
+import com.example.demo.infrastructure.id.SnowflakeIdGenerator;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EventPublisherTest {
+
+    private EventPublisher publisher;
+
+    @AfterEach
+    void tearDown() {
+        if (publisher != null) {
+            publisher.shutdown();
+        }
+    }
+
+    @Test
+    void testAsyncModeDeliversInPublishOrder() throws Exception {
+        RecordingListener listener = new RecordingListener(data -> { });
+        publisher = async(listener, 16, "block", 0);
+        for (int i = 0; i < 100; i++) {
+            publisher.publishEvent(EventTypes.POINTS_EARNED, "alice", "event-" + i);
+        }
+
+        List<String> delivered = listener.take(100);
+        assertEquals(100, delivered.size());
+        for (int i = 0; i < 100; i++) {
+            assertEquals("event-" + i, delivered.get(i));
+            assertFalse(listener.threadOf("event-" + i).equals(Thread.currentThread().getName()));
+        }
+    }
+
+    @Test
+    void testBlockPolicyWaitsForRoom() throws Exception {
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        RecordingListener listener = new RecordingListener(blockOn("event-0", entered, release));
+        publisher = async(listener, 2, "block", 0);
+        publisher.publishEvent(EventTypes.POINTS_EARNED, "alice", "event-0");
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+        publisher.publishEvent(EventTypes.POINTS_EARNED, "alice", "event-1");
+        publisher.publishEvent(EventTypes.POINTS_EARNED, "alice", "event-2");
+
+        Thread blocked = new Thread(() -> publisher.publishEvent(EventTypes.POINTS_EARNED, "alice", "event-3"));
+        blocked.start();
+        blocked.join(200);
+        assertTrue(blocked.isAlive());
+
+        release.countDown();
+        blocked.join(5000);
+        assertFalse(blocked.isAlive());
+        assertEquals(List.of("event-0", "event-1", "event-2", "event-3"), listener.take(4));
+    }
+
+    @Test
+    void testDropOldestPolicyCountsDroppedEvents() throws Exception {
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        RecordingListener listener = new RecordingListener(blockOn("event-0", entered, release));
+        publisher = async(listener, 2, "drop-oldest", 0);
+        publisher.publishEvent(EventTypes.POINTS_EARNED, "alice", "event-0");
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+        for (int i = 1; i <= 4; i++) {
+            publisher.publishEvent(EventTypes.POINTS_EARNED, "alice", "event-" + i);
+        }
+        long dropped = publisher.getDroppedEvents();
+        assertEquals(2L, dropped);
+
+        release.countDown();
+        assertEquals(List.of("event-0", "event-3", "event-4"), listener.take(3));
+        long callerRuns = publisher.getCallerRunsEvents();
+        assertEquals(0L, callerRuns);
+    }
+
+    @Test
+    void testCallerRunsPolicyDeliversOnThePublishingThread() throws Exception {
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        RecordingListener listener = new RecordingListener(blockOn("event-0", entered, release));
+        publisher = async(listener, 2, "caller-runs", 0);
+        publisher.publishEvent(EventTypes.POINTS_EARNED, "alice", "event-0");
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+        for (int i = 1; i <= 3; i++) {
+            publisher.publishEvent(EventTypes.POINTS_EARNED, "alice", "event-" + i);
+        }
+        long callerRuns = publisher.getCallerRunsEvents();
+        assertEquals(1L, callerRuns);
+        assertEquals(Thread.currentThread().getName(), listener.threadOf("event-3"));
+
+        release.countDown();
+        assertEquals(List.of("event-3", "event-0", "event-1", "event-2"), listener.take(4));
+        long dropped = publisher.getDroppedEvents();
+        assertEquals(0L, dropped);
+    }
+
+    @Test
+    void testEventsPublishedAfterShutdownAreDeliveredInline() throws Exception {
+        RecordingListener listener = new RecordingListener(data -> { });
+        publisher = async(listener, 16, "block", 0);
+        publisher.shutdown();
+
+        publisher.publishEvent(EventTypes.POINTS_EARNED, "alice", "late");
+
+        assertEquals(Thread.currentThread().getName(), listener.threadOf("late"));
+        assertEquals(List.of("late"), listener.take(1));
+    }
+
+    @Test
+    void testShutdownWakesBlockedPublisher() throws Exception {
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        RecordingListener listener = new RecordingListener(blockOn("event-0", entered, release));
+        publisher = async(listener, 2, "block", 0);
+        publisher.publishEvent(EventTypes.POINTS_EARNED, "alice", "event-0");
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+        publisher.publishEvent(EventTypes.POINTS_EARNED, "alice", "event-1");
+        publisher.publishEvent(EventTypes.POINTS_EARNED, "alice", "event-2");
+
+        Thread blocked = new Thread(() -> publisher.publishEvent(EventTypes.POINTS_EARNED, "alice", "event-3"), "blocked-publisher");
+        blocked.start();
+        blocked.join(200);
+        assertTrue(blocked.isAlive());
+
+        Thread stopping = new Thread(publisher::shutdown);
+        stopping.start();
+        // The consumer is still stuck on event-0, so only shutdown can have woken the publisher
+        blocked.join(5000);
+        assertFalse(blocked.isAlive());
+        assertEquals("blocked-publisher", listener.threadOf("event-3"));
+
+        release.countDown();
+        stopping.join(5000);
+        assertEquals(List.of("event-3", "event-0", "event-1", "event-2"), listener.take(4));
+    }
+
+    @Test
+    void testFailingEventDoesNotCostTheRestOfTheBatch() throws Exception {
+        RecordingListener listener = new RecordingListener(data -> {
+            if (data.equals("event-2")) {
+                throw new IllegalStateException("Listener failed");
+            }
+        });
+        // A long linger so all five events reach the listener as one batch
+        publisher = async(listener, 16, "block", 200);
+        for (int i = 0; i < 5; i++) {
+            publisher.publishEvent(EventTypes.POINTS_EARNED, "alice", "event-" + i);
+        }
+
+        assertEquals(List.of("event-0", "event-1", "event-3", "event-4"), listener.take(4));
+    }
+
+    private EventPublisher async(RecordingListener listener, int bufferSize, String overflowPolicy, long batchIntervalMillis) {
+        return new EventPublisher(List.of(listener), new SnowflakeIdGenerator(0), EventPublisher.MODE_ASYNC,
+                bufferSize, 1, overflowPolicy, 256, batchIntervalMillis,
+                new StaticListableBeanFactory().getBeanProvider(EventOutbox.class),
+                new StaticListableBeanFactory().getBeanProvider(MeterRegistry.class));
+    }
+
+    private static Consumer<String> blockOn(String data, CountDownLatch entered, CountDownLatch release) {
+        return delivered -> {
+            if (!delivered.equals(data)) {
+                return;
+            }
+            entered.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+    }
+
+    /**
+     * Records delivered events and their threads after running a hook that may fail or block
+     */
+    private static final class RecordingListener implements EventListener<Event<String>> {
+        private final BlockingQueue<String> delivered = new LinkedBlockingQueue<>();
+        private final Map<String, String> threads = new ConcurrentHashMap<>();
+        private final Consumer<String> hook;
+
+        RecordingListener(Consumer<String> hook) {
+            this.hook = hook;
+        }
+
+        @Override
+        public void onEvent(Event<String> event) {
+            hook.accept(event.getEventData());
+            threads.put(event.getEventData(), Thread.currentThread().getName());
+            delivered.add(event.getEventData());
+        }
+
+        @Override
+        public boolean supportsEventType(String eventType) {
+            return EventTypes.POINTS_EARNED.equals(eventType);
+        }
+
+        String threadOf(String data) {
+            return threads.get(data);
+        }
+
+        List<String> take(int count) throws InterruptedException {
+            List<String> events = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                String data = delivered.poll(5, TimeUnit.SECONDS);
+                if (data == null) {
+                    break;
+                }
+                events.add(data);
+            }
+            return events;
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package com.example.demo.infrastructure.event.outbox;
+
+import com.example.demo.infrastructure.command.CommandTypes;
+import com.example.demo.infrastructure.command.journal.CommandJournal;
+import com.example.demo.infrastructure.command.journal.CommandRecord;
+import com.example.demo.infrastructure.event.Event;
+import com.example.demo.infrastructure.event.EventTypes;
+import com.example.demo.infrastructure.event.reward.RewardEventData;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EventOutboxTest {
+
+    private static final String FIRST_SEGMENT = "events-00000000000000000000.outbox";
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testLongIdsRoundTrip() throws Exception {
+        // Both lengths need the full unsigned byte
+        String userId = "u".repeat(142) + "é".repeat(11);
+        String eventId = "e".repeat(40);
+        EventOutbox outbox = open();
+        try {
+            outbox.append(earned(eventId, userId, 25, 525, 2));
+
+            OutboxEvent event = outbox.read(0, 10).get(0);
+            assertEquals(userId, event.getUserId());
+            assertEquals(eventId, event.getEventId());
+            assertEquals(EventTypes.POINTS_EARNED, event.getEventType());
+            assertEquals(25, event.getPoints());
+            assertEquals(525, event.getBalanceAfter());
+            assertEquals(2, event.getVersion());
+        } finally {
+            outbox.close();
+        }
+    }
+
+    @Test
+    void testEventsAndOffsetsSurviveReopen() throws Exception {
+        EventOutbox outbox = open();
+        for (int i = 0; i < 3; i++) {
+            outbox.append(earned("event-" + i, "alice", 10, 510 + i * 10, i + 2));
+        }
+        outbox.commitOffset("audit", 2);
+        outbox.close();
+
+        // Half of a record left behind by a crash during an append
+        Files.write(directory.resolve(FIRST_SEGMENT), new byte[100], StandardOpenOption.APPEND);
+
+        EventOutbox reopened = open();
+        try {
+            assertEquals(3, reopened.getEndOffset());
+            assertEquals(2, reopened.getCommittedOffset("audit"));
+            assertEquals(0, reopened.getCommittedOffset("billing"));
+
+            List<OutboxEvent> events = reopened.read(0, 10);
+            assertEquals(3, events.size());
+            for (int i = 0; i < 3; i++) {
+                assertEquals(i, events.get(i).getOffset());
+                assertEquals("event-" + i, events.get(i).getEventId());
+            }
+            assertEquals(3, reopened.append(earned("event-3", "alice", 10, 540, 5)));
+        } finally {
+            reopened.close();
+        }
+    }
+
+    @Test
+    void testEventsAreDerivedFromTheJournal() throws Exception {
+        CommandJournal journal = new CommandJournal(directory.resolve("journal").toString(), 16, 1024);
+        try {
+            append(journal, new CommandRecord(CommandTypes.EARN_POINTS, "alice", 12, 0, 2, 112, 1_700_000_000_001L));
+            append(journal, new CommandRecord(CommandTypes.REDEEM_POINTS, "alice", 7, 7, 3, 105, 1_700_000_000_002L));
+
+            // Catches up on the records committed before it started, then follows new ones
+            EventOutbox outbox = open(journal);
+            append(journal, new CommandRecord(CommandTypes.EARN_POINTS, "bob", 10, 0, 2, 110, 1_700_000_000_003L));
+            assertTrue(outbox.awaitOffset(2, 5, TimeUnit.SECONDS));
+            outbox.close();
+
+            // Lose the last two events, as a power failure before the outbox fsync would
+            try (FileChannel file = FileChannel.open(directory.resolve(FIRST_SEGMENT), StandardOpenOption.WRITE)) {
+                file.truncate(256);
+            }
+            append(journal, new CommandRecord(CommandTypes.EARN_POINTS, "alice", 5, 0, 4, 110, 1_700_000_000_004L));
+
+            EventOutbox reopened = open(journal);
+            try {
+                List<OutboxEvent> events = reopened.read(0, 10);
+                assertEquals(4, events.size());
+                for (int i = 0; i < 4; i++) {
+                    assertEquals("lsn-" + (i + 1), events.get(i).getEventId());
+                }
+                OutboxEvent redeemed = events.get(1);
+                assertEquals(EventTypes.POINTS_REDEEMED, redeemed.getEventType());
+                assertEquals("alice", redeemed.getUserId());
+                assertEquals(7, redeemed.getPoints());
+                assertEquals(105, redeemed.getBalanceAfter());
+                assertEquals(3, redeemed.getVersion());
+                assertEquals(1_700_000_000_002L, redeemed.getTimestamp());
+                assertEquals("bob", events.get(2).getUserId());
+            } finally {
+                reopened.close();
+            }
+        } finally {
+            journal.close();
+        }
+    }
+
+    @Test
+    void testJournalKeepsSegmentsUntilTheirEventsAreDurable() throws Exception {
+        CommandJournal journal = new CommandJournal(directory.resolve("journal").toString(), 1, 2);
+        try {
+            // Never flushes on its own during the test
+            EventOutbox outbox = new EventOutbox(directory.toString(), 3_600_000, 1024,
+                    new StaticListableBeanFactory(Map.of("journal", journal)).getBeanProvider(CommandJournal.class));
+            for (int version = 2; version <= 6; version++) {
+                append(journal, new CommandRecord(CommandTypes.EARN_POINTS, "alice", 10, 0, version, version * 10, 1_700_000_000_000L));
+            }
+            assertTrue(outbox.awaitOffset(4, 5, TimeUnit.SECONDS));
+
+            journal.deleteSegmentsUpTo(5);
+            int[] replayed = new int[1];
+            journal.replay(0L, (lsn, record) -> replayed[0]++);
+            assertEquals(5, replayed[0]);
+
+            outbox.close();
+            journal.deleteSegmentsUpTo(5);
+            assertThrows(IllegalStateException.class, () -> journal.replay(0L, (lsn, record) -> { }));
+        } finally {
+            journal.close();
+        }
+    }
+
+    @Test
+    void testSegmentsAreDeletedOnceEveryConsumerHasPassedThem() throws Exception {
+        EventOutbox first = new EventOutbox(directory.toString(), 10, 2);
+        for (int i = 0; i < 5; i++) {
+            first.append(earned("event-" + i, "alice", 10, 510 + i * 10, i + 2));
+        }
+        first.commitOffset("audit", 4);
+        first.commitOffset("billing", 2);
+        first.close();
+
+        EventOutbox outbox = new EventOutbox(directory.toString(), 10, 2);
+        try {
+            // billing has not started since the restart, but still holds on to its events
+            awaitFirstOffset(outbox, 2);
+            assertThrows(IllegalArgumentException.class, () -> outbox.read(1, 10));
+            assertThrows(IllegalArgumentException.class, () -> outbox.commitOffset("audit", 1));
+            assertEquals("event-2", outbox.read(2, 10).get(0).getEventId());
+            // A read stops at the end of its segment
+            int read = outbox.read(2, 10).size();
+            assertEquals(2, read);
+
+            outbox.commitOffset("billing", 5);
+            awaitFirstOffset(outbox, 4);
+            assertEquals(4, outbox.getCommittedOffset("new-consumer"));
+            assertEquals(5, outbox.append(earned("event-5", "alice", 10, 560, 7)));
+            assertEquals(List.of(directory.resolve("events-00000000000000000004.outbox")), segmentFiles());
+        } finally {
+            outbox.close();
+        }
+    }
+
+    private static void awaitFirstOffset(EventOutbox outbox, long offset) throws InterruptedException {
+        for (int i = 0; i < 500 && outbox.getFirstOffset() < offset; i++) {
+            Thread.sleep(10);
+        }
+        long firstOffset = outbox.getFirstOffset();
+        assertEquals(offset, firstOffset);
+    }
+
+    private List<Path> segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(".outbox")).sorted().collect(Collectors.toList());
+        }
+    }
+
+    private EventOutbox open(CommandJournal journal) {
+        return new EventOutbox(directory.toString(), 10, 1024,
+                new StaticListableBeanFactory(Map.of("journal", journal)).getBeanProvider(CommandJournal.class));
+    }
+
+    private static void append(CommandJournal journal, CommandRecord record) {
+        long lsn = journal.append(record);
+        journal.whenDurable(lsn).join();
+        journal.markApplied(lsn);
+    }
+
+    private EventOutbox open() {
+        return new EventOutbox(directory.toString(), 10, 1024);
+    }
+
+    static Event<RewardEventData> earned(String eventId, String userId, int points, int balanceAfter, long version) {
+        return new Event<>(eventId, EventTypes.POINTS_EARNED, userId,
+                new RewardEventData(userId, points, balanceAfter, version, 1_700_000_000_000L));
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.demo.infrastructure.event.outbox;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+import java.util.stream.Collectors;
+
+import static com.example.demo.infrastructure.event.outbox.EventOutboxTest.earned;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class OutboxRelayTest {
+
+    private static final String CONSUMER = "audit";
+
+    @TempDir
+    Path directory;
+
+    private EventOutbox outbox;
+    private OutboxRelay relay;
+
+    @AfterEach
+    void tearDown() throws Exception {
+        if (relay != null) {
+            relay.shutdown();
+        }
+        if (outbox != null) {
+            outbox.close();
+        }
+    }
+
+    @Test
+    void testFailedBatchIsRedelivered() throws Exception {
+        outbox = new EventOutbox(directory.toString(), 10, 1024);
+        outbox.append(earned("event-0", "alice", 10, 510, 2));
+        outbox.append(earned("event-1", "bob", 10, 510, 2));
+
+        BlockingQueue<List<Long>> deliveries = new LinkedBlockingQueue<>();
+        relay = start(new RecordingConsumer(deliveries, attempt -> {
+            if (attempt == 1) {
+                throw new IllegalStateException("Downstream unavailable");
+            }
+        }));
+
+        assertEquals(List.of(0L, 1L), deliveries.poll(5, TimeUnit.SECONDS));
+        assertEquals(List.of(0L, 1L), deliveries.poll(5, TimeUnit.SECONDS));
+        awaitCommittedOffset(2);
+    }
+
+    @Test
+    void testReplayDuringDeliveryIsNotOverwrittenByTheBatch() throws Exception {
+        outbox = new EventOutbox(directory.toString(), 10, 1024);
+        outbox.append(earned("event-0", "alice", 10, 510, 2));
+        outbox.append(earned("event-1", "bob", 10, 510, 2));
+
+        // Rewind to the offset the in-flight batch started at, while it is being delivered;
+        // the relay may not be assigned yet, so move the offset the way replayFrom does
+        BlockingQueue<List<Long>> deliveries = new LinkedBlockingQueue<>();
+        CompletableFuture<Void> replayed = new CompletableFuture<>();
+        relay = start(new RecordingConsumer(deliveries, attempt -> {
+            if (attempt == 1) {
+                outbox.commitOffset(CONSUMER, 0);
+                replayed.complete(null);
+            }
+        }));
+
+        assertEquals(List.of(0L, 1L), deliveries.poll(5, TimeUnit.SECONDS));
+        replayed.get(5, TimeUnit.SECONDS);
+        assertEquals(List.of(0L, 1L), deliveries.poll(5, TimeUnit.SECONDS));
+        awaitCommittedOffset(2);
+    }
+
+    private OutboxRelay start(OutboxConsumer consumer) {
+        return new OutboxRelay(outbox,
+                new StaticListableBeanFactory(Map.of(CONSUMER, consumer)).getBeanProvider(OutboxConsumer.class),
+                100, 10);
+    }
+
+    private void awaitCommittedOffset(long offset) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (outbox.getCommittedOffset(CONSUMER) != offset && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(offset, outbox.getCommittedOffset(CONSUMER));
+    }
+
+    /**
+     * Records the offsets of every delivery, then runs a hook with the attempt number that may fail it
+     */
+    private static final class RecordingConsumer implements OutboxConsumer {
+        private final BlockingQueue<List<Long>> deliveries;
+        private final IntConsumer hook;
+        private final AtomicInteger attempts = new AtomicInteger();
+
+        RecordingConsumer(BlockingQueue<List<Long>> deliveries, IntConsumer hook) {
+            this.deliveries = deliveries;
+            this.hook = hook;
+        }
+
+        @Override
+        public String getConsumerName() {
+            return CONSUMER;
+        }
+
+        @Override
+        public void onEvents(List<OutboxEvent> events) {
+            deliveries.add(events.stream().map(OutboxEvent::getOffset).collect(Collectors.toList()));
+            hook.accept(attempts.incrementAndGet());
+        }
+    }
+}
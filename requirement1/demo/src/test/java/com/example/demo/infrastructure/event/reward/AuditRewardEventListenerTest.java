@@ -0,0 +1,95 @@
+package com.example.demo.infrastructure.event.reward;
+
+import com.example.demo.infrastructure.event.Event;
+import com.example.demo.infrastructure.event.EventTypes;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class AuditRewardEventListenerTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testEventsAreWrittenOnClose() throws Exception {
+        AuditRewardEventListener listener = open();
+        listener.onEvent(earned("event-0", "alice"));
+        listener.onEvent(earned("event-1", "bob"));
+        listener.close();
+
+        List<String> lines = readLines();
+        assertEquals(2, lines.size());
+        assertEquals("{\"ts\":1700000000000,\"id\":\"event-0\",\"type\":\"POINTS_EARNED\",\"user\":\"alice\","
+                + "\"delta\":10,\"balance\":510,\"version\":2}", lines.get(0));
+        assertEquals(0, listener.getDroppedEvents());
+    }
+
+    @Test
+    void testEventsAfterCloseAreDroppedWithoutBlocking() throws Exception {
+        AuditRewardEventListener listener = open();
+        listener.onEvent(earned("event-0", "alice"));
+        listener.close();
+
+        // Far more than both buffers hold, so waiting for the stopped writer would never return
+        List<Event<RewardEventData>> events = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            events.add(earned("late-" + i, "alice"));
+        }
+        CompletableFuture.runAsync(() -> listener.onEvents(events)).get(5, TimeUnit.SECONDS);
+
+        assertEquals(100, listener.getDroppedEvents());
+        assertEquals(1, readLines().size());
+    }
+
+    @Test
+    void testLongIdsAreTruncatedWithoutOverflowingTheBuffer() throws Exception {
+        // Each field encodes to its largest size; the buffer holds exactly one such record
+        String eventId = "\u0001".repeat(300);
+        String type = "\u0002".repeat(300);
+        String userId = "\u0003".repeat(1000);
+        AuditRewardEventListener listener = open();
+        listener.onEvent(new Event<>(eventId, type, userId, new RewardEventData(userId, 10, 510, 2, Long.MIN_VALUE)));
+        listener.onEvent(new Event<>(eventId, type, userId, new RewardEventData(userId, Integer.MIN_VALUE, Integer.MIN_VALUE, Long.MIN_VALUE, Long.MIN_VALUE)));
+        listener.close();
+
+        List<String> lines = readLines();
+        assertEquals(2, lines.size());
+        String escapedUser = "\\u0003".repeat(256);
+        assertEquals("{\"ts\":" + Long.MIN_VALUE + ",\"id\":\"" + "\\u0001".repeat(256) + "\",\"type\":\"" + "\\u0002".repeat(256)
+                + "\",\"user\":\"" + escapedUser + "\",\"delta\":10,\"balance\":510,\"version\":2}", lines.get(0));
+        assertEquals(0, listener.getWriteFailures());
+    }
+
+    private AuditRewardEventListener open() {
+        return new AuditRewardEventListener(directory.toString(), 0, 1 << 20, 3_600_000, 50,
+                new StaticListableBeanFactory().getBeanProvider(MeterRegistry.class));
+    }
+
+    private List<String> readLines() throws Exception {
+        List<String> lines = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.sorted().collect(Collectors.toList())) {
+                lines.addAll(Files.readAllLines(file));
+            }
+        }
+        return lines;
+    }
+
+    private static Event<RewardEventData> earned(String eventId, String userId) {
+        return new Event<>(eventId, EventTypes.POINTS_EARNED, userId,
+                new RewardEventData(userId, 10, 510, 2, 1_700_000_000_000L));
+    }
+}
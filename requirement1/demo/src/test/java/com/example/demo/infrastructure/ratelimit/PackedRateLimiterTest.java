@@ -0,0 +1,107 @@
+package com.example.demo.infrastructure.ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PackedRateLimiterTest {
+
+    @Test
+    void testLimitsEachUserAndRefillsAfterPeriod() {
+        AtomicLong now = new AtomicLong(1);
+        PackedRateLimiter limiter = new PackedRateLimiter(3, 3, Duration.ofMinutes(1), 100, now::get);
+
+        assertTrue(limiter.tryConsume("alice"));
+        assertTrue(limiter.tryConsume("alice"));
+        assertTrue(limiter.tryConsume("alice"));
+        assertFalse(limiter.tryConsume("alice"));
+        assertTrue(limiter.tryConsume("bob"));
+
+        now.addAndGet(Duration.ofMinutes(1).toMillis() - 1);
+        assertFalse(limiter.tryConsume("alice"));
+        now.incrementAndGet();
+        assertTrue(limiter.tryConsume("alice"));
+    }
+
+    @Test
+    void testIdleUsersMakeRoomForNewUsers() {
+        AtomicLong now = new AtomicLong(1);
+        PackedRateLimiter limiter = new PackedRateLimiter(1, 1, Duration.ofMinutes(1), 1, now::get);
+        for (int i = 0; i < 1000; i++) {
+            limiter.tryConsume("old-" + i);
+        }
+        long usedSlots = limiter.getUsedSlots();
+
+        // The old users' buckets are full again, so new users reuse their slots with a full bucket
+        now.addAndGet(Duration.ofMinutes(1).toMillis());
+        for (int i = 0; i < 16; i++) {
+            assertTrue(limiter.tryConsume("new-" + i));
+            assertFalse(limiter.tryConsume("new-" + i));
+        }
+        assertEquals(usedSlots, limiter.getUsedSlots());
+    }
+
+    @Test
+    void testTableIsSizedFromTheCacheSpec() {
+        long size = PackedRateLimiter.maximumSize("expireAfterAccess=3600s, maximumSize=2500");
+        assertEquals(2500, size);
+        size = PackedRateLimiter.maximumSize("expireAfterAccess=3600s");
+        assertEquals(100_000, size);
+    }
+
+    @Test
+    void testTakeoverRacingTheOldOwnerNeverHandsOutASecondBucket() throws Exception {
+        for (int round = 0; round < 20; round++) {
+            AtomicLong now = new AtomicLong(1);
+            PackedRateLimiter limiter = new PackedRateLimiter(2, 2, Duration.ofMinutes(1), 1, now::get);
+            int users = 48;
+            for (int i = 0; i < users; i++) {
+                limiter.tryConsume("old-" + i);
+            }
+
+            // Every old bucket is idle now; old owners return while new users take over their slots
+            now.addAndGet(Duration.ofMinutes(1).toMillis());
+            long overflowsBefore = limiter.getOverflows();
+            AtomicLong allowed = new AtomicLong();
+            CountDownLatch start = new CountDownLatch(1);
+            List<Thread> threads = new ArrayList<>();
+            for (String prefix : new String[] {"old-", "new-"}) {
+                for (int t = 0; t < 2; t++) {
+                    int first = t * users / 2;
+                    Thread thread = new Thread(() -> {
+                        try {
+                            start.await();
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+                        for (int i = first; i < first + users / 2; i++) {
+                            for (int request = 0; request < 4; request++) {
+                                if (limiter.tryConsume(prefix + i)) {
+                                    allowed.incrementAndGet();
+                                }
+                            }
+                        }
+                    });
+                    thread.start();
+                    threads.add(thread);
+                }
+            }
+            start.countDown();
+            for (Thread thread : threads) {
+                thread.join();
+            }
+
+            // Each user has one bucket of two tokens in this period, plus any fail-open requests
+            long overflows = limiter.getOverflows() - overflowsBefore;
+            assertTrue(allowed.get() <= 2L * users * 2 + overflows);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.demo.infrastructure.ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RateLimitBucketStoreTest {
+
+    @Test
+    void testActiveBucketStaysLimited() {
+        RateLimitBucketStore limiter = new RateLimitBucketStore(1, 1, Duration.ofHours(1), 100, Duration.ofHours(1));
+        assertTrue(limiter.tryConsume("alice"));
+        for (int i = 0; i < 50; i++) {
+            limiter.tryConsume("user-" + i);
+        }
+        limiter.cleanUp();
+
+        assertFalse(limiter.tryConsume("alice"));
+    }
+
+    @Test
+    void testSizeEvictedBucketComesBackFull() {
+        // A cache with no room evicts every bucket, long before it would have refilled
+        RateLimitBucketStore limiter = new RateLimitBucketStore(1, 1, Duration.ofHours(1), 0, Duration.ofHours(1));
+        assertTrue(limiter.tryConsume("alice"));
+        limiter.cleanUp();
+
+        assertTrue(limiter.tryConsume("alice"));
+    }
+}
@@ -0,0 +1,212 @@
+package com.example.demo.infrastructure.security;
+
+import com.example.demo.infrastructure.RateLimitFilter;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import jakarta.servlet.Filter;
+import jakarta.servlet.GenericServlet;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.User;
+
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class JwtServiceTest {
+
+    private static final String SECRET = "5367566859703373367639792F423F452848284D6251655468576D5A71347437";
+
+    private final TokenRevocationList revocationList = new TokenRevocationList(1 << 10);
+    private final JwtService jwtService = new JwtService(SECRET, TimeUnit.HOURS.toMillis(1), 1000, revocationList);
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void testTokenIssuedBeforeRevocationIsRejectedByTheFilters() throws Exception {
+        String token = jwtService.generateToken("alice");
+        assertEquals(200, statusOf(separateFilters(), token));
+        assertEquals(200, statusOf(combinedFilter(), token));
+
+        // What POST /tokens/revoke does for the caller
+        revocationList.revokeAll("alice");
+
+        assertEquals(401, statusOf(separateFilters(), token));
+        assertEquals(401, statusOf(combinedFilter(), token));
+        // A token issued afterwards carries the new version
+        assertEquals(200, statusOf(separateFilters(), jwtService.generateToken("alice")));
+    }
+
+    @Test
+    void testCachedClaimsAreRejectedAfterRevocation() {
+        String token = jwtService.generateToken("alice");
+        Claims claims = jwtService.verify(token);
+        assertNotNull(jwtService.authenticate(claims));
+
+        revocationList.revokeAll("alice");
+
+        // Still served from the cache, but the version check happens on every request
+        Claims cached = jwtService.verify(token);
+        assertSame(claims, cached);
+        assertNull(jwtService.authenticate(cached));
+    }
+
+    @Test
+    void testAuthoritiesComeFromTheRolesClaim() {
+        String token = jwtService.generateToken(User.withUsername("alice").password("x").roles("USER", "ADMIN").build());
+
+        UsernamePasswordAuthenticationToken authentication = jwtService.authenticate(jwtService.verify(token));
+
+        assertEquals("alice", authentication.getName());
+        assertEquals(List.of("ROLE_ADMIN", "ROLE_USER"), authorities(authentication));
+        // A token without roles authenticates with no authorities
+        assertEquals(List.of(), authorities(jwtService.authenticate(jwtService.verify(jwtService.generateToken("bob")))));
+    }
+
+    @Test
+    void testTokenWithoutVersionClaimCountsAsVersionZero() {
+        String token = Jwts.builder()
+                .subject("alice")
+                .issuedAt(new Date())
+                .expiration(new Date(System.currentTimeMillis() + TimeUnit.HOURS.toMillis(1)))
+                .signWith(Keys.hmacShaKeyFor(Base64.getDecoder().decode(SECRET)), Jwts.SIG.HS256)
+                .compact();
+        Claims claims = jwtService.verify(token);
+        assertNull(claims.get(JwtService.VERSION_CLAIM));
+
+        assertNotNull(jwtService.authenticate(claims));
+        revocationList.revokeAll("alice");
+        assertNull(jwtService.authenticate(claims));
+    }
+
+    @Test
+    void testExpiredTokenIsNotServedFromTheCache() throws Exception {
+        JwtService shortLived = new JwtService(SECRET, 200, 1000, revocationList);
+        String token = shortLived.generateToken("alice");
+        Claims claims = shortLived.verify(token);
+        assertSame(claims, shortLived.verify(token));
+
+        Thread.sleep(400);
+
+        assertThrows(ExpiredJwtException.class, () -> shortLived.verify(token));
+        long cached = shortLived.cachedTokens();
+        assertEquals(0, cached);
+    }
+
+    @Test
+    void testInvalidSignatureIsNeverCached() {
+        String forged = new JwtService("A".repeat(43) + "=", TimeUnit.HOURS.toMillis(1), 0, revocationList)
+                .generateToken("alice");
+
+        assertThrows(JwtException.class, () -> jwtService.verify(forged));
+        assertThrows(JwtException.class, () -> jwtService.verify(forged));
+        long cached = jwtService.cachedTokens();
+        assertEquals(0, cached);
+
+        jwtService.verify(jwtService.generateToken("alice"));
+        cached = jwtService.cachedTokens();
+        assertEquals(1, cached);
+    }
+
+    @Test
+    void testZeroCacheSizeDisablesTheCache() {
+        JwtService uncached = new JwtService(SECRET, TimeUnit.HOURS.toMillis(1), 0, revocationList);
+        String token = uncached.generateToken("alice");
+
+        assertNotSame(uncached.verify(token), uncached.verify(token));
+        long cached = uncached.cachedTokens();
+        assertEquals(0, cached);
+    }
+
+    @Test
+    void testTokenIsVerifiedOncePerRequest() throws Exception {
+        // Without the cache every verify parses the token again
+        AtomicInteger verifications = new AtomicInteger();
+        JwtService counting = new JwtService(SECRET, TimeUnit.HOURS.toMillis(1), 0, revocationList) {
+            @Override
+            public Claims verify(String token) {
+                verifications.incrementAndGet();
+                return super.verify(token);
+            }
+        };
+        MockHttpServletRequest request = request(counting.generateToken("alice"));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        Filter[] filters = {
+                new RateLimitFilter(counting, username -> true),
+                new JwtAuthFilter(counting),
+                new UserIdAuthorizationFilter()};
+
+        new MockFilterChain(new Endpoint(), filters).doFilter(request, response);
+
+        assertEquals(200, response.getStatus());
+        int verified = verifications.get();
+        assertEquals(1, verified);
+        assertSame(request.getAttribute(JwtService.CLAIMS_ATTRIBUTE), counting.resolveClaims(request));
+    }
+
+    private static List<String> authorities(UsernamePasswordAuthenticationToken authentication) {
+        List<String> names = new ArrayList<>();
+        for (GrantedAuthority authority : authentication.getAuthorities()) {
+            names.add(authority.getAuthority());
+        }
+        return names;
+    }
+
+    private Filter[] separateFilters() {
+        return new Filter[] {
+                new RateLimitFilter(jwtService, username -> true),
+                new JwtAuthFilter(jwtService),
+                new UserIdAuthorizationFilter()};
+    }
+
+    private Filter[] combinedFilter() {
+        return new Filter[] {new CombinedSecurityFilter(jwtService, username -> true)};
+    }
+
+    private static int statusOf(Filter[] filters, String token) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        try {
+            new MockFilterChain(new Endpoint(), filters).doFilter(request(token), response);
+        } finally {
+            SecurityContextHolder.clearContext();
+        }
+        return response.getStatus();
+    }
+
+    private static MockHttpServletRequest request(String token) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/rewards/balance");
+        request.addHeader("Authorization", "Bearer " + token);
+        request.addParameter("userId", "alice");
+        return request;
+    }
+
+    private static final class Endpoint extends GenericServlet {
+        @Override
+        public void service(ServletRequest request, ServletResponse response) {
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.demo.infrastructure.security;
+
+import com.example.demo.infrastructure.exception.ServiceOverloadedException;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class PasswordVerificationExecutorTest {
+
+    // One thread and one waiting check
+    private final PasswordVerificationExecutor executor = new PasswordVerificationExecutor(
+            1, 1, new StaticListableBeanFactory(Map.of()).getBeanProvider(MeterRegistry.class));
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdown();
+    }
+
+    @Test
+    void testFullQueueIsRejectedAsOverloaded() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch running = new CountDownLatch(1);
+        CompletableFuture<String> first = executor.submit(() -> {
+            running.countDown();
+            await(release);
+            return "first";
+        });
+        running.await(5, TimeUnit.SECONDS);
+        CompletableFuture<String> queued = executor.submit(() -> "queued");
+
+        assertThrows(ServiceOverloadedException.class, () -> executor.submit(() -> "rejected"));
+
+        release.countDown();
+        assertEquals("first", first.get(5, TimeUnit.SECONDS));
+        assertEquals("queued", queued.get(5, TimeUnit.SECONDS));
+        // Room again once the queue has drained
+        assertEquals("next", executor.submit(() -> "next").get(5, TimeUnit.SECONDS));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
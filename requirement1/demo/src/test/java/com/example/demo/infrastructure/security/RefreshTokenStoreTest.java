@@ -0,0 +1,125 @@
+package com.example.demo.infrastructure.security;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class RefreshTokenStoreTest {
+
+    private static final long LIFETIME = TimeUnit.DAYS.toMillis(1);
+
+    @TempDir
+    Path directory;
+
+    private final TokenRevocationList revocationList = new TokenRevocationList(1 << 10);
+    private final RefreshTokenStore store = new RefreshTokenStore(LIFETIME, 10, revocationList);
+
+    @AfterEach
+    void tearDown() {
+        store.close();
+    }
+
+    @Test
+    void testTokenCanBeRedeemedOnce() {
+        String token = store.issue("alice");
+
+        assertEquals("alice", store.redeem(token));
+        assertNull(store.redeem(token));
+        assertNull(store.redeem("unknown"));
+        int stored = store.size();
+        assertEquals(0, stored);
+    }
+
+    @Test
+    void testExpiredTokenIsRejected() throws Exception {
+        RefreshTokenStore shortLived = new RefreshTokenStore(1, 10, revocationList);
+        try {
+            String token = shortLived.issue("alice");
+            Thread.sleep(20);
+            assertNull(shortLived.redeem(token));
+        } finally {
+            shortLived.close();
+        }
+    }
+
+    @Test
+    void testTokenIsInvalidAfterRevokeAll() {
+        String token = store.issue("alice");
+        String other = store.issue("bob");
+
+        revocationList.revokeAll("alice");
+
+        assertNull(store.redeem(token));
+        assertEquals("bob", store.redeem(other));
+        // Tokens issued after the revocation work again
+        assertEquals("alice", store.redeem(store.issue("alice")));
+    }
+
+    @Test
+    void testOldestTokenIsDroppedBeyondThePerUserLimit() {
+        RefreshTokenStore capped = new RefreshTokenStore(LIFETIME, 2, revocationList);
+        try {
+            String first = capped.issue("alice");
+            String second = capped.issue("alice");
+            String third = capped.issue("alice");
+            String bobs = capped.issue("bob");
+
+            int stored = capped.size();
+            assertEquals(3, stored);
+            assertNull(capped.redeem(first));
+            assertEquals("alice", capped.redeem(second));
+            assertEquals("alice", capped.redeem(third));
+            assertEquals("bob", capped.redeem(bobs));
+        } finally {
+            capped.close();
+        }
+    }
+
+    @Test
+    void testTokensSurviveRestart() throws Exception {
+        RefreshTokenStore persisted = open(2);
+        String used = persisted.issue("alice");
+        String dropped = persisted.issue("alice");
+        String kept = persisted.issue("alice");
+        String latest = persisted.issue("alice");
+        String bobs = persisted.issue("bob");
+        // Dropped for the last two of alice's tokens
+        assertNull(persisted.redeem(used));
+        assertEquals("alice", persisted.redeem(kept));
+        persisted.close();
+
+        // Half of a token left behind by a crash during the write
+        Files.write(directory.resolve("refresh-tokens.dat"), new byte[10], StandardOpenOption.APPEND);
+
+        RefreshTokenStore restarted = open(2);
+        try {
+            int stored = restarted.size();
+            assertEquals(2, stored);
+            assertNull(restarted.redeem(used));
+            assertNull(restarted.redeem(dropped));
+            assertNull(restarted.redeem(kept));
+            assertEquals("bob", restarted.redeem(bobs));
+            // Issued after the restart, so it has to survive the next one as well
+            String issued = restarted.issue("bob");
+            restarted.close();
+
+            restarted = open(2);
+            assertEquals("alice", restarted.redeem(latest));
+            assertEquals("bob", restarted.redeem(issued));
+        } finally {
+            restarted.close();
+        }
+    }
+
+    private RefreshTokenStore open(int maxPerUser) {
+        return new RefreshTokenStore(LIFETIME, maxPerUser, directory.toString(), revocationList);
+    }
+}
@@ -0,0 +1,128 @@
+package com.example.demo.infrastructure.security;
+
+import com.example.demo.infrastructure.RateLimitFilter;
+import com.example.demo.infrastructure.ratelimit.RateLimiter;
+import jakarta.servlet.Filter;
+import jakarta.servlet.GenericServlet;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.User;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Runs the security filters as SecurityConfig chains them, once for each
+ * {@code security.filter.mode}
+ */
+class SecurityFiltersTest {
+
+    private static final String SECRET = "5367566859703373367639792F423F452848284D6251655468576D5A71347437";
+    private static final List<String> MODES = List.of("separate", "combined");
+
+    private final JwtService jwtService = new JwtService(SECRET, TimeUnit.HOURS.toMillis(1), 1000, new TokenRevocationList(1 << 10));
+    private final String aliceToken = jwtService.generateToken(User.withUsername("alice").password("x").roles("USER").build());
+    private final String adminToken = jwtService.generateToken(User.withUsername("admin").password("x").roles("ADMIN").build());
+
+    // Number of requests that got through every filter
+    private final AtomicInteger reached = new AtomicInteger();
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void testUserCanOnlyAccessOwnRewards() throws Exception {
+        for (String mode : MODES) {
+            assertEquals(200, status(mode, username -> true, aliceToken, "alice"), mode);
+            assertEquals(403, status(mode, username -> true, aliceToken, "bob"), mode);
+        }
+        int allowed = reached.get();
+        assertEquals(2, allowed);
+    }
+
+    @Test
+    void testAdminCanAccessAnyUser() throws Exception {
+        for (String mode : MODES) {
+            assertEquals(200, status(mode, username -> true, adminToken, "bob"), mode);
+        }
+        int allowed = reached.get();
+        assertEquals(2, allowed);
+    }
+
+    @Test
+    void testMissingOrInvalidTokenIsUnauthorized() throws Exception {
+        for (String mode : MODES) {
+            assertEquals(401, status(mode, username -> true, null, "alice"), mode);
+            assertEquals(401, status(mode, username -> true, "not-a-token", "alice"), mode);
+            // Signed with another key
+            String forged = new JwtService("A".repeat(43) + "=", TimeUnit.HOURS.toMillis(1), 0, new TokenRevocationList(1 << 10))
+                    .generateToken("alice");
+            assertEquals(401, status(mode, username -> true, forged, "alice"), mode);
+        }
+        int allowed = reached.get();
+        assertEquals(0, allowed);
+    }
+
+    @Test
+    void testRateLimitedUserGetsTooManyRequests() throws Exception {
+        for (String mode : MODES) {
+            List<String> limited = new ArrayList<>();
+            RateLimiter rateLimiter = username -> {
+                limited.add(username);
+                return false;
+            };
+            MockHttpServletResponse response = filter(mode, rateLimiter, aliceToken, "alice");
+            assertEquals(429, response.getStatus(), mode);
+            assertEquals(List.of("alice"), limited, mode);
+        }
+        int allowed = reached.get();
+        assertEquals(0, allowed);
+    }
+
+    private int status(String mode, RateLimiter rateLimiter, String token, String userId) throws Exception {
+        return filter(mode, rateLimiter, token, userId).getStatus();
+    }
+
+    private MockHttpServletResponse filter(String mode, RateLimiter rateLimiter, String token, String userId) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/rewards/balance");
+        if (token != null) {
+            request.addHeader("Authorization", "Bearer " + token);
+        }
+        request.addParameter("userId", userId);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        GenericServlet endpoint = new GenericServlet() {
+            @Override
+            public void service(ServletRequest request, ServletResponse response) {
+                reached.incrementAndGet();
+            }
+        };
+        try {
+            new MockFilterChain(endpoint, filters(mode, rateLimiter)).doFilter(request, response);
+        } finally {
+            SecurityContextHolder.clearContext();
+        }
+        return response;
+    }
+
+    private Filter[] filters(String mode, RateLimiter rateLimiter) {
+        if ("combined".equals(mode)) {
+            return new Filter[] {new CombinedSecurityFilter(jwtService, rateLimiter)};
+        }
+        return new Filter[] {
+                new RateLimitFilter(jwtService, rateLimiter),
+                new JwtAuthFilter(jwtService),
+                new UserIdAuthorizationFilter()};
+    }
+}
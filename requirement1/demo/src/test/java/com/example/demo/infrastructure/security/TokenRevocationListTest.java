@@ -0,0 +1,54 @@
+package com.example.demo.infrastructure.security;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TokenRevocationListTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testRevocationsSurviveRestart() throws Exception {
+        TokenRevocationList revocations = open();
+        long issued = revocations.currentVersion("alice");
+        revocations.revokeAll("alice");
+        revocations.revokeAll("alice");
+        revocations.revokeAll("bob");
+        revocations.close();
+
+        // Half of a revocation left behind by a crash during the write
+        Files.write(directory.resolve("revocations.dat"), new byte[10], StandardOpenOption.APPEND);
+
+        TokenRevocationList restarted = open();
+        try {
+            assertTrue(restarted.isRevoked("alice", issued));
+            assertEquals(2, restarted.currentVersion("alice"));
+            assertEquals(1, restarted.currentVersion("bob"));
+            assertEquals(0, restarted.currentVersion("carol"));
+            assertFalse(restarted.isRevoked("alice", 2));
+            assertEquals(3, restarted.revokeAll("alice"));
+        } finally {
+            restarted.close();
+        }
+
+        TokenRevocationList reopened = open();
+        try {
+            assertEquals(3, reopened.currentVersion("alice"));
+        } finally {
+            reopened.close();
+        }
+    }
+
+    private TokenRevocationList open() {
+        return new TokenRevocationList(1024, directory.toString());
+    }
+}
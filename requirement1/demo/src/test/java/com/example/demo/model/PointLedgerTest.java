@@ -0,0 +1,58 @@
+package com.example.demo.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PointLedgerTest {
+
+    private static PointLedger append(PointLedger ledger, int points) {
+        return ledger.append(TransactionType.EARN, points, System.currentTimeMillis(),
+                TransactionTemplate.EARNED_FROM_AMOUNT, Double.doubleToLongBits(points / 10.0));
+    }
+
+    @Test
+    void testAppendKeepsEarlierVersionsUnchanged() {
+        PointLedger first = append(PointLedger.EMPTY, 1);
+        PointLedger second = append(first, 2);
+
+        assertEquals(1, first.size());
+        assertEquals(2, second.size());
+        assertEquals(1, second.getPoints(0));
+        assertEquals(2, second.getPoints(1));
+    }
+
+    @Test
+    void testPagesAcrossChunksNewestFirst() {
+        PointLedger ledger = PointLedger.EMPTY;
+        for (int i = 0; i < 200; i++) {
+            ledger = append(ledger, i);
+        }
+
+        List<PointTransaction> newest = ledger.pageBefore(ledger.size(), 70, "user");
+        assertEquals(70, newest.size());
+        assertEquals(199, newest.get(0).getPoints());
+        assertEquals(130, newest.get(69).getPoints());
+
+        List<PointTransaction> oldest = ledger.pageBefore(10, 70, "user");
+        assertEquals(10, oldest.size());
+        assertEquals(0, oldest.get(9).getPoints());
+
+        assertTrue(ledger.pageBefore(0, 10, "user").isEmpty());
+        assertEquals(200, ledger.range(0, 200, "user").size());
+        assertEquals(64, ledger.range(64, 128, "user").get(0).getPoints());
+    }
+
+    @Test
+    void testMaterializesDescriptionFromTemplate() {
+        PointLedger ledger = append(PointLedger.EMPTY, 125);
+
+        PointTransaction transaction = ledger.get(0, "user");
+        assertEquals(TransactionType.EARN, transaction.getType());
+        assertEquals("Earned points from transaction amount: 12.50", transaction.getDescription());
+        assertEquals("user", transaction.getUserId());
+    }
+}
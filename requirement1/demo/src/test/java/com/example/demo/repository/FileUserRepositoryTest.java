@@ -0,0 +1,102 @@
+package com.example.demo.repository;
+
+import com.example.demo.model.User;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+class FileUserRepositoryTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testUsersSurviveRestartWithLatestPassword() {
+        FileUserRepository repository = new FileUserRepository(directory.toString(), 10);
+        repository.saveAll(IntStream.range(0, 5000).mapToObj(i -> new User("user-" + i, "hash-" + i)));
+        repository.save(new User("user-42", "changed"));
+        repository.close();
+
+        // A tiny cache forces most lookups through the index and the file
+        FileUserRepository reopened = new FileUserRepository(directory.toString(), 10);
+        try {
+            assertEquals(5000, reopened.count());
+            assertEquals("changed", reopened.findByUsername("user-42").orElseThrow().getPassword());
+            assertEquals("hash-4999", reopened.findByUsername("user-4999").orElseThrow().getPassword());
+            assertFalse(reopened.existsByUsername("user-5000"));
+        } finally {
+            reopened.close();
+        }
+    }
+
+    @Test
+    void testCorruptRecordIsSkippedAndTornTailTruncated() throws Exception {
+        FileUserRepository repository = new FileUserRepository(directory.toString(), 10);
+        repository.saveAll(IntStream.range(0, 1000).mapToObj(i -> new User("user-" + i, "hash-" + i)));
+        repository.close();
+
+        // Flip a byte in the middle of the file, then leave half a record at the end
+        Path file = directory.resolve("users.dat");
+        long middle = Files.size(file) / 2;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer one = ByteBuffer.allocate(1);
+            channel.read(one, middle);
+            one.put(0, (byte) (one.get(0) ^ 0x5A));
+            one.rewind();
+            channel.write(one, middle);
+            channel.write(ByteBuffer.wrap(new byte[] {0x55, 0x53, 0x52, 0x31, 0, 20}), channel.size());
+        }
+        long tornSize = Files.size(file);
+
+        FileUserRepository reopened = new FileUserRepository(directory.toString(), 10);
+        try {
+            // At most the damaged record is lost; everything after it is still indexed
+            long count = reopened.count();
+            assertEquals(999, count);
+            assertEquals("hash-999", reopened.findByUsername("user-999").orElseThrow().getPassword());
+            assertEquals("hash-0", reopened.findByUsername("user-0").orElseThrow().getPassword());
+            assertEquals(tornSize - 6, Files.size(file));
+
+            reopened.save(new User("user-1000", "hash-1000"));
+        } finally {
+            reopened.close();
+        }
+
+        FileUserRepository restarted = new FileUserRepository(directory.toString(), 10);
+        try {
+            assertEquals("hash-1000", restarted.findByUsername("user-1000").orElseThrow().getPassword());
+        } finally {
+            restarted.close();
+        }
+    }
+
+    @Test
+    void testReimportSkipsUnchangedUsers() throws Exception {
+        FileUserRepository repository = new FileUserRepository(directory.toString(), 10);
+        try {
+            repository.saveAll(IntStream.range(0, 100).mapToObj(i -> new User("user-" + i, "hash-" + i)));
+            long size = Files.size(directory.resolve("users.dat"));
+
+            long saved = repository.saveAll(IntStream.range(0, 100).mapToObj(i -> new User("user-" + i, "hash-" + i)));
+            assertEquals(0, saved);
+            assertEquals(size, Files.size(directory.resolve("users.dat")));
+
+            // Only the changed user is written again
+            saved = repository.saveAll(IntStream.range(0, 100).mapToObj(i -> new User("user-" + i, i == 7 ? "changed" : "hash-" + i)));
+            assertEquals(1, saved);
+            assertEquals("changed", repository.findByUsername("user-7").orElseThrow().getPassword());
+            assertEquals(100, repository.count());
+        } finally {
+            repository.close();
+        }
+    }
+}
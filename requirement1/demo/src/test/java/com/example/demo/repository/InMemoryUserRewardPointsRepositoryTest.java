@@ -0,0 +1,47 @@
+package com.example.demo.repository;
+
+import com.example.demo.model.UserRewardPoints;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class InMemoryUserRewardPointsRepositoryTest {
+
+    @Test
+    void testConcurrentFindOrCreateReturnsSameInstance() throws Exception {
+        InMemoryUserRewardPointsRepository repository = new InMemoryUserRewardPointsRepository();
+        AtomicInteger created = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<UserRewardPoints>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return repository.findOrCreate("new-user", userId -> {
+                        created.incrementAndGet();
+                        return new UserRewardPoints(userId);
+                    });
+                }));
+            }
+            start.countDown();
+
+            UserRewardPoints first = results.get(0).get();
+            for (Future<UserRewardPoints> result : results) {
+                assertSame(first, result.get());
+            }
+            assertEquals(1, created.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.demo.repository;
+
+import com.example.demo.model.TransactionTemplate;
+import com.example.demo.model.UserRewardPoints;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class MappedLedgerUserRewardPointsRepositoryTest {
+
+    private static final int RECORD_SIZE = 128;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testUsersSurviveReopen() {
+        MappedLedgerUserRewardPointsRepository repository = open(1 << 20);
+        earn(repository, "alice", 10, 20);
+        repository.close();
+
+        MappedLedgerUserRewardPointsRepository reopened = open(1 << 20);
+        try {
+            UserRewardPoints alice = reopened.findByUserId("alice").orElseThrow();
+            assertEquals(530, alice.getRewardPoints());
+            assertEquals(3, alice.getTransactions().size());
+            assertEquals(500, reopened.findByUserId("user123").orElseThrow().getRewardPoints());
+        } finally {
+            reopened.close();
+        }
+    }
+
+    @Test
+    void testTornFinalRecordIsDroppedAndOverwritten() throws Exception {
+        // Records: user123 initial, alice initial, alice +10, alice +20
+        MappedLedgerUserRewardPointsRepository repository = open(1 << 20);
+        earn(repository, "alice", 10, 20);
+        repository.close();
+
+        try (FileChannel channel = FileChannel.open(directory.resolve("ledger-00000000.seg"), StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[] {1, 2, 3}), 3 * RECORD_SIZE + 40);
+        }
+
+        MappedLedgerUserRewardPointsRepository recovered = open(1 << 20);
+        assertEquals(510, recovered.findByUserId("alice").orElseThrow().getRewardPoints());
+        earn(recovered, "alice", 5);
+        recovered.close();
+
+        MappedLedgerUserRewardPointsRepository reopened = open(1 << 20);
+        try {
+            UserRewardPoints alice = reopened.findByUserId("alice").orElseThrow();
+            assertEquals(515, alice.getRewardPoints());
+            assertEquals(3, alice.getTransactions().size());
+        } finally {
+            reopened.close();
+        }
+    }
+
+    @Test
+    void testRecordsSpanSegmentsAndSurviveSmallerSegmentSize() {
+        // Four records per segment: 12 records fill three segments
+        MappedLedgerUserRewardPointsRepository repository = open(4 * RECORD_SIZE);
+        earn(repository, "alice", 1, 2, 3, 4, 5, 6, 7, 8, 9, 10);
+        repository.close();
+
+        MappedLedgerUserRewardPointsRepository smaller = open(2 * RECORD_SIZE);
+        UserRewardPoints alice = smaller.findByUserId("alice").orElseThrow();
+        assertEquals(555, alice.getRewardPoints());
+        assertEquals(11, alice.getTransactions().size());
+        earn(smaller, "alice", 100, 200, 300);
+        smaller.close();
+
+        MappedLedgerUserRewardPointsRepository reopened = open(2 * RECORD_SIZE);
+        try {
+            alice = reopened.findByUserId("alice").orElseThrow();
+            assertEquals(1155, alice.getRewardPoints());
+            assertEquals(14, alice.getTransactions().size());
+        } finally {
+            reopened.close();
+        }
+    }
+
+    private MappedLedgerUserRewardPointsRepository open(int segmentSize) {
+        return new MappedLedgerUserRewardPointsRepository(directory.toString(), segmentSize, 1000, 512);
+    }
+
+    private static void earn(MappedLedgerUserRewardPointsRepository repository, String userId, int... points) {
+        UserRewardPoints userRewardPoints = repository.findOrCreate(userId, UserRewardPoints::new);
+        for (int earned : points) {
+            userRewardPoints.addPoints(earned, TransactionTemplate.EARNED_FROM_AMOUNT, Double.doubleToLongBits(earned));
+            repository.save(userRewardPoints);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.demo.service;
+
+import com.example.demo.model.User;
+import com.example.demo.repository.InMemoryUserRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CustomUserDetailsServiceTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testImportFileIsImportedOnceUntilItChanges() throws Exception {
+        Path csv = directory.resolve("users.csv");
+        Files.writeString(csv, "# exported accounts\nalice,hash-a\nbob,hash-b\n");
+        CountingRepository repository = new CountingRepository();
+
+        new CustomUserDetailsService(repository, csv.toString());
+        new CustomUserDetailsService(repository, csv.toString());
+        int imports = repository.imports;
+        assertEquals(1, imports);
+        assertEquals("hash-b", repository.findByUsername("bob").orElseThrow().getPassword());
+
+        Files.writeString(csv, "alice,hash-a\nbob,changed\ncarol,hash-c\n");
+        new CustomUserDetailsService(repository, csv.toString());
+        imports = repository.imports;
+        assertEquals(2, imports);
+        assertEquals("changed", repository.findByUsername("bob").orElseThrow().getPassword());
+    }
+
+    private static final class CountingRepository extends InMemoryUserRepository {
+        private int imports;
+
+        @Override
+        public long saveAll(Stream<User> users) {
+            imports++;
+            return super.saveAll(users);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.demo.service;
+
+import com.example.demo.dto.BatchItemResponse;
+import com.example.demo.dto.BatchOperationRequest;
+import com.example.demo.dto.BatchOperationRequest.OperationType;
+import com.example.demo.infrastructure.command.CommandExecutorService;
+import com.example.demo.infrastructure.command.journal.CommandJournal;
+import com.example.demo.infrastructure.lock.StripedLock;
+import com.example.demo.model.UserRewardPoints;
+import com.example.demo.repository.InMemoryUserRewardPointsRepository;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class RewardServiceBatchTest {
+
+    @Test
+    void testInlineBatchReportsEachOperation() {
+        assertEachOperationReported(new CommandExecutorService());
+    }
+
+    @Test
+    void testPartitionedBatchReportsEachOperation() {
+        CommandExecutorService executor = new CommandExecutorService(
+                CommandExecutorService.MODE_PARTITIONED, 2, 16, 1000, (CommandJournal) null);
+        try {
+            assertEachOperationReported(executor);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static void assertEachOperationReported(CommandExecutorService executor) {
+        // The strategy fails unexpectedly for one amount
+        RewardService service = new RewardService(
+                new InMemoryUserRewardPointsRepository(),
+                amount -> {
+                    if (amount == 13) {
+                        throw new IllegalStateException("Strategy unavailable");
+                    }
+                    return (int) (amount / 10);
+                },
+                UserRewardPoints::new,
+                executor,
+                null,
+                new StripedLock(16));
+
+        List<BatchItemResponse> results = service.processBatch(List.of(
+                new BatchOperationRequest(OperationType.EARN, "alice", 100, 0),
+                new BatchOperationRequest(OperationType.EARN, "alice", 13, 0),
+                new BatchOperationRequest(OperationType.REDEEM, "alice", 0, 10),
+                new BatchOperationRequest(OperationType.REDEEM, "bob", 0, 1000),
+                new BatchOperationRequest(OperationType.EARN, "bob", 50, 0)));
+
+        assertEquals("success", results.get(0).getStatus());
+        assertEquals(510, results.get(0).getNewBalance());
+        assertEquals("error", results.get(1).getStatus());
+        assertEquals("Operation failed", results.get(1).getMessage());
+        assertEquals("success", results.get(2).getStatus());
+        assertEquals(500, results.get(2).getNewBalance());
+        assertEquals("error", results.get(3).getStatus());
+        assertEquals("success", results.get(4).getStatus());
+        assertEquals(505, service.getBalance("bob"));
+    }
+}
@@ -1,13 +1,15 @@
 package com.digitalwallet.verification.handler;
 
+import com.digitalwallet.id.IdGenerator;
+import com.digitalwallet.id.SnowflakeIdGenerator;
 import com.digitalwallet.service.VerificationApiResult;
 import java.util.concurrent.CompletableFuture;
-import java.util.UUID;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
 
 public abstract class AbstractVerificationHandler implements VerificationHandler {
     private VerificationHandler nextHandler;
+    private IdGenerator idGenerator = SnowflakeIdGenerator.shared();
 
     @Override
     public VerificationHandler setNextHandler(VerificationHandler handler) {
@@ -15,6 +17,17 @@ public abstract class AbstractVerificationHandler implements VerificationHandler
         return this;
     }
 
+    /**
+     * Replace the generator used for verification IDs.
+     *
+     * @param idGenerator ID generator
+     * @return This handler
+     */
+    public AbstractVerificationHandler setIdGenerator(IdGenerator idGenerator) {
+        this.idGenerator = idGenerator;
+        return this;
+    }
+
     protected CompletableFuture<VerificationApiResult> processNext(VerificationContext context) {
         if (nextHandler != null) {
             return nextHandler.verify(context);
@@ -27,7 +40,7 @@ public abstract class AbstractVerificationHandler implements VerificationHandler
     }
 
     protected VerificationApiResult createSuccessfulVerification() {
-        String verificationId = UUID.randomUUID().toString();
+        String verificationId = idGenerator.nextId();
         LocalDateTime expiresAt = LocalDateTime.now(ZoneOffset.UTC).plusHours(24);
 
         return new VerificationApiResult(